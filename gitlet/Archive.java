@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Writes the files of a commit as a tar or zip archive. Each file is
+ *  streamed from the object store into the archive, so no file is held
+ *  in memory whole and the working directory is never touched. Every
+ *  file is given the date of the commit and the mode 644.
+ *  @author Evelyn Vo
+ */
+class Archive {
+
+    /** The length of a tar block. */
+    private static final int BLOCK = 512;
+
+    /** An archive of the objects of BLOBS. */
+    Archive(BlobStore blobs) {
+        _blobs = blobs;
+    }
+
+    /** Writes the files of COMMIT to OUT as a ustar archive. */
+    void tar(Manifest commit, OutputStream out) throws IOException {
+        long date = date(commit);
+        for (int i = 0; i < commit.size(); i += 1) {
+            long size = _blobs.size(commit.sha(i));
+            out.write(header(commit.name(i), size, date / 1000));
+            try (InputStream in = _blobs.open(commit.sha(i))) {
+                in.transferTo(out);
+            }
+            out.write(new byte[(int) (-size & (BLOCK - 1))]);
+        }
+        out.write(new byte[2 * BLOCK]);
+        out.flush();
+    }
+
+    /** Writes the files of COMMIT to OUT as a zip archive. */
+    void zip(Manifest commit, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        FileTime date = FileTime.fromMillis(date(commit));
+        for (int i = 0; i < commit.size(); i += 1) {
+            ZipEntry entry = new ZipEntry(commit.name(i));
+            entry.setLastModifiedTime(date);
+            zip.putNextEntry(entry);
+            try (InputStream in = _blobs.open(commit.sha(i))) {
+                in.transferTo(zip);
+            }
+            zip.closeEntry();
+        }
+        zip.finish();
+        out.flush();
+    }
+
+    /** Returns the date of COMMIT, or the epoch if it records none. */
+    private static long date(Manifest commit) {
+        return commit.date() == Manifest.NO_DATE ? 0 : commit.date();
+    }
+
+    /** Returns the ustar header of the file NAME of SIZE bytes last
+     *  modified at MTIME, in seconds since the epoch. A name too long for
+     *  the header is split at a slash into a prefix and a name. */
+    private static byte[] header(String name, long size, long mtime) {
+        byte[] header = new byte[BLOCK];
+        byte[] path = name.getBytes(StandardCharsets.UTF_8);
+        int split = 0;
+        if (path.length > 100) {
+            split = Math.min(path.length - 1, 155);
+            while (split > 0 && (path[split] != '/'
+                    || path.length - split - 1 > 100)) {
+                split -= 1;
+            }
+            if (split == 0) {
+                throw Utils.error("File name too long for tar: %s", name);
+            }
+            System.arraycopy(path, 0, header, 345, split);
+            split += 1;
+        }
+        System.arraycopy(path, split, header, 0, path.length - split);
+        field(header, 100, 8, 0644);
+        field(header, 108, 8, 0);
+        field(header, 116, 8, 0);
+        field(header, 124, 12, size);
+        field(header, 136, 12, mtime);
+        header[156] = '0';
+        byte[] magic = "ustar\u000000".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, header, 257, magic.length);
+        for (int pos = 148; pos < 156; pos += 1) {
+            header[pos] = ' ';
+        }
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        field(header, 148, 7, sum);
+        return header;
+    }
+
+    /** Writes VALUE in octal to the LENGTH bytes of HEADER at POS, the
+     *  last of them a NUL, padding it with zeros. */
+    private static void field(byte[] header, int pos, int length,
+                              long value) {
+        if (value >= 1L << (3 * (length - 1))) {
+            throw Utils.error("File too large for tar.");
+        }
+        String octal = Long.toOctalString(value);
+        for (int k = 0; k < length - 1; k += 1) {
+            int digit = k - (length - 1 - octal.length());
+            header[pos + k] = (byte) (digit < 0 ? '0' : octal.charAt(digit));
+        }
+        header[pos + length - 1] = 0;
+    }
+
+    /** The store blobs are read from. */
+    private final BlobStore _blobs;
+}
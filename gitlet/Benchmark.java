@@ -0,0 +1,690 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** Micro-benchmarks of the object store and merges, run as
+ *  java gitlet.Benchmark NAME [OPERANDS]. Each works in a fresh
+ *  temporary directory and prints one summary line.
+ *  @author Evelyn Vo
+ */
+public class Benchmark {
+
+    /** Bytes in a mebibyte. */
+    private static final double MIB = 1 << 20;
+
+    /** Runs the benchmark named by ARGS[0] with the operands after it. */
+    public static void main(String... args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java gitlet.Benchmark chunking"
+                    + " [MEBIBYTES [VERSIONS]] | commit [FILES [KIBIBYTES]]"
+                    + " | renames [FILES] | manifests [FILES]"
+                    + " | linemerge [MEBIBYTES] | diff [FILES]"
+                    + " | blame [COMMITS] | grep [COMMITS]"
+                    + " | at [COMMITS] | contains [COMMITS]"
+                    + " | catfile [LOOKUPS]");
+            return;
+        }
+        switch (args[0]) {
+        case "chunking":
+            chunking(args.length > 1 ? Integer.parseInt(args[1]) : 64,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 10);
+            break;
+        case "commit":
+            commit(args.length > 1 ? Integer.parseInt(args[1]) : 2000,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 64);
+            break;
+        case "renames":
+            renames(args.length > 1 ? Integer.parseInt(args[1]) : 20000);
+            break;
+        case "manifests":
+            manifests(args.length > 1 ? Integer.parseInt(args[1]) : 200000);
+            break;
+        case "linemerge":
+            lineMerge(args.length > 1 ? Integer.parseInt(args[1]) : 100);
+            break;
+        case "diff":
+            diff(args.length > 1 ? Integer.parseInt(args[1]) : 10000);
+            break;
+        case "blame":
+            blame(args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+            break;
+        case "grep":
+            grep(args.length > 1 ? Integer.parseInt(args[1]) : 200);
+            break;
+        case "contains":
+            contains(args.length > 1 ? Integer.parseInt(args[1]) : 2000);
+            break;
+        case "at":
+            at(args.length > 1 ? Integer.parseInt(args[1]) : 2000);
+            break;
+        case "catfile":
+            catFile(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            break;
+        default:
+            System.out.println("No benchmark named " + args[0] + ".");
+        }
+    }
+
+    /** Stores VERSIONS successive versions of a random file of SIZE
+     *  mebibytes, each differing from the last by a few small insertions,
+     *  deletions and overwrites, then checks every version out again.
+     *  Reports how much smaller the store is than the versions it holds,
+     *  and the rate at which versions were stored and checked out. */
+    private static void chunking(int size, int versions) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        File objects = Utils.join(dir, "objects");
+        makeFanOut(objects);
+        BlobStore store = new BlobStore(objects);
+        Random random = new Random(size * 31L + versions);
+        byte[] data = new byte[size << 20];
+        random.nextBytes(data);
+        File source = Utils.join(dir, "source");
+        List<String> ids = new ArrayList<>();
+        long logical = 0;
+        long writeNanos = 0;
+        for (int version = 0; version < versions; version += 1) {
+            if (version > 0) {
+                data = edit(data, random);
+            }
+            Utils.writeContents(source, data);
+            String sha = Utils.sha1(source);
+            long start = System.nanoTime();
+            store.write(sha, source);
+            writeNanos += System.nanoTime() - start;
+            ids.add(sha);
+            logical += data.length;
+        }
+        File target = Utils.join(dir, "target");
+        long readNanos = 0;
+        for (String sha : ids) {
+            long start = System.nanoTime();
+            store.checkout(sha, target);
+            readNanos += System.nanoTime() - start;
+            if (!sha.equals(Utils.sha1(target))) {
+                throw new IllegalStateException("blob " + sha
+                        + " did not check out intact");
+            }
+        }
+        long stored = sizeOf(objects);
+        System.out.printf("chunking: %d versions of %d MiB; logical %.1f MiB,"
+                + " stored %.1f MiB, dedup ratio %.2f; store %.1f MiB/s,"
+                + " checkout %.1f MiB/s%n", versions, size, logical / MIB,
+                stored / MIB, (double) logical / stored,
+                logical / MIB / (writeNanos / 1e9),
+                logical / MIB / (readNanos / 1e9));
+        delete(dir);
+    }
+
+    /** Commits FILES random files of SIZE kibibytes each to a fresh
+     *  repository and prints the report of the commit pipeline. */
+    private static void commit(int files, int size) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        Random random = new Random(files * 31L + size);
+        byte[] data = new byte[size << 10];
+        for (int k = 0; k < files; k += 1) {
+            random.nextBytes(data);
+            String name = String.format("file%05d", k);
+            Utils.writeContents(Utils.join(dir, name), data);
+            repo.add(name);
+        }
+        repo.commit("benchmark");
+        for (String line : repo.commitReport()) {
+            System.out.println(line);
+        }
+        delete(dir);
+    }
+
+    /** Stores FILES random text files, then looks for renames between
+     *  them and as many new files, half of them exact copies and half
+     *  copies with a few lines changed, and prints how many renames were
+     *  found and how long that took. */
+    private static void renames(int files) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        File objects = Utils.join(dir, "objects");
+        makeFanOut(objects);
+        File work = Utils.join(dir, "work");
+        work.mkdir();
+        BlobStore store = new BlobStore(objects);
+        Random random = new Random(files);
+        Map<String, String> removed = new HashMap<>();
+        Map<String, String> added = new HashMap<>();
+        Map<String, File> sources = new HashMap<>();
+        for (int k = 0; k < files; k += 1) {
+            String[] lines = new String[40];
+            for (int line = 0; line < lines.length; line += 1) {
+                lines[line] = Long.toHexString(random.nextLong());
+            }
+            File file = Utils.join(work, "old" + k);
+            Utils.writeContents(file, String.join("\n", lines) + "\n");
+            String sha = Utils.sha1(file);
+            store.write(sha, file);
+            removed.put(file.getName(), sha);
+            if (k % 2 == 1) {
+                for (int edits = 0; edits < 3; edits += 1) {
+                    lines[random.nextInt(lines.length)] = "edited";
+                }
+                Utils.writeContents(file, String.join("\n", lines) + "\n");
+                sha = Utils.sha1(file);
+            }
+            File renamed = Utils.join(work, "new" + k);
+            file.renameTo(renamed);
+            added.put(renamed.getName(), sha);
+            sources.put(sha, renamed);
+        }
+        RenameDetector detector =
+                new RenameDetector(store, IoExecutor.shared());
+        long start = System.nanoTime();
+        List<RenameDetector.Rename> found =
+                detector.detect(removed, added, sources);
+        long nanos = System.nanoTime() - start;
+        int correct = 0;
+        for (RenameDetector.Rename rename : found) {
+            if (rename.from().substring(3).equals(rename.to().substring(3))) {
+                correct += 1;
+            }
+        }
+        System.out.printf("renames: %d files; found %d renames, %d correct,"
+                + " in %.3f s%n", files, found.size(), correct, nanos / 1e9);
+        delete(dir);
+    }
+
+    /** Writes the commits of a split point and two sides with FILES files
+     *  each, every side changing, adding and deleting about one file in a
+     *  hundred, and classifies every file for a three-way merge twice:
+     *  by building a hash map of each commit and looking every name up in
+     *  the others, and by a ManifestJoin of the three sorted manifests.
+     *  Prints the best time of several rounds of each. */
+    private static void manifests(int files) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        Random random = new Random(files);
+        TreeMap<String, String> base = new TreeMap<>();
+        for (int k = 0; k < files; k += 1) {
+            base.put(String.format("dir%03d-file%07d.txt", k % 997, k),
+                    randomSha(random));
+        }
+        File[] commits = new File[3];
+        for (int side = 0; side < 3; side += 1) {
+            TreeMap<String, String> manifest = new TreeMap<>(base);
+            if (side > 0) {
+                for (String name : base.keySet()) {
+                    int roll = random.nextInt(300);
+                    if (roll == 0) {
+                        manifest.put(name, randomSha(random));
+                    } else if (roll == 1) {
+                        manifest.remove(name);
+                    } else if (roll == 2) {
+                        manifest.put(name + "." + side, randomSha(random));
+                    }
+                }
+            }
+            StringBuilder commit = new StringBuilder("master\n\n\n");
+            for (Map.Entry<String, String> file : manifest.entrySet()) {
+                commit.append(file.getKey()).append(' ')
+                        .append(file.getValue()).append('\n');
+            }
+            commits[side] = Utils.join(dir, "commit" + side);
+            Utils.writeContents(commits[side], commit.toString());
+        }
+        long hashed = Long.MAX_VALUE;
+        long joined = Long.MAX_VALUE;
+        int[] hashCounts = null;
+        int[] joinCounts = null;
+        for (int round = 0; round < 5; round += 1) {
+            long start = System.nanoTime();
+            hashCounts = classifyByHash(commits);
+            hashed = Math.min(hashed, System.nanoTime() - start);
+            start = System.nanoTime();
+            int[] counts = new int[ManifestJoin.Change.values().length];
+            ManifestJoin.classify(Manifest.read(commits[0]),
+                    Manifest.read(commits[1]), Manifest.read(commits[2]),
+                    (change, b, o, t) -> counts[change.ordinal()] += 1);
+            joinCounts = counts;
+            joined = Math.min(joined, System.nanoTime() - start);
+        }
+        if (!Arrays.equals(hashCounts, joinCounts)) {
+            throw new IllegalStateException("classifications differ: "
+                    + Arrays.toString(hashCounts) + " and "
+                    + Arrays.toString(joinCounts));
+        }
+        System.out.printf("manifests: %d files, %s; hash maps %.1f ms,"
+                + " merge-join %.1f ms%n", files,
+                Arrays.toString(joinCounts), hashed / 1e6, joined / 1e6);
+        delete(dir);
+    }
+
+    /** Returns the number of files of each kind of change in a three-way
+     *  merge of COMMITS, the split point and the two sides, classified
+     *  through hash maps built from their text. */
+    private static int[] classifyByHash(File[] commits) {
+        List<Map<String, String>> maps = new ArrayList<>();
+        for (File commit : commits) {
+            String[] lines = Utils.readContentsAsString(commit).split("\n");
+            Map<String, String> files = new HashMap<>();
+            for (int pos = 3; pos < lines.length; pos += 1) {
+                String[] data = lines[pos].split(" ");
+                files.put(data[0], data[1]);
+            }
+            maps.add(files);
+        }
+        Map<String, String> base = maps.get(0);
+        Map<String, String> ours = maps.get(1);
+        Map<String, String> theirs = maps.get(2);
+        Set<String> names = new HashSet<>(base.keySet());
+        names.addAll(ours.keySet());
+        names.addAll(theirs.keySet());
+        int[] counts = new int[ManifestJoin.Change.values().length];
+        for (String name : names) {
+            String b = base.get(name);
+            String o = ours.get(name);
+            String t = theirs.get(name);
+            ManifestJoin.Change change;
+            if (Objects.equals(o, t)) {
+                change = ManifestJoin.Change.UNCHANGED;
+            } else if (Objects.equals(b, t)) {
+                change = ManifestJoin.Change.OURS;
+            } else if (Objects.equals(b, o)) {
+                change = t == null ? ManifestJoin.Change.DELETE
+                        : b == null ? ManifestJoin.Change.ADD
+                        : ManifestJoin.Change.THEIRS;
+            } else {
+                change = ManifestJoin.Change.CONFLICT;
+            }
+            counts[change.ordinal()] += 1;
+        }
+        return counts;
+    }
+
+    /** Returns a random SHA-1 drawn from RANDOM. */
+    private static String randomSha(Random random) {
+        byte[] bytes = new byte[20];
+        random.nextBytes(bytes);
+        return Utils.toHex(bytes);
+    }
+
+    /** Writes a text file of about SIZE mebibytes and two versions of it
+     *  that each change a different line in every thousand, merges them
+     *  with a LineMerge and prints the rate of the merge and the heap it
+     *  took. */
+    private static void lineMerge(int size) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        File[] files = new File[3];
+        Random random = new Random(size);
+        for (int side = 0; side < 3; side += 1) {
+            files[side] = Utils.join(dir, "version" + side);
+        }
+        try (OutputStream base = new BufferedOutputStream(
+                new FileOutputStream(files[0]));
+             OutputStream ours = new BufferedOutputStream(
+                     new FileOutputStream(files[1]));
+             OutputStream theirs = new BufferedOutputStream(
+                     new FileOutputStream(files[2]))) {
+            long written = 0;
+            for (int line = 0; written < ((long) size << 20); line += 1) {
+                byte[] text = (Long.toHexString(random.nextLong()) + " line "
+                        + line + "\n").getBytes(StandardCharsets.UTF_8);
+                base.write(text);
+                ours.write(line % 1000 == 1 ? EDITED : text);
+                theirs.write(line % 1000 == 500 ? EDITED : text);
+                written += text.length;
+            }
+        }
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        CountingStream out = new CountingStream();
+        boolean clean = LineMerge.merge(() -> open(files[0]),
+                () -> open(files[1]), () -> open(files[2]), out);
+        long nanos = System.nanoTime() - start;
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("linemerge: %d MiB, %s; %.1f MiB/s, heap grew"
+                + " %.1f MiB%n", size, clean ? "clean" : "conflicted",
+                files[0].length() / MIB / (nanos / 1e9),
+                Math.max(0, after - before) / MIB);
+        delete(dir);
+    }
+
+    /** Commits FILES text files of a hundred lines, then a change to a
+     *  few lines of each, and times the diff of the two commits, both
+     *  as --stat and as a patch. */
+    private static void diff(int files) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        Random random = new Random(files);
+        String[][] texts = new String[files][100];
+        for (int k = 0; k < files; k += 1) {
+            for (int line = 0; line < texts[k].length; line += 1) {
+                texts[k][line] = Long.toHexString(random.nextLong());
+            }
+            String name = String.format("file%05d", k);
+            Utils.writeContents(Utils.join(dir, name),
+                    String.join("\n", texts[k]) + "\n");
+            repo.add(name);
+        }
+        String first = repo.commit("before");
+        for (int k = 0; k < files; k += 1) {
+            for (int edits = 0; edits < 3; edits += 1) {
+                texts[k][random.nextInt(texts[k].length)] = "edited";
+            }
+            String name = String.format("file%05d", k);
+            Utils.writeContents(Utils.join(dir, name),
+                    String.join("\n", texts[k]) + "\n");
+            repo.add(name);
+        }
+        String second = repo.commit("after");
+        List<String> commits = Arrays.asList(first, second);
+        long start = System.nanoTime();
+        repo.diff(commits, false, true, new CountingStream());
+        long statNanos = System.nanoTime() - start;
+        CountingStream patch = new CountingStream();
+        start = System.nanoTime();
+        repo.diff(commits, false, false, patch);
+        long patchNanos = System.nanoTime() - start;
+        System.out.printf("diff: %d files changed; --stat in %.3f s,"
+                + " patch of %.1f MiB in %.3f s%n", files, statNanos / 1e9,
+                patch._count / MIB, patchNanos / 1e9);
+        delete(dir);
+    }
+
+    /** Commits COMMITS versions of a file of a thousand lines, each
+     *  changing one line, and blames it; then commits five more and
+     *  blames it again. Prints the time of each blame. */
+    private static void blame(int commits) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        Random random = new Random(commits);
+        String[] lines = new String[1000];
+        for (int line = 0; line < lines.length; line += 1) {
+            lines[line] = Long.toHexString(random.nextLong());
+        }
+        File file = Utils.join(dir, "file");
+        long[] nanos = new long[2];
+        for (int round = 0; round < 2; round += 1) {
+            for (int k = 0; k < (round == 0 ? commits : 5); k += 1) {
+                lines[random.nextInt(lines.length)] =
+                        Long.toHexString(random.nextLong());
+                Utils.writeContents(file, String.join("\n", lines) + "\n");
+                repo.add("file");
+                repo.commit("edit " + k);
+            }
+            long start = System.nanoTime();
+            repo.blame(null, "file");
+            nanos[round] = System.nanoTime() - start;
+        }
+        System.out.printf("blame: %d commits in %.3f s; again after 5 more"
+                + " in %.3f s%n", commits, nanos[0] / 1e9, nanos[1] / 1e9);
+        delete(dir);
+    }
+
+    /** Makes COMMITS commits, then times finding the commit the branch
+     *  had reached by a date, first when the commit graph is built, then
+     *  for a thousand random dates, then after five more commits. */
+    private static void at(int commits) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        File file = Utils.join(dir, "file");
+        long first = System.currentTimeMillis();
+        for (int k = 0; k < commits; k += 1) {
+            Utils.writeContents(file, "version " + k + "\n");
+            repo.add("file");
+            repo.commit("edit " + k);
+        }
+        long last = System.currentTimeMillis();
+        long[] nanos = new long[3];
+        long start = System.nanoTime();
+        repo.commitAt("master", last);
+        nanos[0] = System.nanoTime() - start;
+        Random random = new Random(commits);
+        start = System.nanoTime();
+        for (int k = 0; k < 1000; k += 1) {
+            repo.commitAt("master",
+                    first + (long) (random.nextDouble() * (last - first)));
+        }
+        nanos[1] = System.nanoTime() - start;
+        for (int k = 0; k < 5; k += 1) {
+            Utils.writeContents(file, "more " + k + "\n");
+            repo.add("file");
+            repo.commit("more " + k);
+        }
+        start = System.nanoTime();
+        repo.commitAt("master", last);
+        nanos[2] = System.nanoTime() - start;
+        System.out.printf("at: %d commits indexed in %.3f s; %.1f us a"
+                + " lookup; again after 5 more in %.3f s%n", commits,
+                nanos[0] / 1e9, nanos[1] / 1e3 / 1000, nanos[2] / 1e9);
+        delete(dir);
+    }
+
+    /** Makes COMMITS commits on two branches, merging one into the other
+     *  every hundred, then times finding the branches that contain the
+     *  first commit, and then each commit. */
+    private static void contains(int commits) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        repo.branch("side");
+        List<String> ids = new ArrayList<>();
+        for (int k = 0; k < commits; k += 1) {
+            String branch = k % 2 == 0 ? "master" : "side";
+            if (!repo.currentBranch().equals(branch)) {
+                repo.checkoutBranch(branch);
+            }
+            File file = Utils.join(dir, branch);
+            Utils.writeContents(file, "version " + k + "\n");
+            repo.add(branch);
+            ids.add(repo.commit("edit " + k));
+            if (k % 100 == 99 && branch.equals("side")) {
+                repo.checkoutBranch("master");
+                repo.merge("side");
+            }
+        }
+        long start = System.nanoTime();
+        repo.branchesContaining(ids.get(0));
+        long first = System.nanoTime() - start;
+        start = System.nanoTime();
+        int found = 0;
+        for (String id : ids) {
+            found += repo.branchesContaining(id).size();
+        }
+        long query = System.nanoTime() - start;
+        System.out.printf("contains: %d commits; first query in %.3f s;"
+                + " %.1f us a query; %d branch heads reach them%n", commits,
+                first / 1e9, query / 1e3 / commits, found);
+        delete(dir);
+    }
+
+    /** Commits fifty versions of twenty small files, then times LOOKUPS
+     *  requests to one cat-file --batch, a third each by SHA-1, by
+     *  abbreviated SHA-1 and by commit and path. */
+    private static void catFile(int lookups) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        List<String> blobs = new ArrayList<>();
+        List<String> commits = new ArrayList<>();
+        for (int k = 0; k < 50; k += 1) {
+            for (int file = 0; file < 20; file += 1) {
+                String text = "version " + k + " of " + file + "\n";
+                Utils.writeContents(Utils.join(dir, "file" + file), text);
+                repo.add("file" + file);
+                blobs.add(Utils.sha1(text));
+            }
+            commits.add(repo.commit("version " + k));
+        }
+        Random random = new Random(lookups);
+        StringBuilder requests = new StringBuilder();
+        for (int k = 0; k < lookups; k += 1) {
+            String blob = blobs.get(random.nextInt(blobs.size()));
+            if (k % 3 == 0) {
+                requests.append(blob);
+            } else if (k % 3 == 1) {
+                requests.append(blob, 0, 10);
+            } else {
+                requests.append(commits.get(random.nextInt(commits.size())))
+                        .append(":file").append(random.nextInt(20));
+            }
+            requests.append('\n');
+        }
+        CountingStream out = new CountingStream();
+        long start = System.nanoTime();
+        repo.catFileBatch(new ByteArrayInputStream(requests.toString()
+                .getBytes(StandardCharsets.UTF_8)), out);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("catfile: %d lookups in %.3f s; %.0f a second;"
+                + " %d bytes written%n", lookups, nanos / 1e9,
+                lookups / (nanos / 1e9), out._count);
+        delete(dir);
+    }
+
+    /** Commits five hundred text files, then COMMITS commits that each
+     *  change five of them, one commit in fifty adding a secret line,
+     *  and times a search of every commit for it. */
+    private static void grep(int commits) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        Random random = new Random(commits);
+        int files = 500;
+        for (int k = 0; k <= commits; k += 1) {
+            for (int edit = 0; edit < (k == 0 ? files : 5); edit += 1) {
+                StringBuilder text = new StringBuilder();
+                for (int line = 0; line < 200; line += 1) {
+                    text.append(Long.toHexString(random.nextLong()))
+                            .append('\n');
+                }
+                if (k % 50 == 49 && edit == 0) {
+                    text.append("secret=").append(k).append('\n');
+                }
+                String name = String.format("file%03d",
+                        k == 0 ? edit : random.nextInt(files));
+                Utils.writeContents(Utils.join(dir, name), text.toString());
+                repo.add(name);
+            }
+            repo.commit("commit " + k);
+        }
+        long start = System.nanoTime();
+        List<String> found = repo.grep("secret=", false, null, true);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("grep: %d commits of %d files; %d hits in"
+                + " %.3f s%n", commits + 1, files, found.size(), nanos / 1e9);
+        delete(dir);
+    }
+
+    /** The line the versions written by lineMerge change lines to. */
+    private static final byte[] EDITED =
+            "edited\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Returns a stream of the contents of FILE. */
+    private static InputStream open(File file) {
+        try {
+            return new BufferedInputStream(new FileInputStream(file));
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** An output stream that only counts what is written to it. */
+    private static class CountingStream extends OutputStream {
+        @Override
+        public void write(int b) {
+            _count += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            _count += len;
+        }
+
+        /** The number of bytes written. */
+        private long _count;
+    }
+
+    /** Returns DATA after a handful of random small edits. */
+    private static byte[] edit(byte[] data, Random random) {
+        byte[] result = data;
+        for (int edits = 0; edits < 4; edits += 1) {
+            int at = random.nextInt(result.length);
+            int len = 1 + random.nextInt(64);
+            byte[] run = new byte[len];
+            random.nextBytes(run);
+            byte[] next;
+            switch (edits % 3) {
+            case 0:
+                next = new byte[result.length + len];
+                System.arraycopy(result, 0, next, 0, at);
+                System.arraycopy(run, 0, next, at, len);
+                System.arraycopy(result, at, next, at + len,
+                        result.length - at);
+                break;
+            case 1:
+                len = Math.min(len, result.length - at);
+                next = new byte[result.length - len];
+                System.arraycopy(result, 0, next, 0, at);
+                System.arraycopy(result, at + len, next, at,
+                        result.length - at - len);
+                break;
+            default:
+                next = result.clone();
+                System.arraycopy(run, 0, next, at,
+                        Math.min(len, result.length - at));
+            }
+            result = next;
+        }
+        return result;
+    }
+
+    /** Creates OBJECTS and its fan-out directories. */
+    private static void makeFanOut(File objects) {
+        for (int pos = 0; pos < 256; pos += 1) {
+            Utils.join(objects, String.format("%02x", pos)).mkdirs();
+        }
+    }
+
+    /** Returns the total size of the files under DIR. */
+    private static long sizeOf(File dir) {
+        long total = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                total += file.isDirectory() ? sizeOf(file) : file.length();
+            }
+        }
+        return total;
+    }
+
+    /** Deletes FILE and everything under it. */
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
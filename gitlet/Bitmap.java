@@ -0,0 +1,125 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** An immutable set of non-negative ints compressed into runs of
+ *  consecutive values, each kept as its first value and one past its
+ *  last. Commits are numbered so that a commit's ancestors come before
+ *  it, and those a commit reaches mostly form a few long runs, so a set
+ *  of a million of them takes a few words. Membership is a binary search
+ *  over the runs and a union a merge of them.
+ *  @author Evelyn Vo
+ */
+class Bitmap {
+
+    /** The empty set. */
+    static final Bitmap EMPTY = new Bitmap(new int[0]);
+
+    /** Returns the set of the first COUNT of VALUES, in any order, which
+     *  are sorted in place. */
+    static Bitmap of(int[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int[] runs = new int[2 * count];
+        int n = 0;
+        for (int k = 0; k < count; k += 1) {
+            if (n > 0 && values[k] <= runs[n - 1]) {
+                runs[n - 1] = Math.max(runs[n - 1], values[k] + 1);
+            } else {
+                runs[n] = values[k];
+                runs[n + 1] = values[k] + 1;
+                n += 2;
+            }
+        }
+        return new Bitmap(Arrays.copyOf(runs, n));
+    }
+
+    /** Returns the set written from position 0 of DATA by write. */
+    static Bitmap read(ByteBuffer data) {
+        int[] runs = new int[2 * data.getInt(0)];
+        for (int k = 0; k < runs.length; k += 1) {
+            runs[k] = data.getInt(Integer.BYTES * (k + 1));
+        }
+        return new Bitmap(runs);
+    }
+
+    /** Returns this set as bytes: the number of runs, then the first
+     *  value and the end of each. */
+    byte[] write() {
+        ByteBuffer data = ByteBuffer.allocate(
+                Integer.BYTES * (_runs.length + 1));
+        data.putInt(_runs.length / 2);
+        for (int value : _runs) {
+            data.putInt(value);
+        }
+        return data.array();
+    }
+
+    /** Returns true iff VALUE is in this set. */
+    boolean contains(int value) {
+        int lo = 0;
+        int hi = _runs.length / 2;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_runs[2 * mid + 1] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo < _runs.length / 2 && _runs[2 * lo] <= value;
+    }
+
+    /** Returns the union of this set and OTHER. */
+    Bitmap or(Bitmap other) {
+        int[] a = _runs;
+        int[] b = other._runs;
+        int[] runs = new int[a.length + b.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            int[] next;
+            int k;
+            if (j == b.length || i < a.length && a[i] <= b[j]) {
+                next = a;
+                k = i;
+                i += 2;
+            } else {
+                next = b;
+                k = j;
+                j += 2;
+            }
+            if (n > 0 && next[k] <= runs[n - 1]) {
+                runs[n - 1] = Math.max(runs[n - 1], next[k + 1]);
+            } else {
+                runs[n] = next[k];
+                runs[n + 1] = next[k + 1];
+                n += 2;
+            }
+        }
+        return new Bitmap(Arrays.copyOf(runs, n));
+    }
+
+    /** Returns the number of values in this set. */
+    int cardinality() {
+        int count = 0;
+        for (int k = 0; k < _runs.length; k += 2) {
+            count += _runs[k + 1] - _runs[k];
+        }
+        return count;
+    }
+
+    /** Returns the number of runs this set is kept as. */
+    int runs() {
+        return _runs.length / 2;
+    }
+
+    /** The set whose runs are RUNS. */
+    private Bitmap(int[] runs) {
+        _runs = runs;
+    }
+
+    /** The first value and one past the last of each run, in order. */
+    private final int[] _runs;
+}
@@ -0,0 +1,181 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/** Finds the commit that last changed each line of a file. The first
+ *  parents of a commit are walked back, and each time the file's version
+ *  changes, the lines not yet attributed are matched against the older
+ *  version by MyersDiff: those with no match were introduced by the
+ *  newer commit, and the rest are followed into the older version. The
+ *  walk ends once every line is attributed or the file did not exist
+ *  before. Each result is kept on disk, keyed by commit and file, and a
+ *  walk that reaches a commit with a kept result takes the remaining
+ *  lines from it, so blaming a file again after a few commits only walks
+ *  those commits.
+ *  @author Evelyn Vo
+ */
+class Blame {
+
+    /** A blame that keeps its results under CACHE, reads the manifest of
+     *  a commit, given its SHA-1, with COMMITS and opens a stream of the
+     *  contents of a blob, given its SHA-1, with CONTENTS. */
+    Blame(File cache, Function<String, Manifest> commits,
+          Function<String, InputStream> contents) {
+        _cache = cache;
+        _commits = commits;
+        _contents = contents;
+    }
+
+    /** Returns, for each line of the file PATH as of COMMIT, the SHA-1 of
+     *  the commit that last changed it. */
+    String[] blame(String commit, String path) {
+        _walked = 0;
+        Manifest manifest = _commits.apply(commit);
+        int at = manifest.find(path);
+        if (at < 0) {
+            throw Utils.error("File does not exist in that commit.");
+        }
+        String sha = manifest.sha(at);
+        LineIndex lines = LineIndex.read(_contents.apply(sha));
+        String[] origins = new String[lines.size()];
+        int[] positions = new int[lines.size()];
+        for (int line = 0; line < positions.length; line += 1) {
+            positions[line] = line;
+        }
+        int left = origins.length;
+        String current = commit;
+        String currentSha = sha;
+        LineIndex currentLines = lines;
+        while (left > 0) {
+            String[] kept = read(current, path, currentSha,
+                    currentLines.size());
+            if (kept != null) {
+                if (current.equals(commit)) {
+                    return kept;
+                }
+                for (int line = 0; line < origins.length; line += 1) {
+                    if (origins[line] == null) {
+                        origins[line] = kept[positions[line]];
+                    }
+                }
+                break;
+            }
+            _walked += 1;
+            String parent = manifest.header(Manifest.PARENT1);
+            Manifest parentManifest = parent.isEmpty() ? null
+                    : _commits.apply(parent);
+            int found = parentManifest == null ? -1
+                    : parentManifest.find(path);
+            if (found < 0) {
+                for (int line = 0; line < origins.length; line += 1) {
+                    if (origins[line] == null) {
+                        origins[line] = current;
+                    }
+                }
+                break;
+            }
+            String parentSha = parentManifest.sha(found);
+            if (!parentSha.equals(currentSha)) {
+                LineIndex parentLines =
+                        LineIndex.read(_contents.apply(parentSha));
+                int[] matches = MyersDiff.matches(currentLines, parentLines);
+                for (int line = 0; line < origins.length; line += 1) {
+                    if (origins[line] != null) {
+                        continue;
+                    }
+                    int match = matches[positions[line]];
+                    if (match < 0) {
+                        origins[line] = current;
+                        left -= 1;
+                    } else {
+                        positions[line] = match;
+                    }
+                }
+                currentSha = parentSha;
+                currentLines = parentLines;
+            }
+            current = parent;
+            manifest = parentManifest;
+        }
+        write(commit, path, sha, origins);
+        return origins;
+    }
+
+    /** Returns the number of commits the last blame walked past before
+     *  every line was attributed. */
+    int walked() {
+        return _walked;
+    }
+
+    /** Returns the kept result for the file PATH as of COMMIT, if there
+     *  is one for its version SHA, which has SIZE lines, or null. */
+    private String[] read(String commit, String path, String sha, int size) {
+        File file = file(commit, path);
+        if (!file.isFile()) {
+            return null;
+        }
+        String[] lines = Utils.readContentsAsString(file).split("\n");
+        if (!lines[0].equals(sha)) {
+            return null;
+        }
+        String[] origins = new String[size];
+        int line = 0;
+        for (int pos = 1; pos < lines.length; pos += 1) {
+            int space = lines[pos].indexOf(' ');
+            int count = Integer.parseInt(lines[pos].substring(0, space));
+            if (line + count > size) {
+                return null;
+            }
+            Arrays.fill(origins, line, line + count,
+                    lines[pos].substring(space + 1));
+            line += count;
+        }
+        return line == size ? origins : null;
+    }
+
+    /** Keeps ORIGINS as the result for the file PATH as of COMMIT, whose
+     *  version is SHA: that SHA-1 on the first line, then one line
+     *  "COUNT ORIGIN" for each run of lines with the same origin. */
+    private void write(String commit, String path, String sha,
+                       String[] origins) {
+        StringBuilder kept = new StringBuilder(sha).append('\n');
+        for (int line = 0; line < origins.length; ) {
+            int end = line + 1;
+            while (end < origins.length
+                    && origins[end].equals(origins[line])) {
+                end += 1;
+            }
+            kept.append(end - line).append(' ').append(origins[line])
+                    .append('\n');
+            line = end;
+        }
+        File file = file(commit, path);
+        try {
+            Utils.writeAtomically(file,
+                    kept.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw Utils.error("Could not keep blame of %s: %s", path,
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the file keeping the result for PATH as of COMMIT. */
+    private File file(String commit, String path) {
+        String key = Utils.sha1(commit + "\n" + path);
+        return Utils.join(_cache, key.substring(0, 2), key.substring(2));
+    }
+
+    /** The directory results are kept in. */
+    private final File _cache;
+    /** Reads the manifest of a commit. */
+    private final Function<String, Manifest> _commits;
+    /** Opens the contents of a blob. */
+    private final Function<String, InputStream> _contents;
+    /** The number of commits the last blame walked past. */
+    private int _walked;
+}
@@ -0,0 +1,324 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** The blobs of the object store. A blob is named by the SHA-1 of the
+ *  file it holds. Files smaller than CHUNK_THRESHOLD are stored whole.
+ *  Larger ones are cut by a Chunker into chunks that are stored as
+ *  objects of their own, named by their SHA-1, and the blob holds only
+ *  the list of its chunks:
+ *
+ *      gitlet-chunks 1 BLOB-SHA
+ *      LENGTH CHUNK-SHA
+ *      ...
+ *
+ *  A chunk shared by several versions of a file is stored once. Files
+ *  are copied in and out as bytes and streamed, so neither form is ever
+ *  held in memory whole.
+ *  @author Evelyn Vo
+ */
+class BlobStore {
+
+    /** The size from which files are stored as chunk lists. */
+    static final long CHUNK_THRESHOLD = 1 << 20;
+
+    /** The start of the first line of a chunk list. */
+    private static final String MAGIC = "gitlet-chunks 1 ";
+
+    /** The blobs within the object store OBJECTS. */
+    BlobStore(File objects) {
+        _objects = objects;
+    }
+
+    /** Stores the contents of SOURCE as the blob SHA, unless it is
+     *  already stored. */
+    void write(String sha, File source) {
+        File blob = objectFile(sha);
+        if (blob.isFile()) {
+            return;
+        }
+        try {
+            if (source.length() < CHUNK_THRESHOLD) {
+                File temp = Utils.tempFile(blob);
+                Files.copy(source.toPath(), temp.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                install(temp, blob);
+            } else {
+                writeChunked(sha, source, blob);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not store %s: %s", source.getName(),
+                    excp.getMessage());
+        }
+    }
+
+    /** Stores DATA, which is smaller than CHUNK_THRESHOLD, as the blob
+     *  SHA, unless it is already stored. */
+    void write(String sha, byte[] data) {
+        File blob = objectFile(sha);
+        if (blob.isFile()) {
+            return;
+        }
+        try {
+            File temp = Utils.tempFile(blob);
+            Files.write(temp.toPath(), data);
+            install(temp, blob);
+        } catch (IOException excp) {
+            throw Utils.error("Could not store blob %s: %s", sha,
+                    excp.getMessage());
+        }
+    }
+
+    /** Writes the contents of the blob SHA to TARGET. */
+    void checkout(String sha, File target) {
+        File blob = objectFile(sha);
+        List<String> chunks = chunks(blob);
+        try {
+            if (chunks == null) {
+                Files.copy(blob.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                return;
+            }
+            try (OutputStream out = Files.newOutputStream(target.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (String chunk : chunks) {
+                    Files.copy(objectFile(chunk).toPath(), out);
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not check out %s: %s", target.getName(),
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns a stream of the contents of the blob SHA. */
+    InputStream open(String sha) {
+        File blob = objectFile(sha);
+        List<String> chunks = chunks(blob);
+        try {
+            if (chunks == null) {
+                return Files.newInputStream(blob.toPath());
+            }
+            Iterator<String> rest = chunks.iterator();
+            return new SequenceInputStream(new Enumeration<InputStream>() {
+                @Override
+                public boolean hasMoreElements() {
+                    return rest.hasNext();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    try {
+                        return Files.newInputStream(
+                                objectFile(rest.next()).toPath());
+                    } catch (IOException excp) {
+                        throw Utils.error("Could not read blob %s: %s", sha,
+                                excp.getMessage());
+                    }
+                }
+            });
+        } catch (IOException excp) {
+            throw Utils.error("Could not read blob %s: %s", sha,
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the length of the contents of the blob SHA, which for one
+     *  stored as chunks is the sum of the lengths its list records. */
+    long size(String sha) {
+        File blob = objectFile(sha);
+        if (chunks(blob) == null) {
+            return blob.length();
+        }
+        long size = 0;
+        String[] lines = Utils.readContentsAsString(blob).split("\n");
+        for (int k = 1; k < lines.length; k += 1) {
+            if (!lines[k].isEmpty()) {
+                size += Long.parseLong(
+                        lines[k].substring(0, lines[k].indexOf(' ')));
+            }
+        }
+        return size;
+    }
+
+    /** Returns the contents of the blob SHA, mapped into memory if it is
+     *  stored whole, or read into memory if it is stored as chunks. */
+    ByteBuffer map(String sha) {
+        File blob = objectFile(sha);
+        if (chunks(blob) == null) {
+            return map(blob);
+        }
+        try (InputStream in = open(sha)) {
+            return ByteBuffer.wrap(in.readAllBytes());
+        } catch (IOException excp) {
+            throw Utils.error("Could not read blob %s: %s", sha,
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the contents of FILE mapped into memory. */
+    static ByteBuffer map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        } catch (IOException excp) {
+            throw Utils.error("Could not read %s: %s", file.getName(),
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the contents of the blob SHA as a string. */
+    String read(String sha) {
+        File blob = objectFile(sha);
+        List<String> chunks = chunks(blob);
+        if (chunks == null) {
+            return Utils.readContentsAsString(blob);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            for (String chunk : chunks) {
+                Files.copy(objectFile(chunk).toPath(), out);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not read blob %s: %s", sha,
+                    excp.getMessage());
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /** Returns the ids of the chunks of the blob held in BLOB, or null if
+     *  it is stored whole. A chunk list names its own blob in its first
+     *  line, so no whole file can be mistaken for one. */
+    List<String> chunks(File blob) {
+        String header = MAGIC + blob.getParentFile().getName()
+                + blob.getName() + "\n";
+        byte[] start = new byte[header.length()];
+        try (InputStream in = Files.newInputStream(blob.toPath())) {
+            if (in.readNBytes(start, 0, start.length) < start.length
+                    || !header.equals(new String(start,
+                            StandardCharsets.ISO_8859_1))) {
+                return null;
+            }
+            String[] lines = new String(in.readAllBytes(),
+                    StandardCharsets.ISO_8859_1).split("\n");
+            List<String> chunks = new ArrayList<>(lines.length);
+            for (String line : lines) {
+                if (!line.isEmpty()) {
+                    chunks.add(line.substring(line.indexOf(' ') + 1));
+                }
+            }
+            return chunks;
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Returns the SHA-1 of the concatenation of CHUNKS, or null if one
+     *  of them is missing. */
+    String hash(List<String> chunks) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[Utils.BLOCK_SIZE];
+            for (String chunk : chunks) {
+                File file = objectFile(chunk);
+                if (!file.isFile()) {
+                    return null;
+                }
+                try (InputStream in = Files.newInputStream(file.toPath())) {
+                    for (int n = in.read(buffer); n >= 0;
+                         n = in.read(buffer)) {
+                        md.update(buffer, 0, n);
+                    }
+                }
+            }
+            return Utils.toHex(md.digest());
+        } catch (IOException | NoSuchAlgorithmException excp) {
+            return null;
+        }
+    }
+
+    /** Returns the file holding the object SHA. */
+    File objectFile(String sha) {
+        return Utils.join(_objects, sha.substring(0, 2), sha.substring(2));
+    }
+
+    /** Stores SOURCE, whose SHA-1 is SHA, as chunks and writes their list
+     *  to BLOB. */
+    private void writeChunked(String sha, File source, File blob)
+            throws IOException {
+        StringBuilder list = new StringBuilder(MAGIC + sha + "\n");
+        try (InputStream in = Files.newInputStream(source.toPath())) {
+            Chunker chunker = new Chunker(in);
+            for (int n = chunker.next(); n > 0; n = chunker.next()) {
+                byte[] data = chunker.buffer();
+                String chunk = sha1(data, n);
+                File file = objectFile(chunk);
+                if (!file.isFile()) {
+                    File temp = Utils.tempFile(file);
+                    try (OutputStream out =
+                                 Files.newOutputStream(temp.toPath())) {
+                        out.write(data, 0, n);
+                    }
+                    install(temp, file);
+                }
+                list.append(n).append(' ').append(chunk).append('\n');
+            }
+        }
+        File temp = Utils.tempFile(blob);
+        Utils.writeContents(temp, list.toString());
+        install(temp, blob);
+    }
+
+    /** Returns the SHA-1 of the first N bytes of DATA. */
+    private static String sha1(byte[] data, int n) {
+        byte[] bytes = new byte[n];
+        System.arraycopy(data, 0, bytes, 0, n);
+        return Utils.sha1(bytes);
+    }
+
+    /** Forces to disk the fan-out directories objects were added to since
+     *  the last call, so that every object written so far survives a
+     *  crash. The contents of each object are forced as it is written;
+     *  a directory is forced once however many objects it gained. */
+    void sync() {
+        for (File dir : _unsynced) {
+            _unsynced.remove(dir);
+            Utils.force(dir);
+        }
+    }
+
+    /** Forces the completely written TEMP to disk and moves it into place
+     *  as OBJECT, so that an object file is never seen half written, and
+     *  notes its directory for sync. */
+    private void install(File temp, File object) throws IOException {
+        Utils.force(temp);
+        Utils.install(temp, object);
+        _unsynced.add(object.getParentFile());
+    }
+
+    /** The object store. */
+    private final File _objects;
+    /** The directories objects were added to since the last sync. */
+    private final Set<File> _unsynced = ConcurrentHashMap.newKeySet();
+}
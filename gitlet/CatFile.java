@@ -0,0 +1,185 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/** Answers requests for the contents of objects, as cat-file --batch
+ *  reads them: a SHA-1, which may be abbreviated, or a branch, or
+ *  COMMIT:PATH, the version of the file PATH in the commit COMMIT names
+ *  in either way. Each answer is the object's SHA-1 and length on a
+ *  line, then its contents and a newline, or the request and "missing"
+ *  if it names nothing, or "ambiguous" if an abbreviation names several
+ *  objects. Objects never change once stored, so what is learned of them
+ *  is kept between requests: the sorted names of each fan-out directory
+ *  searched for an abbreviation, listed again only once the directory
+ *  changes, and the manifests of the commits read most recently.
+ *  @author Evelyn Vo
+ */
+class CatFile {
+
+    /** The most commit manifests kept. */
+    static final int CACHED_COMMITS = 256;
+
+    /** Matches a SHA-1 or an abbreviation of one. */
+    private static final Pattern HEX = Pattern.compile("[0-9a-f]*");
+
+    /** A server of the objects of BLOBS, kept under OBJECTS, reading the
+     *  head of a branch, given its name, with BRANCHES, which gives null
+     *  if there is no such branch. */
+    CatFile(BlobStore blobs, File objects,
+            Function<String, String> branches) {
+        _blobs = blobs;
+        _objects = objects;
+        _branches = branches;
+    }
+
+    /** Writes the answer to REQUEST to OUT. */
+    void answer(String request, OutputStream out) throws IOException {
+        String sha;
+        try {
+            sha = resolve(request);
+        } catch (GitletException excp) {
+            sha = null;
+        }
+        if (sha == null || sha.isEmpty()) {
+            out.write((request + " " + (sha == null ? "missing"
+                    : "ambiguous") + "\n").getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        out.write((sha + " " + _blobs.size(sha) + "\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        try (InputStream in = _blobs.open(sha)) {
+            in.transferTo(out);
+        }
+        out.write('\n');
+    }
+
+    /** Returns the SHA-1 of the object REQUEST names, the empty string if
+     *  it is an ambiguous abbreviation, or null if it names none. */
+    private String resolve(String request) {
+        int colon = request.indexOf(':');
+        String name = colon < 0 ? request : request.substring(0, colon);
+        String sha = find(name);
+        if (sha == null) {
+            sha = _branches.apply(name);
+        }
+        if (colon < 0 || sha == null || sha.isEmpty()) {
+            return sha;
+        }
+        Manifest manifest = manifest(sha);
+        int file = manifest.find(request.substring(colon + 1));
+        return file < 0 ? null : manifest.sha(file);
+    }
+
+    /** Returns the SHA-1 of the stored object whose SHA-1 starts with
+     *  PREFIX, the empty string if several do, or null if none does. */
+    private String find(String prefix) {
+        if (prefix.length() < 4 || prefix.length() > 40
+                || !HEX.matcher(prefix).matches()) {
+            return null;
+        }
+        if (prefix.length() == 40) {
+            return _blobs.objectFile(prefix).isFile() ? prefix : null;
+        }
+        String fanOut = prefix.substring(0, 2);
+        String rest = prefix.substring(2);
+        String[] names = names(fanOut, false);
+        int at = lowerBound(names, rest);
+        if (at == names.length || !names[at].startsWith(rest)) {
+            names = names(fanOut, true);
+            at = lowerBound(names, rest);
+            if (at == names.length || !names[at].startsWith(rest)) {
+                return null;
+            }
+        }
+        if (at + 1 < names.length && names[at + 1].startsWith(rest)) {
+            return "";
+        }
+        return fanOut + names[at];
+    }
+
+    /** Returns the sorted names of the objects in the fan-out directory
+     *  FANOUT, listed again if RELIST or if it changed since last
+     *  listed. */
+    private String[] names(String fanOut, boolean relist) {
+        File dir = Utils.join(_objects, fanOut);
+        Listing listing = _listings.get(fanOut);
+        long modified = dir.lastModified();
+        if (listing == null || relist || listing._modified != modified) {
+            String[] names = dir.list();
+            names = names == null ? new String[0] : names;
+            Arrays.sort(names);
+            listing = new Listing(names, modified);
+            _listings.put(fanOut, listing);
+        }
+        return listing._names;
+    }
+
+    /** Returns the position of the first of NAMES, which are sorted, that
+     *  is not less than KEY. */
+    private static int lowerBound(String[] names, String key) {
+        int lo = 0;
+        int hi = names.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (names[mid].compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Returns the manifest of the commit SHA, from the cache if it was
+     *  read recently. */
+    private Manifest manifest(String sha) {
+        Manifest manifest = _manifests.get(sha);
+        if (manifest == null) {
+            manifest = Manifest.read(_blobs.objectFile(sha));
+            _manifests.put(sha, manifest);
+        }
+        return manifest;
+    }
+
+    /** The names of a fan-out directory as of when it was last
+     *  modified. */
+    private static class Listing {
+        /** The listing NAMES of a directory last modified at MODIFIED. */
+        Listing(String[] names, long modified) {
+            _names = names;
+            _modified = modified;
+        }
+
+        /** The sorted names. */
+        private final String[] _names;
+        /** When the directory was last modified. */
+        private final long _modified;
+    }
+
+    /** The store objects are read from. */
+    private final BlobStore _blobs;
+    /** The directory the objects are kept in. */
+    private final File _objects;
+    /** Reads the head of a branch. */
+    private final Function<String, String> _branches;
+    /** The listing of each fan-out directory searched. */
+    private final Map<String, Listing> _listings = new LinkedHashMap<>();
+    /** The manifests of the commits read most recently. */
+    private final Map<String, Manifest> _manifests =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, Manifest> eldest) {
+                    return size() > CACHED_COMMITS;
+                }
+            };
+}
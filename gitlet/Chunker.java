@@ -0,0 +1,111 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Splits a stream into content-defined chunks, FastCDC style. A gear
+ *  hash rolls over the bytes of each chunk and a boundary falls where its
+ *  top bits are zero, so an insertion or deletion moves only the
+ *  boundaries near it and the chunks elsewhere keep their contents, and
+ *  so their ids. Boundaries are not looked for in the first MIN_SIZE
+ *  bytes of a chunk; a stricter mask is used below AVG_SIZE and a looser
+ *  one above it, which keeps chunk sizes close to AVG_SIZE; and no chunk
+ *  is longer than MAX_SIZE.
+ *  @author Evelyn Vo
+ */
+class Chunker {
+
+    /** The smallest chunk, other than the last. */
+    static final int MIN_SIZE = 1 << 14;
+
+    /** The size chunks are normalized towards. */
+    static final int AVG_SIZE = 1 << 16;
+
+    /** The largest chunk. */
+    static final int MAX_SIZE = 1 << 18;
+
+    /** The boundary mask used below AVG_SIZE: 18 bits, two more than
+     *  AVG_SIZE calls for. */
+    private static final long MASK_S = ((1L << 18) - 1) << (64 - 18);
+
+    /** The boundary mask used from AVG_SIZE on: 14 bits, two fewer. */
+    private static final long MASK_L = ((1L << 14) - 1) << (64 - 14);
+
+    /** A random value for each byte, fixed so that every repository cuts
+     *  the same contents at the same places. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int pos = 0; pos < GEAR.length; pos += 1) {
+            seed += 0x9E3779B97F4A7C15L;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[pos] = z ^ (z >>> 31);
+        }
+    }
+
+    /** A chunker over IN. */
+    Chunker(InputStream in) {
+        _in = in;
+    }
+
+    /** Reads the next chunk into buffer() and returns its length, or 0
+     *  at the end of the stream. */
+    int next() throws IOException {
+        _len -= _prev;
+        System.arraycopy(_data, _prev, _data, 0, _len);
+        while (!_eof && _len < _data.length) {
+            int n = _in.read(_data, _len, _data.length - _len);
+            if (n < 0) {
+                _eof = true;
+            } else {
+                _len += n;
+            }
+        }
+        _prev = cutPoint(_data, _len);
+        return _prev;
+    }
+
+    /** Returns the buffer whose first next() bytes are the current
+     *  chunk. */
+    byte[] buffer() {
+        return _data;
+    }
+
+    /** Returns the length of the chunk that starts DATA, whose first N
+     *  bytes are valid. */
+    static int cutPoint(byte[] data, int n) {
+        if (n <= MIN_SIZE) {
+            return n;
+        }
+        int normal = Math.min(AVG_SIZE, n);
+        long fp = 0;
+        int pos = MIN_SIZE;
+        for (; pos < normal; pos += 1) {
+            fp = (fp << 1) + GEAR[data[pos] & 0xff];
+            if ((fp & MASK_S) == 0) {
+                return pos + 1;
+            }
+        }
+        for (; pos < n; pos += 1) {
+            fp = (fp << 1) + GEAR[data[pos] & 0xff];
+            if ((fp & MASK_L) == 0) {
+                return pos + 1;
+            }
+        }
+        return n;
+    }
+
+    /** The stream being chunked. */
+    private final InputStream _in;
+    /** Bytes read from _in and not yet returned, starting at _prev. */
+    private final byte[] _data = new byte[MAX_SIZE];
+    /** The number of valid bytes in _data. */
+    private int _len;
+    /** The length of the chunk last returned. */
+    private int _prev;
+    /** True once _in is exhausted. */
+    private boolean _eof;
+}
@@ -0,0 +1,157 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/** An index of the commits on each branch by date, kept in a side file
+ *  per branch. The file lists the commits of the branch's first-parent
+ *  chain from the initial commit to the head, one record each: the
+ *  latest date of the commit and of every commit before it on the chain,
+ *  then the commit's raw SHA-1. Those dates never decrease, so the
+ *  commit a branch had reached by a given time is found by binary
+ *  search. A file is checked against the branch's head each time it is
+ *  used, and the head is walked back to the first commit the file
+ *  already lists; the records after that one are replaced by the
+ *  commits walked, so a commit, reset or merge costs only the commits it
+ *  moved past.
+ *  @author Evelyn Vo
+ */
+class CommitGraph {
+
+    /** The length of a record: a date, then a raw SHA-1. */
+    private static final int RECORD = Long.BYTES + ObjectId.RAW_LEN;
+
+    /** An index keeping its files under FOLDER and reading the manifest
+     *  of a commit, given its SHA-1, with COMMITS. */
+    CommitGraph(File folder, Function<String, Manifest> commits) {
+        _folder = folder;
+        _commits = commits;
+    }
+
+    /** Returns the SHA-1 of the latest commit on the first-parent chain
+     *  of BRANCH, whose head is HEAD, that was made by DATE, as were all
+     *  the commits before it, or null if there is none. */
+    String at(String branch, String head, long date) {
+        ByteBuffer index = update(branch, head);
+        int lo = 0;
+        int hi = index.limit() / RECORD;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (index.getLong(mid * RECORD) <= date) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo == 0 ? null : id(index, lo - 1).toHex();
+    }
+
+    /** Removes the index of BRANCH. */
+    void remove(String branch) {
+        file(branch).delete();
+    }
+
+    /** Returns the index of BRANCH, brought up to date with its head,
+     *  HEAD. */
+    private ByteBuffer update(String branch, String head) {
+        File file = file(branch);
+        ByteBuffer index = file.isFile() ? BlobStore.map(file)
+                : ByteBuffer.allocate(0);
+        int size = index.limit() / RECORD;
+        List<String> walked = new ArrayList<>();
+        List<Long> dates = new ArrayList<>();
+        int kept = 0;
+        for (String sha = head; sha != null; ) {
+            Manifest commit = _commits.apply(sha);
+            int at = find(index, size, ObjectId.fromHex(sha), commit.date());
+            if (at >= 0) {
+                kept = at + 1;
+                break;
+            }
+            walked.add(sha);
+            dates.add(commit.date());
+            String parent = commit.header(Manifest.PARENT1);
+            sha = parent.isEmpty() ? null : parent;
+        }
+        if (walked.isEmpty() && kept == size) {
+            return index;
+        }
+        byte[] records = new byte[(kept + walked.size()) * RECORD];
+        index.duplicate().get(records, 0, kept * RECORD);
+        ByteBuffer updated = ByteBuffer.wrap(records);
+        long latest = kept == 0 ? Long.MIN_VALUE
+                : index.getLong((kept - 1) * RECORD);
+        for (int k = walked.size() - 1; k >= 0; k -= 1) {
+            int pos = (kept + walked.size() - 1 - k) * RECORD;
+            latest = Math.max(latest, dates.get(k));
+            updated.putLong(pos, latest);
+            ObjectId.fromHex(walked.get(k)).writeRaw(records,
+                    pos + Long.BYTES);
+        }
+        write(file, records);
+        return updated;
+    }
+
+    /** Returns the position of the commit ID, made at DATE, among the
+     *  SIZE records of INDEX, or -1 if it is not there. The head the
+     *  index was last brought up to is checked first; any other commit
+     *  lies among the records whose date is its own. */
+    private static int find(ByteBuffer index, int size, ObjectId id,
+                            long date) {
+        if (size > 0 && id(index, size - 1).equals(id)) {
+            return size - 1;
+        }
+        if (date == Manifest.NO_DATE) {
+            return -1;
+        }
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (index.getLong(mid * RECORD) < date) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (; lo < size && index.getLong(lo * RECORD) == date; lo += 1) {
+            if (id(index, lo).equals(id)) {
+                return lo;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the SHA-1 of record POS of INDEX. */
+    private static ObjectId id(ByteBuffer index, int pos) {
+        byte[] raw = new byte[ObjectId.RAW_LEN];
+        ByteBuffer record = index.duplicate();
+        record.position(pos * RECORD + Long.BYTES);
+        record.get(raw);
+        return ObjectId.fromRaw(raw, 0);
+    }
+
+    /** Replaces FILE with RECORDS. */
+    private static void write(File file, byte[] records) {
+        try {
+            Utils.writeAtomically(file, records);
+        } catch (IOException excp) {
+            throw Utils.error("Could not write commit graph: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the file holding the index of BRANCH. */
+    private File file(String branch) {
+        return Utils.join(_folder, branch);
+    }
+
+    /** The directory the index files are kept in. */
+    private final File _folder;
+    /** Reads the manifest of a commit. */
+    private final Function<String, Manifest> _commits;
+}
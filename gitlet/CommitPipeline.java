@@ -0,0 +1,274 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Stores the files of a commit as blobs through three stages joined by
+ *  bounded queues: readers load each file, hashers compute its SHA-1 and
+ *  writers store it in the object store unless it is already there. Each
+ *  stage has its own threads, so reading, hashing and writing overlap,
+ *  and a full queue holds back the stage feeding it, so memory stays
+ *  bounded however many files there are. Files of at least INLINE_LIMIT
+ *  bytes are not loaded by the readers but streamed by the later stages.
+ *  Each stage counts the time it spends working, waiting for input and
+ *  stalled on a full output queue.
+ *  @author Evelyn Vo
+ */
+class CommitPipeline {
+
+    /** The largest file the readers load into memory. */
+    static final int INLINE_LIMIT = Utils.BLOCK_SIZE;
+
+    /** The number of files each queue holds. */
+    static final int QUEUE_CAPACITY = 64;
+
+    /** A pipeline storing blobs in BLOBS with READERS reader threads,
+     *  HASHERS hasher threads and WRITERS writer threads. */
+    CommitPipeline(BlobStore blobs, int readers, int hashers, int writers) {
+        _blobs = blobs;
+        _readers = readers;
+        _hashers = hashers;
+        _writers = writers;
+    }
+
+    /** A pipeline storing blobs in BLOBS with a thread count for each
+     *  stage suited to this machine. */
+    CommitPipeline(BlobStore blobs) {
+        this(blobs, 4, Runtime.getRuntime().availableProcessors(), 4);
+    }
+
+    /** Stores each of FILES, by name, as a blob and returns the SHA-1 of
+     *  each by name. If any file cannot be stored, stops every stage and
+     *  throws. */
+    Map<String, String> run(Map<String, File> files) {
+        _read = new Stage("read", _readers);
+        _hash = new Stage("hash", _hashers);
+        _write = new Stage("write", _writers);
+        List<Item> items = new ArrayList<>(files.size());
+        for (Map.Entry<String, File> file : files.entrySet()) {
+            items.add(new Item(file.getKey(), file.getValue()));
+        }
+        Map<String, String> result = new ConcurrentHashMap<>();
+        BlockingQueue<Item> toHash = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Item> toWrite = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        int n = items.size();
+        AtomicInteger next = new AtomicInteger();
+        int threads = _read.threads(n) + _hash.threads(n) + _write.threads(n);
+        if (threads == 0) {
+            return result;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Void> stages = new ExecutorCompletionService<>(pool);
+        long start = System.nanoTime();
+        for (int k = 0; k < _read.threads(n); k += 1) {
+            stages.submit(() -> _read.run(n,
+                    () -> items.get(next.getAndIncrement()), this::load,
+                    toHash));
+        }
+        for (int k = 0; k < _hash.threads(n); k += 1) {
+            stages.submit(() -> _hash.run(n, toHash::take, this::hash,
+                    toWrite));
+        }
+        for (int k = 0; k < _write.threads(n); k += 1) {
+            stages.submit(() -> _write.run(n, toWrite::take, item -> {
+                store(item);
+                result.put(item.name, item.sha);
+            }, null));
+        }
+        try {
+            for (int k = 0; k < threads; k += 1) {
+                stages.take().get();
+            }
+        } catch (ExecutionException excp) {
+            pool.shutdownNow();
+            Throwable cause = excp.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException excp) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw Utils.error("Interrupted.");
+        } finally {
+            pool.shutdown();
+            _elapsed = System.nanoTime() - start;
+        }
+        return result;
+    }
+
+    /** Returns a line for each stage of the last run: the files and bytes
+     *  it handled, its throughput while busy, and the time its threads
+     *  spent waiting for input and stalled on a full output queue. */
+    List<String> report() {
+        List<String> lines = new ArrayList<>();
+        if (_read == null) {
+            return lines;
+        }
+        lines.add(String.format("pipeline: %d files in %.3f s",
+                _read.items.get(), _elapsed / 1e9));
+        for (Stage stage : new Stage[] {_read, _hash, _write}) {
+            lines.add(stage.report());
+        }
+        return lines;
+    }
+
+    /** Loads the contents of ITEM's file if it is small enough. */
+    private void load(Item item) {
+        if (item.file.length() < INLINE_LIMIT) {
+            try {
+                item.data = Files.readAllBytes(item.file.toPath());
+            } catch (IOException excp) {
+                throw Utils.error("Could not read %s: %s", item.name,
+                        excp.getMessage());
+            }
+        }
+        item.size = item.data != null ? item.data.length
+                : item.file.length();
+    }
+
+    /** Computes the SHA-1 of ITEM. */
+    private void hash(Item item) {
+        item.sha = item.data != null ? Utils.sha1(item.data)
+                : Utils.sha1(item.file);
+    }
+
+    /** Stores ITEM as a blob. */
+    private void store(Item item) {
+        if (item.data != null) {
+            _blobs.write(item.sha, item.data);
+        } else {
+            _blobs.write(item.sha, item.file);
+        }
+        item.data = null;
+    }
+
+    /** A file passing through the pipeline. */
+    private static class Item {
+        /** The item for the file FILE named NAME. */
+        Item(String name, File file) {
+            this.name = name;
+            this.file = file;
+        }
+
+        /** The name of the file in the commit. */
+        private final String name;
+        /** The file. */
+        private final File file;
+        /** Its contents, if loaded by a reader. */
+        private byte[] data;
+        /** Its size in bytes. */
+        private long size;
+        /** Its SHA-1, once hashed. */
+        private String sha;
+    }
+
+    /** Takes the next item for a stage; may block. */
+    private interface Source {
+        /** Returns the next item. */
+        Item take() throws InterruptedException;
+    }
+
+    /** Does the work of a stage on one item. */
+    private interface Work {
+        /** Processes ITEM. */
+        void accept(Item item);
+    }
+
+    /** One stage of the pipeline and its counters. */
+    private static class Stage {
+        /** A stage called NAME running on up to THREADS threads. */
+        Stage(String name, int threads) {
+            _name = name;
+            _threads = threads;
+        }
+
+        /** Returns the number of threads this stage uses for N items. */
+        int threads(int n) {
+            return Math.min(_threads, n);
+        }
+
+        /** Processes items from SOURCE with WORK and passes them to SINK,
+         *  if it is not null, until this stage has claimed all N items
+         *  of the run. */
+        Void run(int n, Source source, Work work, BlockingQueue<Item> sink)
+                throws InterruptedException {
+            while (claimed.getAndIncrement() < n) {
+                long t0 = System.nanoTime();
+                Item item = source.take();
+                long t1 = System.nanoTime();
+                work.accept(item);
+                long t2 = System.nanoTime();
+                if (sink != null) {
+                    sink.put(item);
+                }
+                long t3 = System.nanoTime();
+                starved.addAndGet(t1 - t0);
+                busy.addAndGet(t2 - t1);
+                stalled.addAndGet(t3 - t2);
+                items.incrementAndGet();
+                bytes.addAndGet(item.size);
+            }
+            return null;
+        }
+
+        /** Returns the report line of this stage. */
+        String report() {
+            double mib = bytes.get() / (double) (1 << 20);
+            double busySeconds = busy.get() / 1e9 / Math.max(1, _threads);
+            return String.format("  %-5s x%-2d %7d files %9.1f MiB"
+                    + " %9.1f MiB/s busy, waited %.3f s, stalled %.3f s",
+                    _name, _threads, items.get(), mib,
+                    busySeconds > 0 ? mib / busySeconds : 0.0,
+                    starved.get() / 1e9, stalled.get() / 1e9);
+        }
+
+        /** The name of the stage. */
+        private final String _name;
+        /** The most threads the stage runs on. */
+        private final int _threads;
+        /** Items claimed by the stage's threads in this run. */
+        private final AtomicInteger claimed = new AtomicInteger();
+        /** Items processed. */
+        private final AtomicInteger items = new AtomicInteger();
+        /** Bytes processed. */
+        private final AtomicLong bytes = new AtomicLong();
+        /** Nanoseconds spent working. */
+        private final AtomicLong busy = new AtomicLong();
+        /** Nanoseconds spent waiting for input. */
+        private final AtomicLong starved = new AtomicLong();
+        /** Nanoseconds spent stalled on a full output queue. */
+        private final AtomicLong stalled = new AtomicLong();
+    }
+
+    /** The blobs of the object store. */
+    private final BlobStore _blobs;
+    /** The most reader threads. */
+    private final int _readers;
+    /** The most hasher threads. */
+    private final int _hashers;
+    /** The most writer threads. */
+    private final int _writers;
+    /** Loads files in the last run. */
+    private Stage _read;
+    /** Hashes files in the last run. */
+    private Stage _hash;
+    /** Stores files in the last run. */
+    private Stage _write;
+    /** Nanoseconds taken by the last run. */
+    private long _elapsed;
+}
@@ -0,0 +1,324 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/** The differences between two trees of files, each given as a sorted
+ *  Manifest. Which files changed is found by walking the two manifests
+ *  side by side and comparing SHA-1s, so files that did not change are
+ *  never read. The lines of each changed file are matched by MyersDiff
+ *  over LineIndexes, on several threads at once; only the edits that
+ *  result are kept, and a patch is written by streaming both versions a
+ *  second time, so no file is ever held in memory whole.
+ *  @author Evelyn Vo
+ */
+class Diff {
+
+    /** The number of unchanged lines shown around each change. */
+    static final int CONTEXT = 3;
+
+    /** The widest a --stat bar is drawn. */
+    private static final int BAR_WIDTH = 50;
+
+    /** A diff opening a stream of the contents of a version of a file,
+     *  given its SHA-1, with CONTENTS, and matching lines on IO. */
+    Diff(Function<String, InputStream> contents, IoExecutor io) {
+        _contents = contents;
+        _io = io;
+    }
+
+    /** Returns the files whose versions differ between FROM and TO, in
+     *  order of name. */
+    static List<Change> changes(Manifest from, Manifest to) {
+        List<Change> changes = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < from.size() || j < to.size()) {
+            int cmp = i == from.size() ? 1
+                    : j == to.size() ? -1 : from.compare(i, to, j);
+            if (cmp < 0) {
+                changes.add(new Change(from.name(i), from.sha(i), null));
+                i += 1;
+            } else if (cmp > 0) {
+                changes.add(new Change(to.name(j), null, to.sha(j)));
+                j += 1;
+            } else {
+                if (!from.sameSha(i, to, j)) {
+                    changes.add(new Change(from.name(i), from.sha(i),
+                            to.sha(j)));
+                }
+                i += 1;
+                j += 1;
+            }
+        }
+        return changes;
+    }
+
+    /** Writes CHANGES to OUT as a unified diff. */
+    void patch(List<Change> changes, OutputStream out) {
+        List<Edits> edits = _io.map(changes, this::edits);
+        try {
+            for (int k = 0; k < changes.size(); k += 1) {
+                patch(changes.get(k), edits.get(k), out);
+            }
+            out.flush();
+        } catch (IOException excp) {
+            throw Utils.error("Could not write diff: %s", excp.getMessage());
+        }
+    }
+
+    /** Writes to OUT the number of lines each of CHANGES inserts and
+     *  deletes, with a bar showing their proportion, and the totals. */
+    void stat(List<Change> changes, OutputStream out) {
+        List<Edits> edits = _io.map(changes, this::edits);
+        int nameWidth = 0;
+        int most = 0;
+        long inserted = 0;
+        long deleted = 0;
+        for (int k = 0; k < changes.size(); k += 1) {
+            Edits file = edits.get(k);
+            nameWidth = Math.max(nameWidth, changes.get(k).name().length());
+            most = Math.max(most, file.inserted() + file.deleted());
+            inserted += file.inserted();
+            deleted += file.deleted();
+        }
+        int countWidth = Integer.toString(most).length();
+        StringBuilder stat = new StringBuilder();
+        for (int k = 0; k < changes.size(); k += 1) {
+            Edits file = edits.get(k);
+            int plus = file.inserted();
+            int minus = file.deleted();
+            if (most > BAR_WIDTH) {
+                plus = scale(plus, most);
+                minus = scale(minus, most);
+            }
+            stat.append(String.format(" %-" + nameWidth + "s | %"
+                    + countWidth + "d %s%s%n", changes.get(k).name(),
+                    file.inserted() + file.deleted(), "+".repeat(plus),
+                    "-".repeat(minus)));
+        }
+        stat.append(String.format(" %d file%s changed, %d insertion%s(+),"
+                + " %d deletion%s(-)%n", changes.size(),
+                changes.size() == 1 ? "" : "s", inserted,
+                inserted == 1 ? "" : "s", deleted, deleted == 1 ? "" : "s"));
+        try {
+            out.write(stat.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException excp) {
+            throw Utils.error("Could not write diff: %s", excp.getMessage());
+        }
+    }
+
+    /** A file whose version differs between two trees. */
+    static class Change {
+        /** The change of the file NAME from the version FROM to TO,
+         *  either of which is null where the file is absent. */
+        Change(String name, String from, String to) {
+            _name = name;
+            _from = from;
+            _to = to;
+        }
+
+        /** Returns the name of the file. */
+        String name() {
+            return _name;
+        }
+
+        /** Returns the SHA-1 of the old version, or null if the file was
+         *  added. */
+        String from() {
+            return _from;
+        }
+
+        /** Returns the SHA-1 of the new version, or null if the file was
+         *  deleted. */
+        String to() {
+            return _to;
+        }
+
+        /** The name of the file. */
+        private final String _name;
+        /** The old version. */
+        private final String _from;
+        /** The new version. */
+        private final String _to;
+    }
+
+    /** The lines one version of a file must lose and gain to become the
+     *  other, as runs of consecutive edits. */
+    private static class Edits {
+        /** The edits of an old version of OLDSIZE lines and a new one of
+         *  NEWSIZE whose lines are matched as in MATCHES, or, if MATCHES
+         *  is null, share no lines. */
+        Edits(int oldSize, int newSize, int[] matches) {
+            _oldSize = oldSize;
+            _newSize = newSize;
+            int i = 0;
+            int j = 0;
+            while (i < oldSize || j < newSize) {
+                if (matches != null && i < oldSize && matches[i] == j) {
+                    i += 1;
+                    j += 1;
+                    continue;
+                }
+                int oldStart = i;
+                int newStart = j;
+                while (i < oldSize && (matches == null || matches[i] < 0)) {
+                    i += 1;
+                }
+                j = i < oldSize ? matches[i] : newSize;
+                _runs.add(new int[] {oldStart, i, newStart, j});
+                _deleted += i - oldStart;
+                _inserted += j - newStart;
+            }
+        }
+
+        /** Returns the number of lines inserted. */
+        int inserted() {
+            return _inserted;
+        }
+
+        /** Returns the number of lines deleted. */
+        int deleted() {
+            return _deleted;
+        }
+
+        /** The number of lines of the old version. */
+        private final int _oldSize;
+        /** The number of lines of the new version. */
+        private final int _newSize;
+        /** Each run of edits, as the start and end of the old lines it
+         *  deletes and of the new lines it inserts. */
+        private final List<int[]> _runs = new ArrayList<>();
+        /** The number of lines inserted. */
+        private int _inserted;
+        /** The number of lines deleted. */
+        private int _deleted;
+    }
+
+    /** Returns the edits that turn the old version of CHANGE into the
+     *  new. */
+    private Edits edits(Change change) {
+        LineIndex from = index(change.from());
+        LineIndex to = index(change.to());
+        if (from.size() == 0 || to.size() == 0) {
+            return new Edits(from.size(), to.size(), null);
+        }
+        return new Edits(from.size(), to.size(),
+                MyersDiff.matches(from, to));
+    }
+
+    /** Writes the patch of CHANGE, whose edits are EDITS, to OUT. */
+    private void patch(Change change, Edits edits, OutputStream out)
+            throws IOException {
+        String name = change.name();
+        StringBuilder header = new StringBuilder();
+        header.append("diff --git a/").append(name).append(" b/")
+                .append(name).append('\n');
+        if (change.from() == null) {
+            header.append("new file\n");
+        } else if (change.to() == null) {
+            header.append("deleted file\n");
+        }
+        header.append("--- ").append(change.from() == null ? "/dev/null"
+                : "a/" + name).append('\n');
+        header.append("+++ ").append(change.to() == null ? "/dev/null"
+                : "b/" + name).append('\n');
+        write(header, out);
+        if (edits._runs.isEmpty()) {
+            return;
+        }
+        try (LineReader from = reader(change.from());
+             LineReader to = reader(change.to())) {
+            int oldLine = 0;
+            int newLine = 0;
+            List<int[]> runs = edits._runs;
+            for (int first = 0; first < runs.size(); ) {
+                int last = first;
+                while (last + 1 < runs.size()
+                        && runs.get(last + 1)[0] - runs.get(last)[1]
+                           <= 2 * CONTEXT) {
+                    last += 1;
+                }
+                int[] start = runs.get(first);
+                int[] end = runs.get(last);
+                int before = Math.min(CONTEXT, start[0]);
+                int after = Math.min(CONTEXT, edits._oldSize - end[1]);
+                int oldStart = start[0] - before;
+                int newStart = start[2] - before;
+                int oldEnd = end[1] + after;
+                int newEnd = end[3] + after;
+                write(new StringBuilder("@@ -")
+                        .append(range(oldStart, oldEnd - oldStart))
+                        .append(" +").append(range(newStart, newEnd - newStart))
+                        .append(" @@\n"), out);
+                from.skip(oldStart - oldLine);
+                to.skip(newStart - newLine);
+                oldLine = oldStart;
+                newLine = newStart;
+                for (int run = first; run <= last; run += 1) {
+                    int[] edit = runs.get(run);
+                    from.copyPrefixed(edit[0] - oldLine, ' ', out);
+                    to.skip(edit[2] - newLine);
+                    from.copyPrefixed(edit[1] - edit[0], '-', out);
+                    to.copyPrefixed(edit[3] - edit[2], '+', out);
+                    oldLine = edit[1];
+                    newLine = edit[3];
+                }
+                from.copyPrefixed(oldEnd - oldLine, ' ', out);
+                to.skip(newEnd - newLine);
+                oldLine = oldEnd;
+                newLine = newEnd;
+                first = last + 1;
+            }
+        }
+    }
+
+    /** Returns the range of a hunk starting at line START, counted from
+     *  0, and LENGTH lines long, as a unified diff writes it. */
+    private static String range(int start, int length) {
+        if (length == 1) {
+            return Integer.toString(start + 1);
+        }
+        return (length == 0 ? start : start + 1) + "," + length;
+    }
+
+    /** Returns COUNT scaled to a bar of at most BAR_WIDTH for the
+     *  largest count, MOST, keeping any nonzero count visible. */
+    private static int scale(int count, int most) {
+        if (count == 0) {
+            return 0;
+        }
+        return Math.max(1, (int) ((long) count * BAR_WIDTH / most));
+    }
+
+    /** Returns the line index of the version SHA, which is empty if SHA
+     *  is null. */
+    private LineIndex index(String sha) {
+        return LineIndex.read(sha == null ? InputStream.nullInputStream()
+                : _contents.apply(sha));
+    }
+
+    /** Returns a reader of the lines of the version SHA, which has none
+     *  if SHA is null. */
+    private LineReader reader(String sha) {
+        return new LineReader(sha == null ? InputStream.nullInputStream()
+                : _contents.apply(sha));
+    }
+
+    /** Writes TEXT to OUT. */
+    private static void write(CharSequence text, OutputStream out)
+            throws IOException {
+        out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Opens the contents of a version. */
+    private final Function<String, InputStream> _contents;
+    /** Runs the line matching of each file. */
+    private final IoExecutor _io;
+}
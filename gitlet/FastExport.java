@@ -0,0 +1,178 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/** Writes the history of branches as a stream in the format of git
+ *  fast-import, as FastImport reads it. Commits are written parents
+ *  first, each once, however many branches reach it, with the files it
+ *  changed from its first parent; each version of a file is written as
+ *  a blob the first time a commit holds it and named by its mark after
+ *  that. Blobs are streamed from the object store, so no file is held in
+ *  memory whole and the working directory is never touched. The initial
+ *  commit is left out: a commit whose parent it is is written as a root,
+ *  as FastImport reads one.
+ *  @author Evelyn Vo
+ */
+class FastExport {
+
+    /** The identity commits are written with, as gitlet records none. */
+    private static final String COMMITTER = "gitlet <gitlet>";
+
+    /** An export writing to OUT the objects of BLOBS, reading the
+     *  manifest of a commit, given its SHA-1, with COMMITS. */
+    FastExport(BlobStore blobs, Function<String, Manifest> commits,
+               OutputStream out) {
+        _blobs = blobs;
+        _commits = commits;
+        _out = out;
+    }
+
+    /** Writes the commits HEAD reaches that are not yet written, then
+     *  points BRANCH at HEAD. */
+    void export(String branch, String head) throws IOException {
+        String ref = "refs/heads/" + branch;
+        for (String sha : unwritten(head)) {
+            commit(ref, sha);
+        }
+        if (head.equals(Repository.INITIAL)) {
+            return;
+        }
+        write("reset " + ref + "\nfrom " + _marks.get(head) + "\n\n");
+    }
+
+    /** Ends the stream. */
+    void finish() throws IOException {
+        write("done\n");
+        _out.flush();
+    }
+
+    /** Returns the number of commits written. */
+    int commits() {
+        return _marks.size();
+    }
+
+    /** Returns the commits HEAD reaches that are not yet written, each
+     *  after its parents. */
+    private List<String> unwritten(String head) {
+        List<String> order = new ArrayList<>();
+        Map<String, Boolean> expanded = new HashMap<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        stack.push(head);
+        while (!stack.isEmpty()) {
+            String sha = stack.peek();
+            if (sha.equals(Repository.INITIAL) || _marks.containsKey(sha)
+                    || expanded.get(sha) == Boolean.TRUE) {
+                stack.pop();
+            } else if (expanded.containsKey(sha)) {
+                stack.pop();
+                expanded.put(sha, true);
+                order.add(sha);
+            } else {
+                expanded.put(sha, false);
+                Manifest commit = _commits.apply(sha);
+                for (int line : new int[] {Manifest.PARENT2,
+                                           Manifest.PARENT1}) {
+                    String parent = commit.header(line);
+                    if (!parent.isEmpty()) {
+                        stack.push(parent);
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /** Writes the commit SHA to REF, after the blobs it adds. */
+    private void commit(String ref, String sha) throws IOException {
+        Manifest commit = _commits.apply(sha);
+        String parent1 = commit.header(Manifest.PARENT1);
+        String parent2 = commit.header(Manifest.PARENT2);
+        Manifest base = parent1.isEmpty()
+                || parent1.equals(Repository.INITIAL)
+                ? Manifest.of(Map.of()) : _commits.apply(parent1);
+        List<Diff.Change> changes = Diff.changes(base, commit);
+        for (Diff.Change change : changes) {
+            if (change.to() != null && !_blobMarks.containsKey(change.to())) {
+                blob(change.to());
+            }
+        }
+        String mark = ":" + (_blobMarks.size() + _marks.size() + 1);
+        _marks.put(sha, mark);
+        long date = commit.date() == Manifest.NO_DATE ? 0
+                : Math.floorDiv(commit.date(), 1000);
+        String message = commit.message() == null ? ""
+                : commit.message() + "\n";
+        StringBuilder text = new StringBuilder();
+        if (_marks.get(parent1) == null) {
+            text.append("reset ").append(ref).append("\n");
+        }
+        text.append("commit ").append(ref).append("\nmark ").append(mark)
+                .append("\ncommitter ").append(COMMITTER).append(' ')
+                .append(date).append(" +0000\ndata ")
+                .append(message.getBytes(StandardCharsets.UTF_8).length)
+                .append('\n').append(message);
+        if (_marks.get(parent1) != null) {
+            text.append("from ").append(_marks.get(parent1)).append('\n');
+        }
+        if (!parent2.isEmpty()) {
+            text.append("merge ").append(_marks.get(parent2)).append('\n');
+        }
+        for (Diff.Change change : changes) {
+            if (change.to() == null) {
+                text.append("D ").append(quote(change.name()));
+            } else {
+                text.append("M 100644 ").append(_blobMarks.get(change.to()))
+                        .append(' ').append(quote(change.name()));
+            }
+            text.append('\n');
+        }
+        write(text.append('\n').toString());
+    }
+
+    /** Writes the blob SHA, streamed from the store, with a new mark. */
+    private void blob(String sha) throws IOException {
+        String mark = ":" + (_blobMarks.size() + _marks.size() + 1);
+        _blobMarks.put(sha, mark);
+        write("blob\nmark " + mark + "\ndata " + _blobs.size(sha) + "\n");
+        try (InputStream in = _blobs.open(sha)) {
+            in.transferTo(_out);
+        }
+        write("\n");
+    }
+
+    /** Returns PATH as a file command names it: quoted, with escapes,
+     *  if it starts with a quote or holds a newline, and as it is
+     *  otherwise. */
+    private static String quote(String path) {
+        if (!path.startsWith("\"") && path.indexOf('\n') < 0) {
+            return path;
+        }
+        return "\"" + path.replace("\\", "\\\\").replace("\"", "\\\"")
+                .replace("\n", "\\n") + "\"";
+    }
+
+    /** Writes TEXT to the stream. */
+    private void write(String text) throws IOException {
+        _out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** The store blobs are read from. */
+    private final BlobStore _blobs;
+    /** Reads the manifest of a commit. */
+    private final Function<String, Manifest> _commits;
+    /** The stream written. */
+    private final OutputStream _out;
+    /** The mark of each commit written. */
+    private final Map<String, String> _marks = new HashMap<>();
+    /** The mark of each blob written. */
+    private final Map<String, String> _blobMarks = new HashMap<>();
+}
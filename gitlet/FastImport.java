@@ -0,0 +1,575 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/** Reads a stream in the format of git fast-import and stores the blobs
+ *  and commits it describes. Blobs are hashed and stored as their data
+ *  is read, and each commit's manifest is built from the tree of its
+ *  first parent, kept in memory for the last commit of each branch, so
+ *  neither the working directory nor the staging area is touched. A
+ *  commit's SHA-1 is found as a commit's made by commit would be, and a
+ *  commit with no parent in the stream is given the initial commit as
+ *  its parent, as every commit has one. The branches moved and the
+ *  commits made are kept for the caller, which updates refs and logs
+ *  once the whole stream is read. Tags, notes and features are read and
+ *  ignored; a file's mode is ignored but for submodules, which are
+ *  skipped.
+ *  @author Evelyn Vo
+ */
+class FastImport {
+
+    /** The prefix of the refs that name branches. */
+    private static final String HEADS = "refs/heads/";
+
+    /** An import storing objects in BLOBS, reading the manifest of a
+     *  commit already stored, given its SHA-1, with COMMITS, and the head
+     *  of an existing branch, given its name, with BRANCHES, which gives
+     *  null if there is no such branch. */
+    FastImport(BlobStore blobs, Function<String, Manifest> commits,
+               Function<String, String> branches) {
+        _blobs = blobs;
+        _commits = commits;
+        _branches = branches;
+    }
+
+    /** Reads the whole stream IN and stores what it describes. */
+    void run(InputStream in) {
+        _in = new BufferedInputStream(in, Utils.BLOCK_SIZE);
+        try {
+            String line = readLine();
+            while (line != null) {
+                if (line.isEmpty() || line.startsWith("#")
+                        || line.startsWith("progress ")
+                        || line.equals("checkpoint")
+                        || line.startsWith("feature ")
+                        || line.startsWith("option ")) {
+                    line = readLine();
+                } else if (line.equals("done")) {
+                    break;
+                } else if (line.equals("blob")) {
+                    line = blob();
+                } else if (line.startsWith("commit ")) {
+                    line = commit(line.substring("commit ".length()));
+                } else if (line.startsWith("reset ")) {
+                    line = reset(line.substring("reset ".length()));
+                } else if (line.startsWith("tag ")) {
+                    line = tag();
+                } else {
+                    throw Utils.error("Unsupported fast-import command: %s",
+                            line);
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not read the import: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the commits made, in the order they were read. */
+    List<Commit> commits() {
+        return _made;
+    }
+
+    /** Returns the new head of each branch the import moved, in the
+     *  order they were first moved. */
+    Map<String, String> heads() {
+        Map<String, String> heads = new LinkedHashMap<>();
+        for (Map.Entry<String, String> head : _heads.entrySet()) {
+            if (head.getValue() != null) {
+                heads.put(head.getKey(), head.getValue());
+            }
+        }
+        return heads;
+    }
+
+    /** Returns the number of blobs read. */
+    int blobs() {
+        return _blobCount;
+    }
+
+    /** A commit made by the import. */
+    static class Commit {
+        /** The commit SHA on BRANCH whose parents are PARENT1 and PARENT2,
+         *  which is null unless it is a merge, made at DATE with
+         *  MESSAGE. */
+        Commit(String sha, String branch, String parent1, String parent2,
+               Date date, String message) {
+            _sha = sha;
+            _branch = branch;
+            _parent1 = parent1;
+            _parent2 = parent2;
+            _date = date;
+            _message = message;
+        }
+
+        /** Returns the SHA-1 of the commit. */
+        String sha() {
+            return _sha;
+        }
+
+        /** Returns the branch the commit was made on. */
+        String branch() {
+            return _branch;
+        }
+
+        /** Returns the first parent. */
+        String parent1() {
+            return _parent1;
+        }
+
+        /** Returns the second parent, or null. */
+        String parent2() {
+            return _parent2;
+        }
+
+        /** Returns the date of the commit. */
+        Date date() {
+            return _date;
+        }
+
+        /** Returns the message of the commit. */
+        String message() {
+            return _message;
+        }
+
+        /** The SHA-1 of the commit. */
+        private final String _sha;
+        /** The branch. */
+        private final String _branch;
+        /** The first parent. */
+        private final String _parent1;
+        /** The second parent. */
+        private final String _parent2;
+        /** The date. */
+        private final Date _date;
+        /** The message. */
+        private final String _message;
+    }
+
+    /** Reads a blob command and returns the line after it. */
+    private String blob() throws IOException {
+        String line = nextLine();
+        String mark = null;
+        if (line.startsWith("mark ")) {
+            mark = line.substring("mark ".length());
+            line = nextLine();
+        }
+        if (line.startsWith("original-oid ")) {
+            line = nextLine();
+        }
+        String sha = storeData(line);
+        if (mark != null) {
+            _marks.put(mark, sha);
+        }
+        return readLine();
+    }
+
+    /** Reads a commit command to the ref REF and returns the line after
+     *  it. */
+    private String commit(String ref) throws IOException {
+        String branch = branch(ref);
+        String line = nextLine();
+        String mark = null;
+        if (line.startsWith("mark ")) {
+            mark = line.substring("mark ".length());
+            line = nextLine();
+        }
+        if (line.startsWith("original-oid ")) {
+            line = nextLine();
+        }
+        if (line.startsWith("author ")) {
+            line = nextLine();
+        }
+        if (!line.startsWith("committer ")) {
+            throw Utils.error("Expected committer: %s", line);
+        }
+        String[] who = line.split(" ");
+        Date date = new Date(1000 * Long.parseLong(who[who.length - 2]));
+        line = nextLine();
+        if (line.startsWith("encoding ")) {
+            line = nextLine();
+        }
+        String message = new String(readData(line), StandardCharsets.UTF_8);
+        if (message.endsWith("\n")) {
+            message = message.substring(0, message.length() - 1);
+        }
+        line = readLine();
+        if (line != null && line.isEmpty()) {
+            line = readLine();
+        }
+        String parent1 = null;
+        String parent2 = null;
+        if (line != null && line.startsWith("from ")) {
+            parent1 = resolve(line.substring("from ".length()));
+            line = readLine();
+        } else if (head(branch) != null) {
+            parent1 = head(branch);
+        }
+        if (line != null && line.startsWith("merge ")) {
+            parent2 = resolve(line.substring("merge ".length()));
+            line = readLine();
+            if (line != null && line.startsWith("merge ")) {
+                throw Utils.error("Octopus merges are not supported.");
+            }
+        }
+        TreeMap<String, String> tree = tree(branch, parent1);
+        if (parent1 == null) {
+            parent1 = Repository.INITIAL;
+        }
+        for (;; line = readLine()) {
+            if (line == null) {
+                break;
+            } else if (line.startsWith("M ")) {
+                modify(line, tree);
+            } else if (line.startsWith("D ")) {
+                remove(tree, unquote(line.substring(2)));
+            } else if (line.startsWith("C ") || line.startsWith("R ")) {
+                copy(line, tree);
+            } else if (line.equals("deleteall")) {
+                tree.clear();
+            } else if (line.startsWith("N ")) {
+                if (line.startsWith("N inline ")) {
+                    readData(nextLine());
+                }
+            } else {
+                break;
+            }
+        }
+        StringBuilder contents = new StringBuilder();
+        for (Map.Entry<String, String> file : tree.entrySet()) {
+            contents.append(file.getKey()).append(' ')
+                    .append(file.getValue()).append('\n');
+        }
+        ZoneOffset zone = ZoneId.systemDefault().getRules()
+                .getOffset(date.toInstant());
+        String dateLine = Manifest.dateLine(date.getTime(), zone);
+        String sha = Utils.sha1(parent1 + "\n"
+                + (parent2 == null ? "" : parent2) + "\n" + dateLine + "\n"
+                + message + "\n" + contents);
+        _blobs.write(sha, Manifest.format(branch, parent1, parent2,
+                date.getTime(), zone, message, contents.toString())
+                .getBytes(StandardCharsets.UTF_8));
+        _made.add(new Commit(sha, branch, parent1, parent2, date, message));
+        if (mark != null) {
+            _marks.put(mark, sha);
+        }
+        _heads.put(branch, sha);
+        _trees.put(branch, tree);
+        _treeOf.put(branch, sha);
+        return line;
+    }
+
+    /** Reads a reset command of the ref REF and returns the line after
+     *  it. */
+    private String reset(String ref) throws IOException {
+        String line = readLine();
+        String from = null;
+        if (line != null && line.startsWith("from ")) {
+            from = resolve(line.substring("from ".length()));
+            line = readLine();
+        }
+        if (ref.startsWith(HEADS)) {
+            _heads.put(branch(ref), from);
+        }
+        return line;
+    }
+
+    /** Reads a tag command, which is ignored, and returns the line after
+     *  it. */
+    private String tag() throws IOException {
+        String line = readLine();
+        while (line != null && !line.startsWith("data ")) {
+            line = readLine();
+        }
+        readData(line);
+        return readLine();
+    }
+
+    /** Applies the file command LINE, which is an M command, to TREE. */
+    private void modify(String line, TreeMap<String, String> tree)
+            throws IOException {
+        int modeEnd = line.indexOf(' ', 2);
+        int refEnd = line.indexOf(' ', modeEnd + 1);
+        String mode = line.substring(2, modeEnd);
+        String ref = line.substring(modeEnd + 1, refEnd);
+        String path = unquote(line.substring(refEnd + 1));
+        String sha;
+        if (ref.equals("inline")) {
+            sha = storeData(nextLine());
+        } else if (ref.startsWith(":")) {
+            sha = _marks.get(ref);
+            if (sha == null) {
+                throw Utils.error("No such mark: %s", ref);
+            }
+        } else {
+            sha = ref;
+        }
+        if (mode.equals("160000")) {
+            return;
+        } else if (mode.equals("040000")) {
+            throw Utils.error("Trees are not supported: %s", path);
+        }
+        tree.put(path, sha);
+    }
+
+    /** Applies the file command LINE, which is a C or R command, to
+     *  TREE, copying or renaming a file or a directory. */
+    private void copy(String line, TreeMap<String, String> tree) {
+        String rest = line.substring(2);
+        String source;
+        String target;
+        if (rest.startsWith("\"")) {
+            int end = closingQuote(rest);
+            source = unquote(rest.substring(0, end + 1));
+            target = unquote(rest.substring(end + 2));
+        } else {
+            int space = rest.indexOf(' ');
+            source = rest.substring(0, space);
+            target = unquote(rest.substring(space + 1));
+        }
+        Map<String, String> moved = new TreeMap<>();
+        if (tree.containsKey(source)) {
+            moved.put(target, tree.get(source));
+        }
+        for (Map.Entry<String, String> file
+                : under(tree, source).entrySet()) {
+            moved.put(target + file.getKey().substring(source.length()),
+                    file.getValue());
+        }
+        if (line.startsWith("R ")) {
+            remove(tree, source);
+        }
+        remove(tree, target);
+        tree.putAll(moved);
+    }
+
+    /** Removes the file or directory PATH from TREE. */
+    private static void remove(TreeMap<String, String> tree, String path) {
+        tree.remove(path);
+        under(tree, path).clear();
+    }
+
+    /** Returns the files of TREE under the directory PATH. */
+    private static SortedMap<String, String> under(
+            TreeMap<String, String> tree, String path) {
+        return tree.subMap(path + "/", path + "0");
+    }
+
+    /** Returns the tree of the commit PARENT, which is empty if PARENT is
+     *  null, for a new commit on BRANCH. The tree of the last commit on
+     *  BRANCH is reused in place, and that of another branch's last
+     *  commit is copied. */
+    private TreeMap<String, String> tree(String branch, String parent) {
+        if (parent == null) {
+            return new TreeMap<>();
+        } else if (parent.equals(_treeOf.get(branch))) {
+            return _trees.get(branch);
+        }
+        for (Map.Entry<String, String> other : _treeOf.entrySet()) {
+            if (parent.equals(other.getValue())) {
+                return new TreeMap<>(_trees.get(other.getKey()));
+            }
+        }
+        Manifest manifest = _commits.apply(parent);
+        TreeMap<String, String> tree = new TreeMap<>();
+        for (int i = 0; i < manifest.size(); i += 1) {
+            tree.put(manifest.name(i), manifest.sha(i));
+        }
+        return tree;
+    }
+
+    /** Returns the head of BRANCH as the import has left it so far, or
+     *  null if it has none. */
+    private String head(String branch) {
+        if (_heads.containsKey(branch)) {
+            return _heads.get(branch);
+        }
+        return _branches.apply(branch);
+    }
+
+    /** Returns the SHA-1 of the commit REF names: a mark, a SHA-1 or a
+     *  branch. */
+    private String resolve(String ref) {
+        String sha;
+        if (ref.startsWith(":")) {
+            sha = _marks.get(ref);
+        } else if (ObjectId.isId(ref)) {
+            sha = ref;
+        } else {
+            sha = head(branch(ref));
+        }
+        if (sha == null) {
+            throw Utils.error("No such commit: %s", ref);
+        }
+        return sha;
+    }
+
+    /** Returns the branch REF names. */
+    private static String branch(String ref) {
+        return ref.startsWith(HEADS) ? ref.substring(HEADS.length()) : ref;
+    }
+
+    /** Reads the data command LINE and its data, stores the data as a
+     *  blob and returns its SHA-1. Data too large to store whole is
+     *  copied to a temporary file and stored as chunks. */
+    private String storeData(String line) throws IOException {
+        _blobCount += 1;
+        if (line.startsWith("data ") && !line.startsWith("data <<")) {
+            long size = Long.parseLong(line.substring("data ".length()));
+            if (size >= BlobStore.CHUNK_THRESHOLD) {
+                File temp = File.createTempFile("import", null);
+                try {
+                    try (OutputStream out =
+                                 Files.newOutputStream(temp.toPath())) {
+                        copy(size, out);
+                    }
+                    String sha = Utils.sha1(temp);
+                    _blobs.write(sha, temp);
+                    return sha;
+                } finally {
+                    temp.delete();
+                }
+            }
+        }
+        byte[] data = readData(line);
+        String sha = Utils.sha1(data);
+        _blobs.write(sha, data);
+        return sha;
+    }
+
+    /** Reads the data command LINE and returns its data. */
+    private byte[] readData(String line) throws IOException {
+        if (line == null || !line.startsWith("data ")) {
+            throw Utils.error("Expected data: %s", line);
+        }
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        String size = line.substring("data ".length());
+        if (size.startsWith("<<")) {
+            String delimiter = size.substring(2);
+            for (String text = readLine(); !delimiter.equals(text);
+                 text = readLine()) {
+                if (text == null) {
+                    throw Utils.error("Unterminated data.");
+                }
+                data.write((text + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            copy(Long.parseLong(size), data);
+        }
+        return data.toByteArray();
+    }
+
+    /** Copies the next SIZE bytes of the stream to OUT. */
+    private void copy(long size, OutputStream out) throws IOException {
+        byte[] buffer = new byte[Utils.BLOCK_SIZE];
+        while (size > 0) {
+            int n = _in.read(buffer, 0, (int) Math.min(buffer.length, size));
+            if (n < 0) {
+                throw Utils.error("Unexpected end of data.");
+            }
+            out.write(buffer, 0, n);
+            size -= n;
+        }
+    }
+
+    /** Returns the next line of the stream, without its newline, or null
+     *  at its end. */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c = _in.read();
+        if (c < 0) {
+            return null;
+        }
+        for (; c >= 0 && c != '\n'; c = _in.read()) {
+            line.write(c);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the next line of the stream, which must have one. */
+    private String nextLine() throws IOException {
+        String line = readLine();
+        if (line == null) {
+            throw Utils.error("Unexpected end of import.");
+        }
+        return line;
+    }
+
+    /** Returns PATH without the quotes and escapes of a quoted path. */
+    private static String unquote(String path) {
+        if (!path.startsWith("\"")) {
+            return path;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int pos = 1; pos < path.length() - 1; pos += 1) {
+            char c = path.charAt(pos);
+            if (c != '\\') {
+                byte[] text = String.valueOf(c)
+                        .getBytes(StandardCharsets.UTF_8);
+                bytes.write(text, 0, text.length);
+                continue;
+            }
+            pos += 1;
+            c = path.charAt(pos);
+            if (c >= '0' && c <= '7') {
+                bytes.write(Integer.parseInt(path.substring(pos, pos + 3),
+                        8));
+                pos += 2;
+            } else {
+                bytes.write(c == 'n' ? '\n' : c == 't' ? '\t' : c);
+            }
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the position of the quote closing the quoted path that
+     *  starts TEXT. */
+    private static int closingQuote(String text) {
+        int pos = 1;
+        while (text.charAt(pos) != '"') {
+            pos += text.charAt(pos) == '\\' ? 2 : 1;
+        }
+        return pos;
+    }
+
+    /** The store objects are written to. */
+    private final BlobStore _blobs;
+    /** Reads the manifest of a stored commit. */
+    private final Function<String, Manifest> _commits;
+    /** Reads the head of an existing branch. */
+    private final Function<String, String> _branches;
+    /** The stream being read. */
+    private InputStream _in;
+    /** The SHA-1 each mark names. */
+    private final Map<String, String> _marks = new HashMap<>();
+    /** The head of each branch the import moved, or null if it was
+     *  reset to nothing. */
+    private final Map<String, String> _heads = new LinkedHashMap<>();
+    /** The tree of the last commit made on each branch. */
+    private final Map<String, TreeMap<String, String>> _trees =
+            new HashMap<>();
+    /** The last commit made on each branch. */
+    private final Map<String, String> _treeOf = new HashMap<>();
+    /** The commits made. */
+    private final List<Commit> _made = new ArrayList<>();
+    /** The number of blobs read. */
+    private int _blobCount;
+}
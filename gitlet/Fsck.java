@@ -0,0 +1,202 @@
+package gitlet;
+
+import java.io.File;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/** Integrity verification of the object store.
+ *  Commits are checked structurally: each must exist and name parents and
+ *  blobs that exist. A commit that is not a merge and records the zone it
+ *  was made in is also re-hashed from the parent, date, zone, message and
+ *  files it records; merges, whose ids are hashed with their split point,
+ *  and older commits, which record no zone, date or message, cannot be.
+ *  Every other object is re-hashed from disk and compared against its
+ *  file name, a chunked blob through the chunks it lists. The re-hashing
+ *  is sharded by fan-out directory and run in parallel, with each object
+ *  streamed through the digest in blocks.
+ *  @author Evelyn Vo
+ */
+class Fsck {
+
+    /** A checker for the object store OBJECTS. */
+    Fsck(File objects) {
+        _objects = objects;
+        _blobs = new BlobStore(objects);
+    }
+
+    /** Verifies every commit reachable from ROOTS or from those LOGGED
+     *  commits that are still present, then re-hashes every object that is
+     *  not one of those commits. LOGGED commits may have been collected,
+     *  so their absence is not an error. */
+    void check(Collection<String> roots, Collection<String> logged) {
+        _problems = Collections.synchronizedList(new ArrayList<>());
+        _checked.set(0);
+        ObjectIdSet commits = checkCommits(roots, logged);
+        File[] shards = _objects.listFiles(File::isDirectory);
+        if (shards != null) {
+            Arrays.stream(shards).parallel()
+                    .forEach(shard -> checkShard(shard, commits));
+        }
+    }
+
+    /** Returns the problems found by the last check, sorted. */
+    List<String> problems() {
+        List<String> result = new ArrayList<>(_problems);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Returns the number of objects examined by the last check. */
+    int checked() {
+        return _checked.get();
+    }
+
+    /** Walks the commit graph from ROOTS and the LOGGED commits still
+     *  present, one generation at a time, verifying the commits of each
+     *  generation in parallel. Returns the ids of all commits visited. */
+    private ObjectIdSet checkCommits(Collection<String> roots,
+                                     Collection<String> logged) {
+        ObjectIdSet visited = new ObjectIdSet();
+        List<ObjectId> generation = new ArrayList<>();
+        for (String root : roots) {
+            if (!ObjectId.isId(root)) {
+                _problems.add("bad ref target " + root);
+            } else if (visited.add(ObjectId.fromHex(root))) {
+                generation.add(ObjectId.fromHex(root));
+            }
+        }
+        for (String sha : logged) {
+            if (ObjectId.isId(sha) && objectFile(ObjectId.fromHex(sha)).isFile()
+                    && visited.add(ObjectId.fromHex(sha))) {
+                generation.add(ObjectId.fromHex(sha));
+            }
+        }
+        while (!generation.isEmpty()) {
+            List<List<ObjectId>> parents = generation.parallelStream()
+                    .map(this::checkCommit).collect(Collectors.toList());
+            List<ObjectId> next = new ArrayList<>();
+            for (List<ObjectId> commitParents : parents) {
+                for (ObjectId parent : commitParents) {
+                    if (visited.add(parent)) {
+                        next.add(parent);
+                    }
+                }
+            }
+            generation = next;
+        }
+        return visited;
+    }
+
+    /** Checks that COMMIT exists and is well formed, and that each blob
+     *  it tracks exists. Returns its parents. */
+    private List<ObjectId> checkCommit(ObjectId commit) {
+        List<ObjectId> parents = new ArrayList<>(2);
+        File file = objectFile(commit);
+        if (!file.isFile()) {
+            _problems.add("missing commit " + commit);
+            return parents;
+        }
+        Manifest manifest;
+        try {
+            manifest = Manifest.read(file);
+            manifest.date();
+        } catch (GitletException excp) {
+            _problems.add("malformed entry in commit " + commit);
+            return parents;
+        }
+        for (int line : new int[] {Manifest.PARENT1, Manifest.PARENT2}) {
+            String parent = manifest.header(line);
+            if (parent.isEmpty()) {
+                continue;
+            } else if (!ObjectId.isId(parent)) {
+                _problems.add("malformed parent in commit " + commit);
+            } else {
+                parents.add(ObjectId.fromHex(parent));
+            }
+        }
+        StringBuilder files = new StringBuilder();
+        for (int i = 0; i < manifest.size(); i += 1) {
+            String sha = manifest.sha(i);
+            files.append(manifest.name(i)).append(' ').append(sha)
+                    .append('\n');
+            if (manifest.name(i).isEmpty() || !ObjectId.isId(sha)) {
+                _problems.add("malformed entry in commit " + commit);
+            } else if (!objectFile(ObjectId.fromHex(sha)).isFile()) {
+                _problems.add("missing blob " + sha + " ("
+                        + manifest.name(i) + ") in commit " + commit);
+            }
+        }
+        ZoneOffset zone = manifest.zone();
+        if (zone != null && parents.size() == 1
+                && manifest.header(Manifest.PARENT2).isEmpty()
+                && !commit.toHex().equals(Utils.sha1(
+                        manifest.header(Manifest.PARENT1) + "\n\n"
+                        + Manifest.dateLine(manifest.date(), zone) + "\n"
+                        + manifest.message() + "\n" + files))) {
+            _problems.add("corrupt commit " + commit);
+        }
+        return parents;
+    }
+
+    /** Re-hashes every object in the fan-out directory SHARD other than
+     *  the known COMMITS. */
+    private void checkShard(File shard, ObjectIdSet commits) {
+        List<String> names = Utils.plainFilenamesIn(shard);
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            String sha = shard.getName() + name;
+            _checked.incrementAndGet();
+            if (!ObjectId.isId(sha)) {
+                _problems.add("stray file " + sha);
+            } else if (!commits.contains(ObjectId.fromHex(sha))) {
+                checkObject(sha, Utils.join(shard, name));
+            }
+        }
+    }
+
+    /** Checks that the object SHA, held in FILE, hashes to its name. A
+     *  chunked blob is hashed through its chunks, each of which must
+     *  exist. */
+    private void checkObject(String sha, File file) {
+        List<String> chunks = _blobs.chunks(file);
+        if (chunks == null) {
+            if (!sha.equals(Utils.sha1(file))) {
+                _problems.add("corrupt object " + sha);
+            }
+            return;
+        }
+        boolean complete = true;
+        for (String chunk : chunks) {
+            if (!ObjectId.isId(chunk)
+                    || !objectFile(ObjectId.fromHex(chunk)).isFile()) {
+                _problems.add("missing chunk " + chunk + " in blob " + sha);
+                complete = false;
+            }
+        }
+        if (complete && !sha.equals(_blobs.hash(chunks))) {
+            _problems.add("corrupt object " + sha);
+        }
+    }
+
+    /** Returns the file holding the object ID. */
+    private File objectFile(ObjectId id) {
+        return Utils.join(_objects, id.fanOut(), id.fileName());
+    }
+
+    /** The object store. */
+    private final File _objects;
+    /** The blobs of the object store. */
+    private final BlobStore _blobs;
+    /** Problems found by the current check. */
+    private List<String> _problems;
+    /** Objects examined by the current check. */
+    private final AtomicInteger _checked = new AtomicInteger();
+}
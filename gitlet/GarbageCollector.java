@@ -0,0 +1,174 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/** Mark-and-sweep collection of unreachable objects in the object store.
+ *  Marking walks the commit graph one generation at a time, reading the
+ *  commits of each generation in parallel, and records every reachable
+ *  commit and blob, and the chunks of every chunked blob, in an
+ *  ObjectIdSet. Sweeping then visits one fan-out
+ *  directory at a time and deletes unmarked objects that are older than
+ *  the grace period, so memory use is bounded by the number of reachable
+ *  objects rather than the size of the store.
+ *  @author Evelyn Vo
+ */
+class GarbageCollector {
+
+    /** The default grace period: two weeks, in milliseconds. */
+    static final long DEFAULT_GRACE = 14L * 24 * 60 * 60 * 1000;
+
+    /** A collector over the object store OBJECTS that spares objects
+     *  modified less than GRACE milliseconds ago. */
+    GarbageCollector(File objects, long grace) {
+        _objects = objects;
+        _blobs = new BlobStore(objects);
+        _grace = grace;
+    }
+
+    /** Marks everything reachable from the commits ROOTS, then deletes
+     *  every other object older than the grace period. */
+    void collect(Collection<String> roots) {
+        ObjectIdSet marked = mark(roots);
+        sweep(marked, System.currentTimeMillis() - _grace);
+    }
+
+    /** Returns the number of bytes freed by the last collection. */
+    long reclaimedBytes() {
+        return _reclaimedBytes;
+    }
+
+    /** Returns the number of objects deleted by the last collection. */
+    int reclaimedObjects() {
+        return _reclaimedObjects;
+    }
+
+    /** Returns the number of objects found reachable by the last
+     *  collection. */
+    int reachableObjects() {
+        return _reachable;
+    }
+
+    /** Returns the set of objects reachable from the commits ROOTS. */
+    private ObjectIdSet mark(Collection<String> roots) {
+        ObjectIdSet marked = new ObjectIdSet();
+        List<ObjectId> generation = new ArrayList<>();
+        for (String root : roots) {
+            ObjectId id = ObjectId.fromHex(root);
+            if (marked.add(id)) {
+                generation.add(id);
+            }
+        }
+        while (!generation.isEmpty()) {
+            List<Links> links = generation.parallelStream()
+                    .map(this::readLinks).collect(Collectors.toList());
+            List<ObjectId> next = new ArrayList<>();
+            List<ObjectId> blobs = new ArrayList<>();
+            for (Links commit : links) {
+                for (ObjectId parent : commit.parents) {
+                    if (marked.add(parent)) {
+                        next.add(parent);
+                    }
+                }
+                for (ObjectId blob : commit.blobs) {
+                    if (marked.add(blob)) {
+                        blobs.add(blob);
+                    }
+                }
+            }
+            List<List<String>> chunks = blobs.parallelStream()
+                    .map(blob -> _blobs.chunks(objectFile(blob)))
+                    .collect(Collectors.toList());
+            for (List<String> blobChunks : chunks) {
+                if (blobChunks != null) {
+                    for (String chunk : blobChunks) {
+                        marked.add(ObjectId.fromHex(chunk));
+                    }
+                }
+            }
+            generation = next;
+        }
+        _reachable = marked.size();
+        return marked;
+    }
+
+    /** Returns the parents and tracked blobs of COMMIT. A missing commit
+     *  has neither. */
+    private Links readLinks(ObjectId commit) {
+        Links links = new Links();
+        File file = objectFile(commit);
+        if (!file.isFile()) {
+            return links;
+        }
+        Manifest manifest = Manifest.read(file);
+        for (int line : new int[] {Manifest.PARENT1, Manifest.PARENT2}) {
+            String parent = manifest.header(line);
+            if (!parent.isEmpty()) {
+                links.parents.add(ObjectId.fromHex(parent));
+            }
+        }
+        for (int i = 0; i < manifest.size(); i += 1) {
+            links.blobs.add(ObjectId.fromHex(manifest.sha(i)));
+        }
+        return links;
+    }
+
+    /** Returns the file holding the object ID. */
+    private File objectFile(ObjectId id) {
+        return Utils.join(_objects, id.fanOut(), id.fileName());
+    }
+
+    /** Deletes every object that is not in MARKED and was last modified
+     *  before CUTOFF, one fan-out directory at a time. */
+    private void sweep(ObjectIdSet marked, long cutoff) {
+        _reclaimedBytes = 0;
+        _reclaimedObjects = 0;
+        File[] dirs = _objects.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            List<String> names = Utils.plainFilenamesIn(dir);
+            if (names == null) {
+                continue;
+            }
+            for (String name : names) {
+                String sha = dir.getName() + name;
+                if (!ObjectId.isId(sha)
+                        || marked.contains(ObjectId.fromHex(sha))) {
+                    continue;
+                }
+                File file = Utils.join(dir, name);
+                long size = file.length();
+                if (file.lastModified() < cutoff && file.delete()) {
+                    _reclaimedBytes += size;
+                    _reclaimedObjects += 1;
+                }
+            }
+        }
+    }
+
+    /** The outgoing references of one commit. */
+    private static class Links {
+        /** The ids of the commit's parents. */
+        private final List<ObjectId> parents = new ArrayList<>(2);
+        /** The ids of the blobs the commit tracks. */
+        private final List<ObjectId> blobs = new ArrayList<>();
+    }
+
+    /** The object store. */
+    private final File _objects;
+    /** The blobs of the object store. */
+    private final BlobStore _blobs;
+    /** Objects modified within this many milliseconds are never deleted. */
+    private final long _grace;
+    /** Bytes freed by the last collection. */
+    private long _reclaimedBytes;
+    /** Objects deleted by the last collection. */
+    private int _reclaimedObjects;
+    /** Objects marked reachable by the last collection. */
+    private int _reachable;
+}
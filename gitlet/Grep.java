@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/** Searches the contents of files for a literal string or a regular
+ *  expression, line by line. Contents are searched where they lie, in a
+ *  buffer that is usually mapped from the file, through a view that
+ *  reads each byte as one character; the pattern is turned into the
+ *  same form, so a literal, or the literal parts of an expression, match
+ *  their UTF-8 bytes and nothing is decoded but the lines that match. A
+ *  Grep holds no other state, so one may search many buffers at once.
+ *  @author Evelyn Vo
+ */
+class Grep {
+
+    /** How far into a file a zero byte marks it as binary. */
+    private static final int BINARY_PROBE = 8000;
+
+    /** A search for PATTERN, which is a regular expression if REGEX and
+     *  a literal string otherwise. */
+    Grep(String pattern, boolean regex) {
+        String bytes = new String(pattern.getBytes(StandardCharsets.UTF_8),
+                StandardCharsets.ISO_8859_1);
+        try {
+            _pattern = Pattern.compile(regex ? bytes : Pattern.quote(bytes),
+                    Pattern.MULTILINE);
+        } catch (PatternSyntaxException excp) {
+            throw Utils.error("Invalid pattern: %s", excp.getDescription());
+        }
+    }
+
+    /** Returns the lines of DATA that match, in order. A file that holds
+     *  a zero byte near its start is binary, and yields a single hit
+     *  with no line if anything in it matches. */
+    List<Hit> scan(ByteBuffer data) {
+        List<Hit> hits = new ArrayList<>();
+        Matcher matcher = _pattern.matcher(new Bytes(data));
+        int limit = data.limit();
+        if (isBinary(data)) {
+            if (matcher.find()) {
+                hits.add(new Hit(0, null));
+            }
+            return hits;
+        }
+        int line = 1;
+        int counted = 0;
+        int from = 0;
+        while (from <= limit && matcher.find(from)) {
+            int start = matcher.start();
+            for (; counted < start; counted += 1) {
+                if (data.get(counted) == '\n') {
+                    line += 1;
+                }
+            }
+            int lineStart = start;
+            while (lineStart > 0 && data.get(lineStart - 1) != '\n') {
+                lineStart -= 1;
+            }
+            int lineEnd = start;
+            while (lineEnd < limit && data.get(lineEnd) != '\n') {
+                lineEnd += 1;
+            }
+            byte[] text = new byte[lineEnd - lineStart];
+            for (int pos = lineStart; pos < lineEnd; pos += 1) {
+                text[pos - lineStart] = data.get(pos);
+            }
+            hits.add(new Hit(line, new String(text,
+                    StandardCharsets.UTF_8)));
+            from = lineEnd + 1;
+        }
+        return hits;
+    }
+
+    /** A line that matched. */
+    static class Hit {
+        /** The hit on line LINE, counted from 1, whose text is TEXT, or
+         *  of a binary file if TEXT is null. */
+        Hit(int line, String text) {
+            _line = line;
+            _text = text;
+        }
+
+        /** Returns the number of the line, counted from 1. */
+        int line() {
+            return _line;
+        }
+
+        /** Returns the text of the line, without its newline, or null if
+         *  the file is binary. */
+        String text() {
+            return _text;
+        }
+
+        /** Returns true if the hit is in a binary file. */
+        boolean binary() {
+            return _text == null;
+        }
+
+        /** The number of the line. */
+        private final int _line;
+        /** The text of the line. */
+        private final String _text;
+    }
+
+    /** Returns true if DATA holds a zero byte near its start. */
+    private static boolean isBinary(ByteBuffer data) {
+        for (int pos = 0, end = Math.min(data.limit(), BINARY_PROBE);
+             pos < end; pos += 1) {
+            if (data.get(pos) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The bytes of a buffer read as characters, one per byte. */
+    private static class Bytes implements CharSequence {
+        /** The characters of DATA. */
+        Bytes(ByteBuffer data) {
+            this(data, 0, data.limit());
+        }
+
+        /** The characters of DATA from START to END. */
+        private Bytes(ByteBuffer data, int start, int end) {
+            _data = data;
+            _start = start;
+            _end = end;
+        }
+
+        @Override
+        public int length() {
+            return _end - _start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (_data.get(_start + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new Bytes(_data, _start + start, _start + end);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder chars = new StringBuilder(length());
+            for (int pos = _start; pos < _end; pos += 1) {
+                chars.append((char) (_data.get(pos) & 0xff));
+            }
+            return chars.toString();
+        }
+
+        /** The buffer. */
+        private final ByteBuffer _data;
+        /** The first byte of the characters. */
+        private final int _start;
+        /** One past the last byte of the characters. */
+        private final int _end;
+    }
+
+    /** The compiled pattern, over bytes read as characters. */
+    private final Pattern _pattern;
+}
@@ -0,0 +1,181 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+/** The patterns of a .gitletignore file, naming the files of the working
+ *  directory that are never listed as untracked, added or deleted. Each
+ *  line is a glob, in which * matches any run of characters but a
+ *  slash, ? any one but a slash, and [...] any one of a set; a pattern
+ *  ending in a slash matches only directories, one starting with ! keeps
+ *  what an earlier pattern ignored, and lines that are empty or start
+ *  with # are skipped. A pattern holding no slash but a trailing one
+ *  matches a name in any directory; any other is matched against the
+ *  path from the working directory. As in git, the last pattern that
+ *  matches decides. Every pattern is compiled once, when the file is
+ *  read: those of a plain name, a name after a *, or a name before one,
+ *  to a comparison of strings, and only the rest to a regular
+ *  expression, and whether a file is a directory is only asked once a
+ *  pattern for directories matches its name, so a file ignored by name
+ *  is never examined at all.
+ *  @author Evelyn Vo
+ */
+class IgnoreRules {
+
+    /** The rules that ignore nothing. */
+    static final IgnoreRules NONE = new IgnoreRules(new ArrayList<>());
+
+    /** Returns the rules of the lines of TEXT. */
+    static IgnoreRules parse(String text) {
+        List<Rule> rules = new ArrayList<>();
+        for (String line : text.split("\r?\n")) {
+            String pattern = line.strip();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            boolean negated = pattern.startsWith("!");
+            if (negated) {
+                pattern = pattern.substring(1);
+            }
+            boolean directory = pattern.endsWith("/");
+            if (directory) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            boolean anchored = pattern.indexOf('/') >= 0;
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            if (!pattern.isEmpty()) {
+                rules.add(new Rule(pattern, negated, directory, anchored));
+            }
+        }
+        return new IgnoreRules(rules);
+    }
+
+    /** Returns true iff the file at PATH, relative to the working
+     *  directory, is ignored. ISDIRECTORY tells whether it is a
+     *  directory, and is asked only if a pattern for directories matches
+     *  its name. */
+    boolean ignored(String path, BooleanSupplier isDirectory) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        for (int k = _rules.size() - 1; k >= 0; k -= 1) {
+            Rule rule = _rules.get(k);
+            if (rule.matches(rule._anchored ? path : name)
+                    && (!rule._directory || isDirectory.getAsBoolean())) {
+                return !rule._negated;
+            }
+        }
+        return false;
+    }
+
+    /** Returns true iff there are no rules. */
+    boolean isEmpty() {
+        return _rules.isEmpty();
+    }
+
+    /** One compiled pattern. */
+    private static class Rule {
+
+        /** A rule matching PATTERN, keeping rather than ignoring what it
+         *  matches iff NEGATED, matching only directories iff DIRECTORY,
+         *  and matched against the whole path iff ANCHORED. */
+        Rule(String pattern, boolean negated, boolean directory,
+             boolean anchored) {
+            _negated = negated;
+            _directory = directory;
+            _anchored = anchored;
+            String rest = pattern.length() > 1 ? pattern.substring(1) : "";
+            String init = pattern.substring(0, pattern.length() - 1);
+            if (isPlain(pattern)) {
+                _exact = pattern;
+            } else if (pattern.startsWith("*") && isPlain(rest)) {
+                _suffix = rest;
+            } else if (pattern.endsWith("*") && isPlain(init)) {
+                _prefix = init;
+            } else {
+                _regex = Pattern.compile(toRegex(pattern));
+            }
+        }
+
+        /** Returns true iff NAME matches this rule's pattern. */
+        boolean matches(String name) {
+            if (_exact != null) {
+                return name.equals(_exact);
+            } else if (_suffix != null) {
+                return name.endsWith(_suffix)
+                        && name.lastIndexOf('/') < name.length()
+                                - _suffix.length();
+            } else if (_prefix != null) {
+                return name.startsWith(_prefix)
+                        && name.indexOf('/', _prefix.length()) < 0;
+            }
+            return _regex.matcher(name).matches();
+        }
+
+        /** Returns true iff PATTERN holds no wildcard. */
+        private static boolean isPlain(String pattern) {
+            for (int pos = 0; pos < pattern.length(); pos += 1) {
+                if ("*?[\\".indexOf(pattern.charAt(pos)) >= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Returns the regular expression matching what the glob PATTERN
+         *  does. */
+        private static String toRegex(String pattern) {
+            StringBuilder regex = new StringBuilder();
+            for (int pos = 0; pos < pattern.length(); pos += 1) {
+                char c = pattern.charAt(pos);
+                int close = pattern.indexOf(']', pos + 2);
+                if (c == '*' && pattern.startsWith("**", pos)) {
+                    regex.append(".*");
+                    pos += 1;
+                } else if (c == '*') {
+                    regex.append("[^/]*");
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else if (c == '[' && close > 0) {
+                    String set = pattern.substring(pos + 1, close);
+                    regex.append('[').append(set.startsWith("!")
+                            ? "^" + set.substring(1).replace("\\", "\\\\")
+                            : set.replace("\\", "\\\\")).append(']');
+                    pos = close;
+                } else if (c == '\\' && pos + 1 < pattern.length()) {
+                    pos += 1;
+                    regex.append(Pattern.quote(
+                            String.valueOf(pattern.charAt(pos))));
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return regex.toString();
+        }
+
+        /** Whether this rule keeps what it matches. */
+        private final boolean _negated;
+        /** Whether this rule matches only directories. */
+        private final boolean _directory;
+        /** Whether this rule is matched against the whole path. */
+        private final boolean _anchored;
+        /** The name this rule matches, if it is a plain one. */
+        private String _exact;
+        /** The end of the names this rule matches, if it is *SUFFIX. */
+        private String _suffix;
+        /** The start of the names this rule matches, if it is PREFIX*. */
+        private String _prefix;
+        /** The expression of any other pattern. */
+        private Pattern _regex;
+    }
+
+    /** Rules for RULES, in the order of the file. */
+    private IgnoreRules(List<Rule> rules) {
+        _rules = rules;
+    }
+
+    /** The rules, in the order of the file. */
+    private final List<Rule> _rules;
+}
@@ -0,0 +1,132 @@
+package gitlet;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/** Runs per-file operations concurrently so that commands touching many
+ *  files are bound by device bandwidth rather than per-file latency.
+ *  Each operation gets a virtual thread where the JVM has them, and a
+ *  pooled daemon thread otherwise; either way a semaphore bounds how many
+ *  are in flight, so a large directory cannot open thousands of files at
+ *  once.
+ *  @author Evelyn Vo
+ */
+class IoExecutor {
+
+    /** The most operations the shared executor runs at once. */
+    static final int DEFAULT_LIMIT = 64;
+
+    /** Returns the executor shared by all repositories in this process. */
+    static synchronized IoExecutor shared() {
+        if (_shared == null) {
+            _shared = new IoExecutor(DEFAULT_LIMIT);
+        }
+        return _shared;
+    }
+
+    /** An executor running at most LIMIT operations at once. */
+    IoExecutor(int limit) {
+        _permits = new Semaphore(limit);
+        _threads = newExecutor();
+    }
+
+    /** Applies TASK to each of ITEMS and returns once all are done. If
+     *  any application throws, rethrows the first exception. */
+    <T> void forEach(Collection<T> items, Consumer<T> task) {
+        map(items, item -> {
+            task.accept(item);
+            return null;
+        });
+    }
+
+    /** Returns the results of applying TASK to each of ITEMS, in order.
+     *  If any application throws, rethrows the first exception once all
+     *  are done. */
+    <T, R> List<R> map(Collection<T> items, Function<T, R> task) {
+        List<R> results = new ArrayList<>(items.size());
+        if (items.size() <= 1) {
+            for (T item : items) {
+                results.add(task.apply(item));
+            }
+            return results;
+        }
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            _permits.acquireUninterruptibly();
+            try {
+                futures.add(_threads.submit(() -> {
+                    try {
+                        return task.apply(item);
+                    } finally {
+                        _permits.release();
+                    }
+                }));
+            } catch (RuntimeException excp) {
+                _permits.release();
+                throw excp;
+            }
+        }
+        RuntimeException failure = null;
+        for (Future<R> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException excp) {
+                if (failure == null) {
+                    failure = unwrap(excp.getCause());
+                }
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = Utils.error("Interrupted.");
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /** Returns CAUSE as an unchecked exception. */
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    /** Returns an executor that starts a virtual thread per task, or one
+     *  backed by a cached pool of daemon threads on a JVM without them. */
+    private static ExecutorService newExecutor() {
+        try {
+            Method factory =
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "gitlet-io");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** The executor shared by all repositories, created on first use. */
+    private static IoExecutor _shared;
+
+    /** Bounds the number of operations in flight. */
+    private final Semaphore _permits;
+    /** Runs the operations. */
+    private final ExecutorService _threads;
+}
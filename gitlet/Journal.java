@@ -0,0 +1,229 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** A write-ahead journal that makes the metadata updates of one command
+ *  atomic. While a transaction is open, writes and deletions are buffered
+ *  in memory and reads of a buffered file return the buffered contents.
+ *  Committing writes every buffered change into the journal file, forces
+ *  it to disk, applies each change, forces the files written and the
+ *  directories whose entries changed to disk and only then removes the
+ *  journal. A commit thus costs one fsync for the journal, one for each
+ *  file it writes and one for each directory it adds a file to or
+ *  removes one from. If the
+ *  process dies part way through, the next command finds the journal and
+ *  either replays it, when its trailing checksum shows it was completely
+ *  written, or discards it. Replaying a journal twice does no harm.
+ *  @author Evelyn Vo
+ */
+class Journal {
+
+    /** The first line of every journal file. */
+    private static final String MAGIC = "gitlet-journal 1\n";
+
+    /** The prefix of the trailer line holding the journal checksum. */
+    private static final String TRAILER = "end ";
+
+    /** A journal for the repository whose working directory is ROOT,
+     *  kept in FILE. Paths are recorded relative to ROOT. */
+    Journal(File root, File file) {
+        _root = root.getAbsoluteFile().toPath().normalize();
+        _file = file;
+    }
+
+    /** Starts buffering writes. */
+    void begin() {
+        _pending = new LinkedHashMap<>();
+    }
+
+    /** Returns true iff a transaction is open. */
+    boolean active() {
+        return _pending != null;
+    }
+
+    /** Buffers CONTENTS as the new contents of TARGET. */
+    void write(File target, String contents) {
+        _pending.put(relative(target), contents);
+    }
+
+    /** Buffers the deletion of TARGET. */
+    void delete(File target) {
+        _pending.put(relative(target), null);
+    }
+
+    /** Returns the buffered contents of TARGET, or null if it has not
+     *  been written, or has been deleted, in the open transaction. */
+    String read(File target) {
+        if (_pending == null) {
+            return null;
+        }
+        return _pending.get(relative(target));
+    }
+
+    /** Makes every buffered change durable with a single fsync of the
+     *  journal, applies them and closes the transaction. */
+    void commit() {
+        Map<String, String> pending = _pending;
+        _pending = null;
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        writeJournal(pending);
+        apply(pending);
+        _file.delete();
+    }
+
+    /** Discards every buffered write and closes the transaction. */
+    void abort() {
+        _pending = null;
+    }
+
+    /** Finishes or discards a transaction left behind by a command that
+     *  did not complete. Returns true iff a journal was found. */
+    boolean recover() {
+        if (!_file.isFile()) {
+            return false;
+        }
+        Map<String, String> entries = readJournal();
+        if (entries != null) {
+            apply(entries);
+        }
+        _file.delete();
+        return true;
+    }
+
+    /** Returns true iff a journal file is waiting to be recovered. */
+    boolean needsRecovery() {
+        return _file.isFile();
+    }
+
+    /** Writes ENTRIES and a checksum trailer to the journal file and
+     *  forces them to disk. Each entry is the lengths of its path and
+     *  contents on a line, -1 for a deletion, then the two of them. */
+    private void writeJournal(Map<String, String> entries) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] magic = MAGIC.getBytes(StandardCharsets.UTF_8);
+        out.write(magic, 0, magic.length);
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            byte[] path = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] body = entry.getValue() == null ? new byte[0]
+                    : entry.getValue().getBytes(StandardCharsets.UTF_8);
+            byte[] header = String.format("%d %d\n", path.length,
+                    entry.getValue() == null ? -1 : body.length)
+                    .getBytes(StandardCharsets.UTF_8);
+            out.write(header, 0, header.length);
+            out.write(path, 0, path.length);
+            out.write(body, 0, body.length);
+        }
+        byte[] data = out.toByteArray();
+        byte[] trailer = (TRAILER + Utils.sha1(data) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(_file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(data));
+            channel.write(ByteBuffer.wrap(trailer));
+            channel.force(true);
+        } catch (IOException excp) {
+            throw Utils.error("Could not write the journal: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the entries of a completely written journal file, or null
+     *  if it was cut short or is otherwise damaged. */
+    private Map<String, String> readJournal() {
+        byte[] data = Utils.readContents(_file);
+        String text = new String(data, StandardCharsets.ISO_8859_1);
+        int trailer = text.length() - TRAILER.length() - Utils.UID_LENGTH - 1;
+        if (!text.startsWith(MAGIC) || trailer < MAGIC.length()
+                || !text.startsWith(TRAILER, trailer)
+                || !text.endsWith("\n")) {
+            return null;
+        }
+        byte[] body = new byte[trailer];
+        System.arraycopy(data, 0, body, 0, trailer);
+        String sum = text.substring(trailer + TRAILER.length(),
+                text.length() - 1);
+        if (!sum.equals(Utils.sha1(body))) {
+            return null;
+        }
+        Map<String, String> entries = new LinkedHashMap<>();
+        int pos = MAGIC.length();
+        while (pos < trailer) {
+            int newline = text.indexOf('\n', pos);
+            String[] sizes = text.substring(pos, newline).split(" ");
+            int pathLen = Integer.parseInt(sizes[0]);
+            int bodyLen = Integer.parseInt(sizes[1]);
+            pos = newline + 1;
+            String path = new String(data, pos, pathLen,
+                    StandardCharsets.UTF_8);
+            pos += pathLen;
+            if (bodyLen < 0) {
+                entries.put(path, null);
+                continue;
+            }
+            entries.put(path, new String(data, pos, bodyLen,
+                    StandardCharsets.UTF_8));
+            pos += bodyLen;
+        }
+        return entries;
+    }
+
+    /** Writes each of ENTRIES into place, or deletes it if its contents
+     *  are null, then forces the files written to disk, and the
+     *  directories of the files created or deleted, each directory
+     *  once. */
+    private void apply(Map<String, String> entries) {
+        List<File> written = new ArrayList<>();
+        Set<File> dirs = new LinkedHashSet<>();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            File target = _root.resolve(entry.getKey()).toFile();
+            if (entry.getValue() == null) {
+                if (target.delete()) {
+                    dirs.add(target.getParentFile());
+                }
+                continue;
+            }
+            if (!target.exists()) {
+                dirs.add(target.getParentFile());
+            }
+            Utils.writeContents(target, entry.getValue());
+            written.add(target);
+        }
+        for (File file : written) {
+            Utils.force(file);
+        }
+        for (File dir : dirs) {
+            Utils.force(dir);
+        }
+    }
+
+    /** Returns the path of TARGET relative to the repository root. */
+    private String relative(File target) {
+        Path path = target.getAbsoluteFile().toPath().normalize();
+        return _root.relativize(path).toString();
+    }
+
+    /** The working directory of the repository. */
+    private final Path _root;
+    /** The journal file. */
+    private final File _file;
+    /** Writes buffered by the open transaction, by relative path, with
+     *  null contents for a deletion, or null when no transaction is
+     *  open. */
+    private Map<String, String> _pending;
+}
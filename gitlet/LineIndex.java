@@ -0,0 +1,108 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/** The lines of a file, each reduced to a 128-bit hash of its bytes,
+ *  newline included: the first half of their SHA-256 digest. The file is
+ *  read once, as a stream, and only the hashes are kept, sixteen bytes a
+ *  line, so that the lines of a file far larger than memory can be
+ *  compared; two lines are taken to be equal iff their hashes are. The
+ *  hash is a cryptographic one because a merge trusts it to say that a
+ *  side left lines alone: with a weaker one, two different lines that
+ *  collide, by chance or by design, would silently lose an edit.
+ *  @author Evelyn Vo
+ */
+class LineIndex {
+
+    /** The number of longs kept for each line. */
+    private static final int WIDTH = 2;
+
+    /** Returns the index of the lines read from IN, which it closes. */
+    static LineIndex read(InputStream in) {
+        long[] hashes = new long[64 * WIDTH];
+        int n = 0;
+        byte[] buffer = new byte[Utils.BLOCK_SIZE];
+        byte[] digest = new byte[32];
+        boolean partial = false;
+        try (InputStream input = in) {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (int len = input.read(buffer); len >= 0;
+                 len = input.read(buffer)) {
+                int start = 0;
+                for (int pos = 0; pos < len; pos += 1) {
+                    if (buffer[pos] == '\n') {
+                        md.update(buffer, start, pos + 1 - start);
+                        md.digest(digest, 0, digest.length);
+                        if ((n + 1) * WIDTH > hashes.length) {
+                            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+                        }
+                        store(digest, hashes, n);
+                        n += 1;
+                        start = pos + 1;
+                    }
+                }
+                md.update(buffer, start, len - start);
+                partial = start < len;
+            }
+            if (partial) {
+                md.digest(digest, 0, digest.length);
+                hashes = Arrays.copyOf(hashes, (n + 1) * WIDTH);
+                store(digest, hashes, n);
+                n += 1;
+            }
+        } catch (IOException | DigestException excp) {
+            throw Utils.error("Could not read lines: %s", excp.getMessage());
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException(
+                    "System does not support SHA-256");
+        }
+        return new LineIndex(hashes, n);
+    }
+
+    /** Stores the first WIDTH longs of DIGEST as the hash of line N in
+     *  HASHES. */
+    private static void store(byte[] digest, long[] hashes, int n) {
+        for (int k = 0; k < WIDTH; k += 1) {
+            long word = 0;
+            for (int b = 0; b < Long.BYTES; b += 1) {
+                word = (word << Byte.SIZE)
+                        | (digest[k * Long.BYTES + b] & 0xff);
+            }
+            hashes[n * WIDTH + k] = word;
+        }
+    }
+
+    /** An index of the N lines whose hashes begin HASHES. */
+    private LineIndex(long[] hashes, int n) {
+        _hashes = hashes;
+        _size = n;
+    }
+
+    /** Returns the number of lines. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns true if line I equals line J of OTHER. */
+    boolean same(int i, LineIndex other, int j) {
+        return _hashes[i * WIDTH] == other._hashes[j * WIDTH]
+                && _hashes[i * WIDTH + 1] == other._hashes[j * WIDTH + 1];
+    }
+
+    /** Returns true if the N lines from line I equal the N lines from
+     *  line J of OTHER. */
+    boolean same(int i, LineIndex other, int j, int n) {
+        return Arrays.equals(_hashes, i * WIDTH, (i + n) * WIDTH,
+                other._hashes, j * WIDTH, (j + n) * WIDTH);
+    }
+
+    /** The hash of each line, WIDTH longs a line. */
+    private final long[] _hashes;
+    /** The number of lines. */
+    private final int _size;
+}
@@ -0,0 +1,124 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/** Merges the lines of two versions of a file against their common
+ *  ancestor, diff3 style. Both versions are matched to the ancestor with
+ *  MyersDiff, and the ancestor is cut into stable runs, whose lines are
+ *  matched in both versions, and the unstable chunks between them. A
+ *  chunk that only one side changed takes that side's lines, one both
+ *  sides changed alike takes either, and one they changed differently is
+ *  a conflict: only its lines go between conflict markers. The files are
+ *  read as streams, once to index their lines and once to copy them to
+ *  the result, so a merge keeps only the line indexes in memory.
+ *  @author Evelyn Vo
+ */
+class LineMerge {
+
+    /** The line opening a conflict, before the current side's lines. */
+    static final String OURS_MARKER = "<<<<<<< HEAD\n";
+
+    /** The line between the two sides of a conflict. */
+    static final String SEPARATOR = "=======\n";
+
+    /** The line closing a conflict, after the given side's lines. */
+    static final String THEIRS_MARKER = ">>>>>>>\n";
+
+    /** Merges the versions OURS and THEIRS of a file whose common
+     *  ancestor is BASE, each of which opens a fresh stream of the
+     *  version's contents, writes the result to OUT and returns true iff
+     *  it has no conflict. */
+    static boolean merge(Supplier<InputStream> base, Supplier<InputStream> ours,
+                         Supplier<InputStream> theirs, OutputStream out) {
+        LineIndex o = LineIndex.read(base.get());
+        LineIndex a = LineIndex.read(ours.get());
+        LineIndex b = LineIndex.read(theirs.get());
+        int[] toA = MyersDiff.matches(o, a);
+        int[] toB = MyersDiff.matches(o, b);
+        boolean clean = true;
+        try (LineReader baseLines = new LineReader(base.get());
+             LineReader ourLines = new LineReader(ours.get());
+             LineReader theirLines = new LineReader(theirs.get())) {
+            int lo = 0;
+            int la = 0;
+            int lb = 0;
+            while (lo < o.size() || la < a.size() || lb < b.size()) {
+                int stable = 0;
+                while (lo + stable < o.size()
+                        && toA[lo + stable] == la + stable
+                        && toB[lo + stable] == lb + stable) {
+                    stable += 1;
+                }
+                if (stable > 0) {
+                    ourLines.copy(stable, out);
+                    baseLines.skip(stable);
+                    theirLines.skip(stable);
+                    lo += stable;
+                    la += stable;
+                    lb += stable;
+                    continue;
+                }
+                int next = lo;
+                while (next < o.size() && (toA[next] < 0 || toB[next] < 0)) {
+                    next += 1;
+                }
+                int ea = next < o.size() ? toA[next] : a.size();
+                int eb = next < o.size() ? toB[next] : b.size();
+                int no = next - lo;
+                int na = ea - la;
+                int nb = eb - lb;
+                baseLines.skip(no);
+                if (no == na && o.same(lo, a, la, na)) {
+                    ourLines.skip(na);
+                    theirLines.copy(nb, out);
+                } else if (no == nb && o.same(lo, b, lb, nb)
+                        || na == nb && a.same(la, b, lb, na)) {
+                    ourLines.copy(na, out);
+                    theirLines.skip(nb);
+                } else {
+                    clean = false;
+                    out.write(OURS_MARKER.getBytes(StandardCharsets.UTF_8));
+                    ourLines.copyLines(na, out);
+                    out.write(SEPARATOR.getBytes(StandardCharsets.UTF_8));
+                    theirLines.copyLines(nb, out);
+                    out.write(THEIRS_MARKER.getBytes(StandardCharsets.UTF_8));
+                }
+                lo = next;
+                la = ea;
+                lb = eb;
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not merge: %s", excp.getMessage());
+        }
+        return clean;
+    }
+
+    /** Writes the conflict of a file one side deleted and the other
+     *  changed to OUT: between the markers, the current side's version
+     *  from OURS, or nothing if it is null, and the given side's version
+     *  from THEIRS, or nothing if it is null. */
+    static void conflict(Supplier<InputStream> ours,
+                         Supplier<InputStream> theirs, OutputStream out) {
+        try {
+            out.write(OURS_MARKER.getBytes(StandardCharsets.UTF_8));
+            if (ours != null) {
+                try (LineReader lines = new LineReader(ours.get())) {
+                    lines.copyLines(Integer.MAX_VALUE, out);
+                }
+            }
+            out.write(SEPARATOR.getBytes(StandardCharsets.UTF_8));
+            if (theirs != null) {
+                try (LineReader lines = new LineReader(theirs.get())) {
+                    lines.copyLines(Integer.MAX_VALUE, out);
+                }
+            }
+            out.write(THEIRS_MARKER.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw Utils.error("Could not merge: %s", excp.getMessage());
+        }
+    }
+}
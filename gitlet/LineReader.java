@@ -0,0 +1,103 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/** The lines of a stream, read in order through a fixed buffer, so
+ *  that a file indexed by a LineIndex can be copied out line by line
+ *  without being held in memory.
+ *  @author Evelyn Vo
+ */
+class LineReader implements AutoCloseable {
+
+    /** The note following a line that has no newline. */
+    private static final byte[] NO_NEWLINE = "\n\\ No newline at end of file\n"
+            .getBytes(StandardCharsets.UTF_8);
+
+    /** The lines of IN. */
+    LineReader(InputStream in) {
+        _in = in;
+    }
+
+    /** Copies the next N lines to OUT, or as many as are left. */
+    void copy(int n, OutputStream out) throws IOException {
+        move(n, out);
+    }
+
+    /** Copies the next N lines to OUT, or as many as are left, ending
+     *  them with a newline if the last of them lacks one. */
+    void copyLines(int n, OutputStream out) throws IOException {
+        if (move(n, out) && _last != '\n') {
+            out.write('\n');
+        }
+    }
+
+    /** Copies the next N lines to OUT, or as many as are left, each after
+     *  PREFIX, noting a last line that has no newline the way a unified
+     *  diff does. */
+    void copyPrefixed(int n, char prefix, OutputStream out)
+            throws IOException {
+        for (int line = 0; line < n; line += 1) {
+            out.write(prefix);
+            if (!move(1, out)) {
+                out.write('\n');
+                return;
+            }
+            if (_last != '\n') {
+                out.write(NO_NEWLINE);
+            }
+        }
+    }
+
+    /** Skips the next N lines. */
+    void skip(int n) throws IOException {
+        move(n, null);
+    }
+
+    /** Moves past the next N lines, copying them to OUT if it is not
+     *  null, and returns true if there were any. */
+    private boolean move(int n, OutputStream out) throws IOException {
+        boolean any = false;
+        for (int lines = 0; lines < n; ) {
+            if (_pos == _len) {
+                _len = _in.read(_buffer);
+                _pos = 0;
+                if (_len <= 0) {
+                    _len = 0;
+                    break;
+                }
+            }
+            int start = _pos;
+            while (_pos < _len && lines < n) {
+                if (_buffer[_pos] == '\n') {
+                    lines += 1;
+                }
+                _pos += 1;
+            }
+            if (out != null) {
+                out.write(_buffer, start, _pos - start);
+            }
+            _last = _buffer[_pos - 1];
+            any = true;
+        }
+        return any;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    /** The stream. */
+    private final InputStream _in;
+    /** Bytes read from _in. */
+    private final byte[] _buffer = new byte[Utils.BLOCK_SIZE];
+    /** The number of valid bytes in _buffer. */
+    private int _len;
+    /** The position of the next byte in _buffer. */
+    private int _pos;
+    /** The last byte moved past. */
+    private int _last = '\n';
+}
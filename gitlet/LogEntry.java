@@ -0,0 +1,53 @@
+package gitlet;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** One commit as "gitlet log" reports it: its SHA1, its parents, the
+ *  date it was made, in the offset it was made in, and its message.
+ *  @author Evelyn Vo
+ */
+public class LogEntry {
+
+    /** The entry of the commit ID, whose parents are PARENTS, first
+     *  parent first, made at DATE with the message MESSAGE. */
+    LogEntry(String id, List<String> parents, OffsetDateTime date,
+             String message) {
+        _id = id;
+        _parents = Collections.unmodifiableList(new ArrayList<>(parents));
+        _date = date;
+        _message = message;
+    }
+
+    /** Returns the SHA1 of the commit. */
+    public String id() {
+        return _id;
+    }
+
+    /** Returns the SHA1s of the commit's parents, first parent first:
+     *  none for the initial commit and two for a merge. */
+    public List<String> parents() {
+        return _parents;
+    }
+
+    /** Returns when the commit was made. */
+    public OffsetDateTime date() {
+        return _date;
+    }
+
+    /** Returns the commit message. */
+    public String message() {
+        return _message;
+    }
+
+    /** The SHA1 of the commit. */
+    private final String _id;
+    /** The parents of the commit. */
+    private final List<String> _parents;
+    /** When the commit was made. */
+    private final OffsetDateTime _date;
+    /** The commit message. */
+    private final String _message;
+}
@@ -0,0 +1,384 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** A commit, read straight from its bytes: a header, then one
+ *  "NAME SHA" line per file. The header of a commit of the first format
+ *  is three lines, its branch and parents. That of the second adds its
+ *  date, in milliseconds since the epoch, followed by the offset of the
+ *  zone it was made in unless the commit predates that, and its message,
+ *  with
+ *  backslashes and newlines escaped, and opens with the line MAGIC, so
+ *  that commits can be read without the logs. All reads of commits go
+ *  through here, and all new commits are written by format.
+ *  Commits list their files sorted by name, so a manifest is a sorted
+ *  sequence that several can be walked through side by side; a manifest
+ *  of an older commit that is not sorted is given a sorted order when
+ *  read. Only the offset of each line is kept, so the names and SHA-1s
+ *  of the files are compared where they lie, and large commits are
+ *  mapped into memory rather than read.
+ *  @author Evelyn Vo
+ */
+class Manifest {
+
+    /** The size from which commits are mapped rather than read. */
+    static final int MAP_THRESHOLD = 1 << 16;
+
+    /** The first line of a commit of the second format. */
+    static final String MAGIC = "gitlet-commit 2";
+
+    /** The header line holding the branch. */
+    static final int BRANCH = 0;
+
+    /** The header line holding the first parent. */
+    static final int PARENT1 = 1;
+
+    /** The header line holding the second parent. */
+    static final int PARENT2 = 2;
+
+    /** The date of a commit that does not record one. */
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    /** The number of header lines of the first format. */
+    private static final int HEADER_LINES = 3;
+
+    /** The number of header lines of the second format, after MAGIC. */
+    private static final int HEADER_LINES_2 = 5;
+
+    /** The header line holding the date. */
+    private static final int DATE = 3;
+
+    /** The header line holding the message. */
+    private static final int MESSAGE = 4;
+
+    /** The length of a SHA-1 in hex. */
+    private static final int SHA_LEN = 40;
+
+    /** Returns the manifest of the commit stored in COMMIT. */
+    static Manifest read(File commit) {
+        try (FileChannel channel = FileChannel.open(commit.toPath(),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAP_THRESHOLD) {
+                return new Manifest(ByteBuffer.wrap(
+                        Files.readAllBytes(commit.toPath())));
+            }
+            return new Manifest(channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, size));
+        } catch (IOException excp) {
+            throw Utils.error("Could not read commit %s: %s",
+                    commit.getParentFile().getName() + commit.getName(),
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the manifest of the commit whose contents are COMMIT. */
+    static Manifest parse(String commit) {
+        return new Manifest(ByteBuffer.wrap(
+                commit.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Returns the manifest holding FILES, which maps names to SHA-1s. */
+    static Manifest of(Map<String, String> files) {
+        StringBuilder commit = new StringBuilder("\n\n\n");
+        for (Map.Entry<String, String> file : new TreeMap<>(files)
+                .entrySet()) {
+            commit.append(file.getKey()).append(' ')
+                    .append(file.getValue()).append('\n');
+        }
+        return parse(commit.toString());
+    }
+
+    /** Returns the line of the date DATE, in milliseconds since the
+     *  epoch, in the zone offset ZONE, that the id of a commit is hashed
+     *  with. It is written in English wherever the commit is made. */
+    static String dateLine(long date, ZoneOffset zone) {
+        return new Formatter(Locale.US).format(
+                "Date: %1$ta %1$tb %1$td %1$tH:%1$tM:%1$tS %1$tY %1$tz",
+                Instant.ofEpochMilli(date).atOffset(zone)).toString();
+    }
+
+    /** Returns the text of a commit on BRANCH whose parents are PARENT1
+     *  and PARENT2, either of which may be null, made at DATE in the zone
+     *  offset ZONE with MESSAGE, and whose file lines are FILES. */
+    static String format(String branch, String parent1, String parent2,
+                         long date, ZoneOffset zone, String message,
+                         String files) {
+        StringBuilder escaped = new StringBuilder();
+        for (int pos = 0; pos < message.length(); pos += 1) {
+            char c = message.charAt(pos);
+            if (c == '\\') {
+                escaped.append("\\\\");
+            } else if (c == '\n') {
+                escaped.append("\\n");
+            } else {
+                escaped.append(c);
+            }
+        }
+        return MAGIC + "\n" + branch + "\n" + (parent1 == null ? "" : parent1)
+                + "\n" + (parent2 == null ? "" : parent2) + "\n" + date
+                + " " + zone.getId() + "\n" + escaped + "\n" + files;
+    }
+
+    /** A manifest of the commit whose bytes are DATA. */
+    private Manifest(ByteBuffer data) {
+        _data = data;
+        index();
+    }
+
+    /** Returns header line LINE of the commit: BRANCH, or PARENT1 or
+     *  PARENT2, each empty if absent. */
+    String header(int line) {
+        return string(_headers[_first + line],
+                _headers[_first + line + 1] - 1);
+    }
+
+    /** Returns the date of the commit, in milliseconds since the epoch,
+     *  or NO_DATE if it does not record one. */
+    long date() {
+        if (_first == 0) {
+            return NO_DATE;
+        }
+        String date = header(DATE);
+        int space = date.indexOf(' ');
+        try {
+            return Long.parseLong(space < 0 ? date
+                    : date.substring(0, space));
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Corrupt commit manifest.");
+        }
+    }
+
+    /** Returns the offset of the zone the commit was made in, or null if
+     *  it does not record one. */
+    ZoneOffset zone() {
+        String date = _first == 0 ? "" : header(DATE);
+        int space = date.indexOf(' ');
+        if (space < 0) {
+            return null;
+        }
+        try {
+            return ZoneOffset.of(date.substring(space + 1));
+        } catch (DateTimeException excp) {
+            throw Utils.error("Corrupt commit manifest.");
+        }
+    }
+
+    /** Returns the message of the commit, or null if it does not record
+     *  one. */
+    String message() {
+        if (_first == 0) {
+            return null;
+        }
+        String escaped = header(MESSAGE);
+        StringBuilder message = new StringBuilder(escaped.length());
+        for (int pos = 0; pos < escaped.length(); pos += 1) {
+            char c = escaped.charAt(pos);
+            if (c == '\\' && pos + 1 < escaped.length()) {
+                pos += 1;
+                message.append(escaped.charAt(pos) == 'n' ? '\n'
+                        : escaped.charAt(pos));
+            } else {
+                message.append(c);
+            }
+        }
+        return message.toString();
+    }
+
+    /** Returns the number of files. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the name of file I. */
+    String name(int i) {
+        return string(start(i), nameEnd(i));
+    }
+
+    /** Returns the SHA-1 of file I. */
+    String sha(int i) {
+        return string(nameEnd(i) + 1, nameEnd(i) + 1 + SHA_LEN);
+    }
+
+    /** Returns a negative number, zero or a positive number as the name
+     *  of file I sorts before, with or after that of file J of OTHER. */
+    int compare(int i, Manifest other, int j) {
+        int a = start(i);
+        int aEnd = nameEnd(i);
+        int b = other.start(j);
+        int bEnd = other.nameEnd(j);
+        for (; a < aEnd && b < bEnd; a += 1, b += 1) {
+            int diff = (_data.get(a) & 0xff) - (other._data.get(b) & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (aEnd - a) - (bEnd - b);
+    }
+
+    /** Returns true if file I and file J of OTHER have the same
+     *  contents. */
+    boolean sameSha(int i, Manifest other, int j) {
+        int a = nameEnd(i) + 1;
+        int b = other.nameEnd(j) + 1;
+        for (int k = 0; k < SHA_LEN; k += 1) {
+            if (_data.get(a + k) != other._data.get(b + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the index of the file named NAME, or -1 if there is
+     *  none. */
+    int find(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int lo = 0;
+        int hi = _size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(mid, key);
+            if (cmp == 0) {
+                return mid;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns a negative number, zero or a positive number as the name
+     *  of file I sorts before, with or after KEY, in UTF-8. */
+    private int compare(int i, byte[] key) {
+        int a = start(i);
+        int aEnd = nameEnd(i);
+        int b = 0;
+        for (; a < aEnd && b < key.length; a += 1, b += 1) {
+            int diff = (_data.get(a) & 0xff) - (key[b] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (aEnd - a) - (key.length - b);
+    }
+
+    /** Appends the line of file I, newline included, to OUT. */
+    void writeLine(int i, ByteArrayOutputStream out) {
+        for (int pos = start(i), end = nameEnd(i) + SHA_LEN + 2; pos < end;
+             pos += 1) {
+            out.write(_data.get(pos));
+        }
+    }
+
+    /** Returns the offset of the line of file I. */
+    private int start(int i) {
+        return _lines[_order == null ? i : _order[i]];
+    }
+
+    /** Returns the offset of the space ending the name of file I. */
+    private int nameEnd(int i) {
+        int line = _order == null ? i : _order[i];
+        return _lines[line + 1] - SHA_LEN - 2;
+    }
+
+    /** Returns the bytes of _data from START to END as a string. */
+    private String string(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int pos = start; pos < end; pos += 1) {
+            bytes[pos - start] = _data.get(pos);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Finds the start of each header and file line, checks that every
+     *  file line is long enough to hold a name and SHA-1, and sorts the
+     *  files if they are not already in order. _lines[I + 1] is always
+     *  one past the end of the line of file I. */
+    private void index() {
+        int limit = _data.limit();
+        byte[] magic = (MAGIC + "\n").getBytes(StandardCharsets.UTF_8);
+        _first = 1;
+        for (int pos = 0; pos < magic.length && _first == 1; pos += 1) {
+            if (pos >= limit || _data.get(pos) != magic[pos]) {
+                _first = 0;
+            }
+        }
+        int headers = _first == 0 ? HEADER_LINES : HEADER_LINES_2 + 1;
+        _headers = new int[headers + 1];
+        int pos = 0;
+        for (int header = 0; header < headers && pos < limit; pos += 1) {
+            if (_data.get(pos) == '\n') {
+                header += 1;
+                _headers[header] = pos + 1;
+            }
+        }
+        if (_headers[headers] == 0) {
+            throw Utils.error("Corrupt commit manifest.");
+        }
+        int[] lines = new int[16];
+        int n = 0;
+        lines[n] = pos;
+        for (; pos < limit; pos += 1) {
+            if (_data.get(pos) == '\n') {
+                if (pos + 1 - lines[n] < SHA_LEN + 3) {
+                    throw Utils.error("Corrupt commit manifest.");
+                }
+                n += 1;
+                if (n + 1 >= lines.length) {
+                    lines = Arrays.copyOf(lines, lines.length * 2);
+                }
+                lines[n] = pos + 1;
+            }
+        }
+        _lines = lines;
+        _size = n;
+        for (int i = 1; i < _size; i += 1) {
+            if (compare(i - 1, this, i) > 0) {
+                Integer[] order = new Integer[_size];
+                for (int k = 0; k < _size; k += 1) {
+                    order[k] = k;
+                }
+                Arrays.sort(order, (a, b) -> compare(a, this, b));
+                _order = new int[_size];
+                for (int k = 0; k < _size; k += 1) {
+                    _order[k] = order[k];
+                }
+                break;
+            }
+        }
+    }
+
+    /** The bytes of the commit. */
+    private final ByteBuffer _data;
+    /** The offset of each header line, MAGIC included, followed by that
+     *  of the first file. */
+    private int[] _headers;
+    /** The index in _headers of the branch line: 1 if the commit opens
+     *  with MAGIC, and 0 otherwise. */
+    private int _first;
+    /** The offset of the line of each file, in the order of the commit,
+     *  followed by the offset just past the last. */
+    private int[] _lines;
+    /** The number of files. */
+    private int _size;
+    /** The files in sorted order, by their position in the commit, or
+     *  null if the commit lists them in order. */
+    private int[] _order;
+}
@@ -0,0 +1,100 @@
+package gitlet;
+
+/** Classifies every file of a three-way merge in one pass over the
+ *  sorted manifests of the split point and of the two sides, the way a
+ *  merge-join walks sorted tables: each step takes the least name any of
+ *  them is positioned at, compares the SHA-1s found under it, and
+ *  advances past it. Nothing is looked up and, for files that need no
+ *  further work, nothing is allocated.
+ *  @author Evelyn Vo
+ */
+class ManifestJoin {
+
+    /** What a merge does with a file. */
+    enum Change {
+        /** Both sides have the same version, or neither has it. */
+        UNCHANGED,
+        /** Only the current side changed, added or deleted it. */
+        OURS,
+        /** Only the given side changed it. */
+        THEIRS,
+        /** Only the given side added it. */
+        ADD,
+        /** Only the given side deleted it. */
+        DELETE,
+        /** Both sides changed it, differently. */
+        CONFLICT
+    }
+
+    /** Receives the classification of each file. */
+    interface Visitor {
+        /** Handles the file classified as CHANGE, which is file BASE of
+         *  the split point, OURS of the current side and THEIRS of the
+         *  given side; each index is -1 where the file is absent. */
+        void visit(Change change, int base, int ours, int theirs);
+    }
+
+    /** Classifies every file named by BASE, OURS or THEIRS, in order of
+     *  name, and passes each to VISITOR. */
+    static void classify(Manifest base, Manifest ours, Manifest theirs,
+                         Visitor visitor) {
+        int b = 0;
+        int o = 0;
+        int t = 0;
+        while (b < base.size() || o < ours.size() || t < theirs.size()) {
+            Manifest least = null;
+            int at = -1;
+            if (b < base.size()) {
+                least = base;
+                at = b;
+            }
+            if (o < ours.size()
+                    && (least == null || ours.compare(o, least, at) < 0)) {
+                least = ours;
+                at = o;
+            }
+            if (t < theirs.size()
+                    && (least == null || theirs.compare(t, least, at) < 0)) {
+                least = theirs;
+                at = t;
+            }
+            int inBase = b < base.size() && base.compare(b, least, at) == 0
+                    ? b : -1;
+            int inOurs = o < ours.size() && ours.compare(o, least, at) == 0
+                    ? o : -1;
+            int inTheirs = t < theirs.size()
+                    && theirs.compare(t, least, at) == 0 ? t : -1;
+            visitor.visit(classify(base, inBase, ours, inOurs, theirs,
+                    inTheirs), inBase, inOurs, inTheirs);
+            b += inBase >= 0 ? 1 : 0;
+            o += inOurs >= 0 ? 1 : 0;
+            t += inTheirs >= 0 ? 1 : 0;
+        }
+    }
+
+    /** Returns the change for the file that is file B of BASE, O of OURS
+     *  and T of THEIRS, each -1 where the file is absent. */
+    private static Change classify(Manifest base, int b, Manifest ours,
+                                   int o, Manifest theirs, int t) {
+        if (same(ours, o, theirs, t)) {
+            return Change.UNCHANGED;
+        } else if (same(base, b, theirs, t)) {
+            return Change.OURS;
+        } else if (same(base, b, ours, o)) {
+            if (t < 0) {
+                return Change.DELETE;
+            }
+            return b < 0 ? Change.ADD : Change.THEIRS;
+        }
+        return Change.CONFLICT;
+    }
+
+    /** Returns true if file I of A and file J of B, either of which is
+     *  -1 for an absent file, are the same version. */
+    private static boolean same(Manifest a, int i, Manifest b, int j) {
+        if (i < 0 || j < 0) {
+            return i < 0 && j < 0;
+        }
+        return a.sameSha(i, b, j);
+    }
+}
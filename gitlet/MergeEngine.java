@@ -0,0 +1,275 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/** Merges the manifests of two commits against that of their split
+ *  point in memory. A ManifestJoin walks the three sorted manifests
+ *  once; a file takes the version of whichever side changed it, and if
+ *  both sides changed it differently, their lines are merged by a
+ *  LineMerge into a new blob, in which only the chunks both changed
+ *  differently are in conflict. A file one side deleted and the other
+ *  changed is in conflict whole. Files renamed unchanged by one side are
+ *  followed, so that the other side's changes under the old name land
+ *  under the new one. The engine reads the contents of blobs only to
+ *  merge them, writing the new blobs to temporary files, and touches
+ *  neither the object store nor the working directory: the caller stores
+ *  the new blobs and applies the minimal set of writes and deletions the
+ *  result lists.
+ *  @author Evelyn Vo
+ */
+class MergeEngine {
+
+    /** An engine opening a stream of the contents of a blob, given its
+     *  SHA-1, with CONTENTS. */
+    MergeEngine(Function<String, InputStream> contents) {
+        _contents = contents;
+    }
+
+    /** Returns the merge of the manifests CURRENT and GIVEN, whose split
+     *  point has the manifest SPLIT, each mapping names to SHA-1s. */
+    Result merge(Map<String, String> split, Map<String, String> current,
+                 Map<String, String> given) {
+        return merge(Manifest.of(split), Manifest.of(current),
+                Manifest.of(given));
+    }
+
+    /** Returns the merge of the manifests OURS and THEIRS, whose split
+     *  point has the manifest BASE. */
+    Result merge(Manifest base, Manifest ours, Manifest theirs) {
+        Map<String, String[]> renamed = new HashMap<>();
+        followRenames(base, ours, theirs, true, renamed);
+        followRenames(base, theirs, ours, false, renamed);
+        Result result = new Result();
+        ManifestJoin.classify(base, ours, theirs, (change, b, o, t) -> {
+            if (!renamed.isEmpty()) {
+                String name = b >= 0 ? base.name(b)
+                        : o >= 0 ? ours.name(o) : theirs.name(t);
+                String[] versions = renamed.get(name);
+                if (versions != null) {
+                    merge(result, name, versions[0], versions[1],
+                            versions[2], o >= 0 ? ours.sha(o) : null);
+                    return;
+                }
+            }
+            switch (change) {
+            case UNCHANGED:
+            case OURS:
+                if (o >= 0) {
+                    ours.writeLine(o, result._contents);
+                }
+                break;
+            case THEIRS:
+            case ADD:
+                theirs.writeLine(t, result._contents);
+                result._writes.put(theirs.name(t), theirs.sha(t));
+                break;
+            case DELETE:
+                result._deletes.add(ours.name(o));
+                break;
+            default:
+                String name = b >= 0 ? base.name(b) : ours.name(o);
+                merge(result, name, b >= 0 ? base.sha(b) : null,
+                        o >= 0 ? ours.sha(o) : null,
+                        t >= 0 ? theirs.sha(t) : null,
+                        o >= 0 ? ours.sha(o) : null);
+            }
+        });
+        return result;
+    }
+
+    /** The outcome of a merge. */
+    static class Result {
+
+        /** Returns the merged manifest, by name. */
+        Map<String, String> tree() {
+            Manifest merged = Manifest.parse("\n\n\n" + contents());
+            Map<String, String> tree = new TreeMap<>();
+            for (int i = 0; i < merged.size(); i += 1) {
+                tree.put(merged.name(i), merged.sha(i));
+            }
+            return tree;
+        }
+
+        /** Returns the names of the files in conflict, in order. */
+        List<String> conflicts() {
+            return _conflicts;
+        }
+
+        /** Returns the temporary files holding the blobs the merge
+         *  created, by SHA-1; these must be stored before the result is
+         *  used. */
+        Map<String, File> blobs() {
+            return _blobs;
+        }
+
+        /** Returns the files whose version differs from the current
+         *  commit's, with the SHA-1 of the version to write. */
+        Map<String, String> writes() {
+            return _writes;
+        }
+
+        /** Returns the files of the current commit the merge removes. */
+        List<String> deletes() {
+            return _deletes;
+        }
+
+        /** Returns true if the merged manifest differs from the current
+         *  commit's. */
+        boolean changed() {
+            return !_writes.isEmpty() || !_deletes.isEmpty();
+        }
+
+        /** Deletes the temporary files of the blobs the merge created. */
+        void discard() {
+            for (File file : _blobs.values()) {
+                file.delete();
+            }
+        }
+
+        /** Returns the merged manifest as the file lines of a commit,
+         *  sorted by name. */
+        String contents() {
+            return new String(_contents.toByteArray(),
+                    StandardCharsets.UTF_8);
+        }
+
+        /** The file lines of the merged manifest. */
+        private final ByteArrayOutputStream _contents =
+                new ByteArrayOutputStream();
+        /** Files in conflict. */
+        private final List<String> _conflicts = new ArrayList<>();
+        /** The temporary files of new blobs, by SHA-1. */
+        private final Map<String, File> _blobs = new TreeMap<>();
+        /** Files to write, with their new versions. */
+        private final Map<String, String> _writes = new TreeMap<>();
+        /** Files to delete. */
+        private final List<String> _deletes = new ArrayList<>();
+    }
+
+    /** Adds to RESULT the merge of the file NAME whose versions at the
+     *  split point, on the current side and on the given side are BASE,
+     *  OURS and THEIRS, and whose version in the current commit is
+     *  CURRENT; each is a SHA-1, or null where the file is absent. */
+    private void merge(Result result, String name, String base, String ours,
+                       String theirs, String current) {
+        String merged;
+        if (same(ours, theirs) || same(base, theirs)) {
+            merged = ours;
+        } else if (same(base, ours)) {
+            merged = theirs;
+        } else {
+            File file;
+            boolean clean;
+            try {
+                file = File.createTempFile("gitlet-merge", null);
+                try (OutputStream out = new BufferedOutputStream(
+                        Files.newOutputStream(file.toPath()))) {
+                    if (base != null && ours != null && theirs != null) {
+                        clean = LineMerge.merge(open(base), open(ours),
+                                open(theirs), out);
+                    } else {
+                        LineMerge.conflict(open(ours), open(theirs), out);
+                        clean = false;
+                    }
+                }
+            } catch (IOException excp) {
+                throw Utils.error("Could not merge %s: %s", name,
+                        excp.getMessage());
+            }
+            merged = Utils.sha1(file);
+            if (result._blobs.containsKey(merged)) {
+                file.delete();
+            } else {
+                result._blobs.put(merged, file);
+            }
+            if (!clean) {
+                result._conflicts.add(name);
+            }
+        }
+        if (merged != null) {
+            byte[] line = (name + " " + merged + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            result._contents.write(line, 0, line.length);
+        }
+        if (!same(merged, current)) {
+            if (merged == null) {
+                result._deletes.add(name);
+            } else {
+                result._writes.put(name, merged);
+            }
+        }
+    }
+
+    /** Records in RENAMED the versions, at the split point and on the
+     *  current and given sides, under which to merge each file SIDE
+     *  renamed, unchanged, since BASE, so that OTHER's version of the old
+     *  name is merged under the new one and the old name is dropped. SIDE
+     *  is the current side iff ISOURS. A rename is followed only if OTHER
+     *  still has the old name and lacks the new one. */
+    private static void followRenames(Manifest base, Manifest side,
+                                      Manifest other, boolean isOurs,
+                                      Map<String, String[]> renamed) {
+        Map<String, String> removed = new HashMap<>();
+        Map<String, String> added = new HashMap<>();
+        int i = 0;
+        int j = 0;
+        while (i < base.size() || j < side.size()) {
+            int cmp = i == base.size() ? 1
+                    : j == side.size() ? -1 : base.compare(i, side, j);
+            if (cmp < 0) {
+                removed.put(base.name(i), base.sha(i));
+                i += 1;
+            } else if (cmp > 0) {
+                added.put(side.name(j), side.sha(j));
+                j += 1;
+            } else {
+                i += 1;
+                j += 1;
+            }
+        }
+        for (RenameDetector.Rename rename
+                : RenameDetector.exact(removed, added)) {
+            String from = rename.from();
+            String to = rename.to();
+            int at = other.find(from);
+            if (at < 0 || other.find(to) >= 0 || renamed.containsKey(from)
+                    || renamed.containsKey(to)) {
+                continue;
+            }
+            String sha = removed.get(from);
+            String otherSha = other.sha(at);
+            renamed.put(from, new String[3]);
+            renamed.put(to, isOurs ? new String[] {sha, sha, otherSha}
+                    : new String[] {sha, otherSha, sha});
+        }
+    }
+
+    /** Returns a source of fresh streams of the contents of the blob SHA,
+     *  or null if SHA is null. */
+    private Supplier<InputStream> open(String sha) {
+        return sha == null ? null : () -> _contents.apply(sha);
+    }
+
+    /** Returns true if the versions A and B, either of which may be null
+     *  for an absent file, are the same. */
+    private static boolean same(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /** Opens the contents of a blob. */
+    private final Function<String, InputStream> _contents;
+}
@@ -0,0 +1,52 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** The outcome of a merge: the commit the current branch ended on,
+ *  whether it was simply fast-forwarded to the given branch, and the
+ *  files left in conflict, if any.
+ *  @author Evelyn Vo
+ */
+public class MergeResult {
+
+    /** The result of a merge that left the current branch at COMMIT, or
+     *  of a preview if COMMIT is null, by fast-forwarding iff
+     *  FASTFORWARDED, with the files CONFLICTS in conflict. */
+    MergeResult(String commit, boolean fastForwarded,
+                List<String> conflicts) {
+        _commit = commit;
+        _fastForwarded = fastForwarded;
+        _conflicts = Collections.unmodifiableList(new ArrayList<>(conflicts));
+    }
+
+    /** Returns the SHA1 of the commit the current branch now points to,
+     *  or null if the merge was only previewed and did not fast-forward. */
+    public String commit() {
+        return _commit;
+    }
+
+    /** Returns true if the current branch was fast-forwarded rather than
+     *  given a merge commit. */
+    public boolean fastForwarded() {
+        return _fastForwarded;
+    }
+
+    /** Returns true if the merge left conflict markers in some file. */
+    public boolean conflicted() {
+        return !_conflicts.isEmpty();
+    }
+
+    /** Returns the names of the files left in conflict, in order. */
+    public List<String> conflicts() {
+        return _conflicts;
+    }
+
+    /** The commit the current branch now points to. */
+    private final String _commit;
+    /** Whether the current branch was fast-forwarded. */
+    private final boolean _fastForwarded;
+    /** The files left in conflict. */
+    private final List<String> _conflicts;
+}
@@ -0,0 +1,180 @@
+package gitlet;
+
+import java.util.Arrays;
+
+/** Finds the longest common subsequence of the lines of two files by
+ *  Myers' O(ND) difference algorithm in its linear-space form: the
+ *  middle of an optimal edit path is found by searching from both ends
+ *  at once, and the halves on either side of it are solved recursively.
+ *  Common leading and trailing lines are matched before each search, so
+ *  files that differ in a few places cost little more than a scan.
+ *  @author Evelyn Vo
+ */
+class MyersDiff {
+
+    /** The number of diagonals on either side of the middle that a search
+     *  makes room for at first. */
+    private static final int INITIAL_DIAGONALS = 1 << 10;
+
+    /** Returns, for each line of A, the line of B it is matched to in a
+     *  longest common subsequence of the two, or -1 if it is not part of
+     *  it. Matches increase with the lines of A. */
+    static int[] matches(LineIndex a, LineIndex b) {
+        int[] matches = new int[a.size()];
+        Arrays.fill(matches, -1);
+        new MyersDiff(a, b, matches).diff(0, a.size(), 0, b.size());
+        return matches;
+    }
+
+    /** A diff of A and B recording its matches in MATCHES. */
+    private MyersDiff(LineIndex a, LineIndex b, int[] matches) {
+        _a = a;
+        _b = b;
+        _matches = matches;
+    }
+
+    /** Matches lines ALO to AHI of A with lines BLO to BHI of B. */
+    private void diff(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && _a.same(aLo, _b, bLo)) {
+            _matches[aLo] = bLo;
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && _a.same(aHi - 1, _b, bHi - 1)) {
+            _matches[aHi - 1] = bHi - 1;
+            aHi -= 1;
+            bHi -= 1;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            return;
+        }
+        long split = bisect(aLo, aHi, bLo, bHi);
+        if (split < 0) {
+            return;
+        }
+        int x = (int) (split >>> 32);
+        int y = (int) split;
+        diff(aLo, x, bLo, y);
+        diff(x, aHi, y, bHi);
+    }
+
+    /** Returns a point, as X in the high and Y in the low 32 bits, on an
+     *  optimal edit path from (ALO, BLO) to (AHI, BHI) that splits it
+     *  into two shorter ones, or -1 if A and B have no line in common
+     *  there. Both ends are searched at once, one edit at a time, until
+     *  the forward and reverse paths overlap. The furthest point on each
+     *  diagonal is kept for only as many diagonals as the search has
+     *  reached, so files with few differences need little space however
+     *  long they are. */
+    private long bisect(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = Math.min(maxD, INITIAL_DIAGONALS);
+        int length = 2 * offset + 2;
+        int[] forward = new int[length];
+        int[] reverse = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(reverse, -1);
+        forward[offset + 1] = 0;
+        reverse[offset + 1] = 0;
+        int delta = n - m;
+        boolean front = (delta & 1) != 0;
+        int k1start = 0;
+        int k1end = 0;
+        int k2start = 0;
+        int k2end = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            if (d == offset) {
+                int grown = Math.min(maxD, 2 * offset);
+                forward = widen(forward, grown - offset);
+                reverse = widen(reverse, grown - offset);
+                offset = grown;
+                length = 2 * offset + 2;
+            }
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1Offset = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d
+                        && forward[k1Offset - 1] < forward[k1Offset + 1])) {
+                    x1 = forward[k1Offset + 1];
+                } else {
+                    x1 = forward[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m
+                        && _a.same(aLo + x1, _b, bLo + y1)) {
+                    x1 += 1;
+                    y1 += 1;
+                }
+                forward[k1Offset] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2Offset = offset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < length
+                            && reverse[k2Offset] != -1
+                            && x1 >= n - reverse[k2Offset]) {
+                        return point(aLo + x1, bLo + y1);
+                    }
+                }
+            }
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2Offset = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d
+                        && reverse[k2Offset - 1] < reverse[k2Offset + 1])) {
+                    x2 = reverse[k2Offset + 1];
+                } else {
+                    x2 = reverse[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m
+                        && _a.same(aHi - x2 - 1, _b, bHi - y2 - 1)) {
+                    x2 += 1;
+                    y2 += 1;
+                }
+                reverse[k2Offset] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1Offset = offset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < length
+                            && forward[k1Offset] != -1) {
+                        int x1 = forward[k1Offset];
+                        int y1 = offset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            return point(aLo + x1, bLo + y1);
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Returns a copy of the diagonals DIAGONALS with BY more, unreached,
+     *  on either side. */
+    private static int[] widen(int[] diagonals, int by) {
+        int[] wider = new int[diagonals.length + 2 * by];
+        Arrays.fill(wider, -1);
+        System.arraycopy(diagonals, 0, wider, by, diagonals.length);
+        return wider;
+    }
+
+    /** Returns the point (X, Y) packed into a long. */
+    private static long point(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /** The lines of the first file. */
+    private final LineIndex _a;
+    /** The lines of the second file. */
+    private final LineIndex _b;
+    /** The match of each line of _a. */
+    private final int[] _matches;
+}
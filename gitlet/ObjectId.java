@@ -0,0 +1,180 @@
+package gitlet;
+
+/** A SHA-1 object id packed into primitive fields.
+ *  Ids are compared and hashed without touching their hex form, which
+ *  is only produced when an id is printed or turned into a file name.
+ *  @author Evelyn Vo
+ */
+final class ObjectId implements Comparable<ObjectId> {
+
+    /** The number of raw bytes in an id. */
+    static final int RAW_LEN = 20;
+
+    /** The number of hex digits in an id. */
+    static final int HEX_LEN = 2 * RAW_LEN;
+
+    /** The id of the initial commit. */
+    static final ObjectId ZERO = new ObjectId(0L, 0L, 0);
+
+    /** Hex digits, indexed by value. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** An id made of the raw bytes W1 (0-7), W2 (8-15) and W3 (16-19). */
+    ObjectId(long w1, long w2, int w3) {
+        _w1 = w1;
+        _w2 = w2;
+        _w3 = w3;
+    }
+
+    /** Returns true iff S is a full-length lower- or upper-case hex id. */
+    static boolean isId(String s) {
+        if (s == null || s.length() != HEX_LEN) {
+            return false;
+        }
+        for (int pos = 0; pos < HEX_LEN; pos += 1) {
+            if (Character.digit(s.charAt(pos), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the id whose hex form is HEX.
+     *  @param hex A 40-digit hex string */
+    static ObjectId fromHex(String hex) {
+        if (!isId(hex)) {
+            throw Utils.error("Malformed object id: %s", hex);
+        }
+        return new ObjectId(parseLong(hex, 0), parseLong(hex, 16),
+                (int) parseLong(hex, 32));
+    }
+
+    /** Returns the id stored as RAW_LEN bytes in BUF starting at OFF. */
+    static ObjectId fromRaw(byte[] buf, int off) {
+        return new ObjectId(readLong(buf, off, 8), readLong(buf, off + 8, 8),
+                (int) readLong(buf, off + 16, 4));
+    }
+
+    /** Stores this id as RAW_LEN bytes in BUF starting at OFF. */
+    void writeRaw(byte[] buf, int off) {
+        writeLong(buf, off, 8, _w1);
+        writeLong(buf, off + 8, 8, _w2);
+        writeLong(buf, off + 16, 4, _w3);
+    }
+
+    /** Returns the 40-digit hex form of this id. */
+    String toHex() {
+        char[] out = new char[HEX_LEN];
+        formatLong(out, 0, 16, _w1);
+        formatLong(out, 16, 16, _w2);
+        formatLong(out, 32, 8, _w3);
+        return new String(out);
+    }
+
+    /** Returns the name of the fan-out directory holding this object. */
+    String fanOut() {
+        char[] out = new char[2];
+        formatLong(out, 0, 2, _w1 >>> 56);
+        return new String(out);
+    }
+
+    /** Returns the name of this object's file within its fan-out
+     *  directory. */
+    String fileName() {
+        return toHex().substring(2);
+    }
+
+    /** Returns true iff the hex form of this id starts with PREFIX. */
+    boolean startsWith(String prefix) {
+        return toHex().startsWith(prefix.toLowerCase());
+    }
+
+    /** Returns the first 8 bytes of this id. */
+    long high() {
+        return _w1;
+    }
+
+    /** Returns bytes 8-15 of this id. */
+    long middle() {
+        return _w2;
+    }
+
+    /** Returns bytes 16-19 of this id. */
+    int low() {
+        return _w3;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w1 == other._w1 && _w2 == other._w2 && _w3 == other._w3;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (_w1 >>> 32);
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int cmp = Long.compareUnsigned(_w1, other._w1);
+        if (cmp == 0) {
+            cmp = Long.compareUnsigned(_w2, other._w2);
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_w3, other._w3);
+        }
+        return cmp;
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    /** Returns the 16 hex digits of S starting at START as a long. */
+    private static long parseLong(String s, int start) {
+        long result = 0;
+        int end = Math.min(start + 16, HEX_LEN);
+        for (int pos = start; pos < end; pos += 1) {
+            result = (result << 4) | Character.digit(s.charAt(pos), 16);
+        }
+        return result;
+    }
+
+    /** Returns the big-endian value of the LEN bytes of BUF at OFF. */
+    private static long readLong(byte[] buf, int off, int len) {
+        long result = 0;
+        for (int pos = 0; pos < len; pos += 1) {
+            result = (result << 8) | (buf[off + pos] & 0xff);
+        }
+        return result;
+    }
+
+    /** Stores the low LEN bytes of VAL into BUF at OFF, big-endian. */
+    private static void writeLong(byte[] buf, int off, int len, long val) {
+        for (int pos = len - 1; pos >= 0; pos -= 1) {
+            buf[off + pos] = (byte) val;
+            val >>>= 8;
+        }
+    }
+
+    /** Writes the low DIGITS hex digits of VAL into OUT at OFF. */
+    private static void formatLong(char[] out, int off, int digits,
+                                   long val) {
+        for (int pos = digits - 1; pos >= 0; pos -= 1) {
+            out[off + pos] = HEX[(int) (val & 0xf)];
+            val >>>= 4;
+        }
+    }
+
+    /** Bytes 0-7 of the id. */
+    private final long _w1;
+    /** Bytes 8-15 of the id. */
+    private final long _w2;
+    /** Bytes 16-19 of the id. */
+    private final int _w3;
+}
@@ -0,0 +1,104 @@
+package gitlet;
+
+/** A set of ObjectIds kept in flat primitive arrays (open addressing with
+ *  linear probing), so that large ancestor sets cost 21 bytes per entry
+ *  instead of one String and one map node each.
+ *  @author Evelyn Vo
+ */
+class ObjectIdSet {
+
+    /** The initial number of slots. Must be a power of two. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** An empty set. */
+    ObjectIdSet() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /** An empty set with room for about EXPECTED ids before resizing. */
+    ObjectIdSet(int expected) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < 2 * expected) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /** Adds ID to this set. Returns true iff it was not already present. */
+    boolean add(ObjectId id) {
+        int slot = find(id.high(), id.middle(), id.low());
+        if (_used[slot]) {
+            return false;
+        }
+        store(slot, id.high(), id.middle(), id.low());
+        _size += 1;
+        if (2 * _size > _used.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /** Returns true iff ID is in this set. */
+    boolean contains(ObjectId id) {
+        return _used[find(id.high(), id.middle(), id.low())];
+    }
+
+    /** Returns the number of ids in this set. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the slot holding (W1, W2, W3), or the empty slot where it
+     *  would go. */
+    private int find(long w1, long w2, int w3) {
+        int mask = _used.length - 1;
+        int slot = (int) (w1 ^ (w1 >>> 32)) & mask;
+        while (_used[slot]
+               && (_w1[slot] != w1 || _w2[slot] != w2 || _w3[slot] != w3)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /** Stores (W1, W2, W3) into SLOT. */
+    private void store(int slot, long w1, long w2, int w3) {
+        _used[slot] = true;
+        _w1[slot] = w1;
+        _w2[slot] = w2;
+        _w3[slot] = w3;
+    }
+
+    /** Replaces the tables with empty ones of CAPACITY slots. */
+    private void allocate(int capacity) {
+        _used = new boolean[capacity];
+        _w1 = new long[capacity];
+        _w2 = new long[capacity];
+        _w3 = new int[capacity];
+    }
+
+    /** Doubles the number of slots, rehashing every entry. */
+    private void grow() {
+        boolean[] used = _used;
+        long[] w1 = _w1;
+        long[] w2 = _w2;
+        int[] w3 = _w3;
+        allocate(2 * used.length);
+        for (int pos = 0; pos < used.length; pos += 1) {
+            if (used[pos]) {
+                store(find(w1[pos], w2[pos], w3[pos]),
+                      w1[pos], w2[pos], w3[pos]);
+            }
+        }
+    }
+
+    /** Occupied slots. */
+    private boolean[] _used;
+    /** Bytes 0-7 of the id in each slot. */
+    private long[] _w1;
+    /** Bytes 8-15 of the id in each slot. */
+    private long[] _w2;
+    /** Bytes 16-19 of the id in each slot. */
+    private int[] _w3;
+    /** Number of ids in the set. */
+    private int _size;
+}
@@ -0,0 +1,179 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/** The packed-refs file. Holds one "NAME SHA1" line per branch, sorted
+ *  by branch name, so that a single branch can be found by binary search
+ *  over the raw bytes without splitting the whole file into lines.
+ *  Loose pointer files in the heads folder override packed entries.
+ *  @author Evelyn Vo
+ */
+class PackedRefs {
+
+    /** The packed refs stored in FILE, which need not exist yet, written
+     *  straight to disk. */
+    PackedRefs(File file) {
+        this(file, Utils::writeContents, File::delete);
+    }
+
+    /** The packed refs stored in FILE, which need not exist yet, writing
+     *  a file with WRITE and deleting one with DELETE. */
+    PackedRefs(File file, BiConsumer<File, String> write,
+               Consumer<File> delete) {
+        _file = file;
+        _write = write;
+        _delete = delete;
+    }
+
+    /** Returns the SHA1 recorded for branch NAME, or null if
+     *  NAME is not packed. */
+    String get(String name) {
+        byte[] data = contents();
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int lo = 0;
+        int hi = data.length;
+        while (lo < hi) {
+            int mid = lineStart(data, (lo + hi) >>> 1);
+            int cmp = compareName(data, mid, key);
+            if (cmp == 0) {
+                int start = mid + key.length + 1;
+                return new String(data, start, lineEnd(data, start) - start,
+                                  StandardCharsets.UTF_8);
+            } else if (cmp < 0) {
+                lo = lineEnd(data, mid) + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return null;
+    }
+
+    /** Returns true iff branch NAME is packed. */
+    boolean contains(String name) {
+        return get(name) != null;
+    }
+
+    /** Returns the names of all packed branches in sorted order. */
+    List<String> names() {
+        return new ArrayList<>(read().keySet());
+    }
+
+    /** Removes branch NAME, rewriting the file if it was packed. */
+    void remove(String name) {
+        if (!contains(name)) {
+            return;
+        }
+        TreeMap<String, String> refs = read();
+        refs.remove(name);
+        write(refs);
+    }
+
+    /** Moves every loose pointer file in HEADS into this file, so that
+     *  later lookups need neither a directory listing nor one file per
+     *  branch. Returns the number of refs packed. */
+    int pack(File heads) {
+        TreeMap<String, String> refs = read();
+        List<String> loose = Utils.plainFilenamesIn(heads);
+        if (loose == null || loose.isEmpty()) {
+            return 0;
+        }
+        for (String name : loose) {
+            refs.put(name, Utils.readContentsAsString(
+                    Utils.join(heads, name)));
+        }
+        write(refs);
+        for (String name : loose) {
+            _delete.accept(Utils.join(heads, name));
+        }
+        return loose.size();
+    }
+
+    /** Returns all packed refs as a sorted map from name to SHA1. */
+    private TreeMap<String, String> read() {
+        TreeMap<String, String> refs = new TreeMap<>();
+        byte[] data = contents();
+        int start = 0;
+        while (start < data.length) {
+            int end = lineEnd(data, start);
+            String line = new String(data, start, end - start,
+                                     StandardCharsets.UTF_8);
+            int space = line.lastIndexOf(' ');
+            if (space > 0) {
+                refs.put(line.substring(0, space), line.substring(space + 1));
+            }
+            start = end + 1;
+        }
+        return refs;
+    }
+
+    /** Replaces the file with REFS, one sorted line per ref. */
+    private void write(TreeMap<String, String> refs) {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, String> ref : refs.entrySet()) {
+            out.append(ref.getKey()).append(' ')
+               .append(ref.getValue()).append('\n');
+        }
+        _write.accept(_file, out.toString());
+        _cache = out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the bytes of the file, or none if it does not exist. */
+    private byte[] contents() {
+        if (_cache == null) {
+            _cache = _file.isFile() ? Utils.readContents(_file) : new byte[0];
+        }
+        return _cache;
+    }
+
+    /** Returns the index of the first byte of the line containing POS. */
+    private static int lineStart(byte[] data, int pos) {
+        while (pos > 0 && data[pos - 1] != '\n') {
+            pos -= 1;
+        }
+        return pos;
+    }
+
+    /** Returns the index of the newline ending the line starting at POS,
+     *  or the length of DATA if the line is unterminated. */
+    private static int lineEnd(byte[] data, int pos) {
+        while (pos < data.length && data[pos] != '\n') {
+            pos += 1;
+        }
+        return pos;
+    }
+
+    /** Compares the name on the line starting at START in DATA with KEY
+     *  as unsigned bytes, which matches the order the file is written in
+     *  for ASCII branch names. The name is all of the line before its
+     *  last space, so it may hold spaces of its own. */
+    private static int compareName(byte[] data, int start, byte[] key) {
+        int end = lineEnd(data, start);
+        while (end > start && data[end - 1] != ' ') {
+            end -= 1;
+        }
+        int length = Math.max(end - start - 1, 0);
+        for (int pos = 0; pos < Math.min(length, key.length); pos += 1) {
+            int cmp = (data[start + pos] & 0xff) - (key[pos] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    /** The packed-refs file. */
+    private final File _file;
+    /** Writes a file. */
+    private final BiConsumer<File, String> _write;
+    /** Deletes a file. */
+    private final Consumer<File> _delete;
+    /** The contents of _file, read on first use or as last written. */
+    private byte[] _cache;
+}
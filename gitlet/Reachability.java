@@ -0,0 +1,251 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/** Answers which commits a commit reaches with reachability bitmaps.
+ *  Every commit indexed is given a number, after those of its parents,
+ *  and keeps it for good; the numbers are listed by SHA-1 in a file
+ *  searched in place. A Bitmap of the numbers of the commits a commit
+ *  reaches is kept for every commit asked about, such as a branch's
+ *  head, and for every CHECKPOINT-th commit numbered. The bitmap of a
+ *  commit without one is found by walking its history, newest number
+ *  first, only until every path meets a commit with a bitmap, and
+ *  taking the union of those, so whether one commit reaches another is
+ *  answered without walking the whole graph. Numbers and bitmaps are
+ *  only added, under a lock of their own, and every file is written
+ *  whole and moved into place, so readers need no lock.
+ *  @author Evelyn Vo
+ */
+class Reachability {
+
+    /** How often a commit numbered keeps a bitmap. */
+    static final int CHECKPOINT = 64;
+
+    /** The length of an entry of the numbers file: a raw SHA-1, then its
+     *  number. */
+    private static final int RECORD = ObjectId.RAW_LEN + Integer.BYTES;
+
+    /** An index keeping its files under FOLDER and reading the manifest
+     *  of a commit, given its SHA-1, with COMMITS. */
+    Reachability(File folder, Function<String, Manifest> commits) {
+        _folder = folder;
+        _commits = commits;
+        _numbersFile = Utils.join(folder, "commits");
+        _lockFile = Utils.join(folder, "lock");
+    }
+
+    /** Returns true iff the commit TIP reaches the commit COMMIT: they
+     *  are the same, or COMMIT is an ancestor of TIP. */
+    boolean reaches(String tip, String commit) {
+        if (tip.equals(commit)) {
+            return true;
+        }
+        Bitmap reached = bitmap(tip);
+        int number = number(ObjectId.fromHex(commit));
+        return number >= 0 && reached.contains(number);
+    }
+
+    /** Returns the set of the numbers of the commits TIP reaches, itself
+     *  included. */
+    Bitmap bitmap(String tip) {
+        ObjectId id = ObjectId.fromHex(tip);
+        File file = bitmapFile(id);
+        if (file.isFile()) {
+            _numbers = readNumbers();
+            return Bitmap.read(BlobStore.map(file));
+        }
+        _folder.mkdirs();
+        try (RepoLock lock = RepoLock.acquire(_lockFile, false,
+                RepoLock.DEFAULT_TIMEOUT)) {
+            _numbers = readNumbers();
+            for (ObjectId commit : assign(id)) {
+                if (number(commit) % CHECKPOINT == 0) {
+                    write(bitmapFile(commit), compute(commit).write());
+                }
+            }
+            Bitmap bitmap = compute(id);
+            write(file, bitmap.write());
+            return bitmap;
+        }
+    }
+
+    /** Returns the number of the commit ID, or -1 if it has none. */
+    int number(ObjectId id) {
+        if (_numbers == null) {
+            _numbers = readNumbers();
+        }
+        int lo = 0;
+        int hi = _numbers.limit() / RECORD;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = id(_numbers, mid).compareTo(id);
+            if (cmp == 0) {
+                return _numbers.getInt(mid * RECORD + ObjectId.RAW_LEN);
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Numbers the commits TIP reaches that have no number yet, each
+     *  after its parents, and returns them in the order numbered. */
+    private List<ObjectId> assign(ObjectId tip) {
+        int next = _numbers.limit() / RECORD;
+        Map<ObjectId, Integer> added = new HashMap<>();
+        List<ObjectId> order = new ArrayList<>();
+        ObjectIdSet expanded = new ObjectIdSet();
+        ArrayDeque<ObjectId> stack = new ArrayDeque<>();
+        stack.push(tip);
+        while (!stack.isEmpty()) {
+            ObjectId commit = stack.peek();
+            if (added.containsKey(commit) || number(commit) >= 0) {
+                stack.pop();
+            } else if (!expanded.add(commit)) {
+                stack.pop();
+                added.put(commit, next + order.size());
+                order.add(commit);
+            } else {
+                for (ObjectId parent : parents(commit)) {
+                    stack.push(parent);
+                }
+            }
+        }
+        if (order.isEmpty()) {
+            return order;
+        }
+        List<ObjectId> sorted = new ArrayList<>(order);
+        Collections.sort(sorted);
+        int size = _numbers.limit() / RECORD;
+        byte[] records = new byte[(size + sorted.size()) * RECORD];
+        ByteBuffer merged = ByteBuffer.wrap(records);
+        int i = 0;
+        for (ObjectId id : sorted) {
+            for (; i < size && id(_numbers, i).compareTo(id) < 0; i += 1) {
+                copy(i, merged);
+            }
+            id.writeRaw(records, merged.position());
+            merged.position(merged.position() + ObjectId.RAW_LEN);
+            merged.putInt(added.get(id));
+        }
+        for (; i < size; i += 1) {
+            copy(i, merged);
+        }
+        write(_numbersFile, records);
+        _numbers = ByteBuffer.wrap(records);
+        return order;
+    }
+
+    /** Returns the set of the numbers of the commits ID reaches. Its
+     *  history is walked from the highest number down, and a commit with
+     *  a bitmap of its own contributes that bitmap instead of its
+     *  parents, so a commit a bitmap already holds is never walked. */
+    private Bitmap compute(ObjectId id) {
+        Bitmap reached = Bitmap.EMPTY;
+        int[] values = new int[16];
+        int count = 0;
+        Map<Integer, ObjectId> byNumber = new HashMap<>();
+        PriorityQueue<Integer> fringe =
+                new PriorityQueue<>(Collections.reverseOrder());
+        byNumber.put(number(id), id);
+        fringe.add(number(id));
+        while (!fringe.isEmpty()) {
+            int number = fringe.remove();
+            ObjectId commit = byNumber.get(number);
+            if (reached.contains(number)) {
+                continue;
+            }
+            File file = bitmapFile(commit);
+            if (!commit.equals(id) && file.isFile()) {
+                reached = reached.or(Bitmap.read(BlobStore.map(file)));
+                continue;
+            }
+            if (count == values.length) {
+                values = Arrays.copyOf(values, 2 * count);
+            }
+            values[count] = number;
+            count += 1;
+            for (ObjectId parent : parents(commit)) {
+                int parentNumber = number(parent);
+                if (byNumber.putIfAbsent(parentNumber, parent) == null) {
+                    fringe.add(parentNumber);
+                }
+            }
+        }
+        return reached.or(Bitmap.of(values, count));
+    }
+
+    /** Returns the parents of the commit ID. */
+    private List<ObjectId> parents(ObjectId id) {
+        Manifest commit = _commits.apply(id.toHex());
+        List<ObjectId> parents = new ArrayList<>(2);
+        for (int line : new int[] {Manifest.PARENT1, Manifest.PARENT2}) {
+            String parent = commit.header(line);
+            if (!parent.isEmpty()) {
+                parents.add(ObjectId.fromHex(parent));
+            }
+        }
+        return parents;
+    }
+
+    /** Returns the numbers file, which may be empty. */
+    private ByteBuffer readNumbers() {
+        return _numbersFile.isFile() ? BlobStore.map(_numbersFile)
+                : ByteBuffer.allocate(0);
+    }
+
+    /** Copies entry POS of the numbers file to the end of OUT. */
+    private void copy(int pos, ByteBuffer out) {
+        ByteBuffer entry = _numbers.duplicate();
+        entry.position(pos * RECORD).limit((pos + 1) * RECORD);
+        out.put(entry);
+    }
+
+    /** Returns the SHA-1 of entry POS of NUMBERS. */
+    private static ObjectId id(ByteBuffer numbers, int pos) {
+        byte[] raw = new byte[ObjectId.RAW_LEN];
+        ByteBuffer entry = numbers.duplicate();
+        entry.position(pos * RECORD);
+        entry.get(raw);
+        return ObjectId.fromRaw(raw, 0);
+    }
+
+    /** Returns the file keeping the bitmap of the commit ID. */
+    private File bitmapFile(ObjectId id) {
+        return Utils.join(_folder, id.fanOut(), id.fileName());
+    }
+
+    /** Replaces FILE with DATA. */
+    private static void write(File file, byte[] data) {
+        try {
+            Utils.writeAtomically(file, data);
+        } catch (IOException excp) {
+            throw Utils.error("Could not write bitmap: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** The directory numbers and bitmaps are kept in. */
+    private final File _folder;
+    /** Reads the manifest of a commit. */
+    private final Function<String, Manifest> _commits;
+    /** The file listing the number of each commit by SHA-1. */
+    private final File _numbersFile;
+    /** The file locked while numbers and bitmaps are added. */
+    private final File _lockFile;
+    /** The entries of the numbers file, as last read. */
+    private ByteBuffer _numbers;
+}
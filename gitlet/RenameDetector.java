@@ -0,0 +1,306 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** Pairs removed files with added ones that hold the same or similar
+ *  contents. Exact renames are found by joining the two sides on blob
+ *  SHA-1. The rest are compared by MinHash: each file is reduced to a
+ *  set of shingles (the hashes of its lines, or of its chunks if it is
+ *  large enough to be stored as chunks), and that set to a signature of
+ *  SIGNATURE_SIZE minimums. Signatures are cut into BANDS bands and only
+ *  files sharing a band are ever compared, so the work grows with the
+ *  number of files rather than with the number of pairs. Two files whose
+ *  shingle sets overlap by 70% share a band with a probability above
+ *  0.98.
+ *  @author Evelyn Vo
+ */
+class RenameDetector {
+
+    /** The least similarity, in percent, at which a removed and an added
+     *  file are taken to be a rename. */
+    static final int MIN_SCORE = 50;
+
+    /** The number of minimums in a signature. */
+    static final int SIGNATURE_SIZE = 64;
+
+    /** The number of bands signatures are cut into. */
+    static final int BANDS = 16;
+
+    /** The number of minimums in a band. */
+    private static final int ROWS = SIGNATURE_SIZE / BANDS;
+
+    /** The FNV-1a offset basis, with which lines are hashed. */
+    private static final long FNV_BASIS = 0xcbf29ce484222325L;
+
+    /** The FNV-1a prime. */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** The seed of each of the hash functions a signature is made with. */
+    private static final long[] SEEDS = new long[SIGNATURE_SIZE];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int pos = 0; pos < SEEDS.length; pos += 1) {
+            seed += 0x9E3779B97F4A7C15L;
+            SEEDS[pos] = mix(seed);
+        }
+    }
+
+    /** A detector reading stored contents from BLOBS and computing
+     *  signatures on IO. */
+    RenameDetector(BlobStore blobs, IoExecutor io) {
+        _blobs = blobs;
+        _io = io;
+    }
+
+    /** Returns the renames among REMOVED and ADDED, both of which map
+     *  names to blob SHA-1s, whose contents are identical. Each name is
+     *  used at most once, and renames are ordered by their new name. */
+    static List<Rename> exact(Map<String, String> removed,
+                              Map<String, String> added) {
+        List<Rename> renames = new ArrayList<>();
+        Map<String, List<String>> bySha = new HashMap<>();
+        for (Map.Entry<String, String> file : new TreeMap<>(removed)
+                .entrySet()) {
+            bySha.computeIfAbsent(file.getValue(), k -> new ArrayList<>())
+                    .add(file.getKey());
+        }
+        for (Map.Entry<String, String> file : new TreeMap<>(added)
+                .entrySet()) {
+            List<String> sources = bySha.get(file.getValue());
+            if (sources != null && !sources.isEmpty()) {
+                renames.add(new Rename(sources.remove(0), file.getKey(),
+                        100));
+            }
+        }
+        return renames;
+    }
+
+    /** Returns the renames among REMOVED and ADDED, both of which map
+     *  names to blob SHA-1s: the exact ones, and then, of the remaining
+     *  pairs whose similarity is at least MIN_SCORE, the most similar
+     *  first. The contents of a blob are read from FILES, which maps
+     *  SHA-1s to files, if it is there, and from the object store
+     *  otherwise. Each name is used at most once, and renames are ordered
+     *  by their new name. */
+    List<Rename> detect(Map<String, String> removed,
+                        Map<String, String> added, Map<String, File> files) {
+        List<Rename> renames = exact(removed, added);
+        Map<String, String> sources = new TreeMap<>(removed);
+        Map<String, String> targets = new TreeMap<>(added);
+        for (Rename rename : renames) {
+            sources.remove(rename.from());
+            targets.remove(rename.to());
+        }
+        if (sources.isEmpty() || targets.isEmpty()) {
+            return renames;
+        }
+        List<String> fromNames = new ArrayList<>(sources.keySet());
+        List<String> toNames = new ArrayList<>(targets.keySet());
+        List<long[]> fromSigs = _io.map(new ArrayList<>(sources.values()),
+                sha -> signature(sha, files.get(sha)));
+        List<long[]> toSigs = _io.map(new ArrayList<>(targets.values()),
+                sha -> signature(sha, files.get(sha)));
+        Map<Long, List<Integer>> buckets = new HashMap<>();
+        for (int from = 0; from < fromSigs.size(); from += 1) {
+            if (fromSigs.get(from) == null) {
+                continue;
+            }
+            for (int band = 0; band < BANDS; band += 1) {
+                buckets.computeIfAbsent(bandKey(fromSigs.get(from), band),
+                        k -> new ArrayList<>()).add(from);
+            }
+        }
+        List<Rename> similar = new ArrayList<>();
+        for (int to = 0; to < toSigs.size(); to += 1) {
+            long[] sig = toSigs.get(to);
+            if (sig == null) {
+                continue;
+            }
+            Set<Integer> seen = new HashSet<>();
+            for (int band = 0; band < BANDS; band += 1) {
+                List<Integer> bucket = buckets.get(bandKey(sig, band));
+                if (bucket == null) {
+                    continue;
+                }
+                for (int from : bucket) {
+                    if (seen.add(from)) {
+                        int score = score(fromSigs.get(from), sig);
+                        if (score >= MIN_SCORE) {
+                            similar.add(new Rename(fromNames.get(from),
+                                    toNames.get(to), score));
+                        }
+                    }
+                }
+            }
+        }
+        Collections.sort(similar, (a, b) -> a.score() != b.score()
+                ? b.score() - a.score()
+                : a.toString().compareTo(b.toString()));
+        Set<String> used = new HashSet<>();
+        for (Rename rename : similar) {
+            if (!used.contains(rename.from())
+                    && !used.contains(rename.to())) {
+                used.add(rename.from());
+                used.add(rename.to());
+                renames.add(rename);
+            }
+        }
+        Collections.sort(renames, (a, b) -> a.to().compareTo(b.to()));
+        return renames;
+    }
+
+    /** A file renamed from one name to another. */
+    static class Rename {
+        /** The rename of FROM to TO, whose contents are SCORE percent
+         *  alike. */
+        Rename(String from, String to, int score) {
+            _from = from;
+            _to = to;
+            _score = score;
+        }
+
+        /** Returns the old name. */
+        String from() {
+            return _from;
+        }
+
+        /** Returns the new name. */
+        String to() {
+            return _to;
+        }
+
+        /** Returns the similarity of the contents, in percent. */
+        int score() {
+            return _score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s (%d%%)", _from, _to, _score);
+        }
+
+        /** The old name. */
+        private final String _from;
+        /** The new name. */
+        private final String _to;
+        /** The similarity, in percent. */
+        private final int _score;
+    }
+
+    /** Returns the signature of the blob SHA, read from FILE if it is not
+     *  null, or null if it has no shingles. */
+    private long[] signature(String sha, File file) {
+        long[] sig = new long[SIGNATURE_SIZE];
+        Arrays.fill(sig, Long.MAX_VALUE);
+        boolean any = false;
+        for (long shingle : shingles(sha, file)) {
+            any = true;
+            for (int pos = 0; pos < SIGNATURE_SIZE; pos += 1) {
+                long hash = mix(shingle ^ SEEDS[pos]);
+                if (hash < sig[pos]) {
+                    sig[pos] = hash;
+                }
+            }
+        }
+        return any ? sig : null;
+    }
+
+    /** Returns the distinct shingles of the blob SHA, read from FILE if it
+     *  is not null: the ids of its chunks if it is stored as chunks, and
+     *  the hashes of its lines otherwise. */
+    private Set<Long> shingles(String sha, File file) {
+        Set<Long> shingles = new HashSet<>();
+        try {
+            if (file == null) {
+                file = _blobs.objectFile(sha);
+                List<String> chunks = _blobs.chunks(file);
+                if (chunks != null) {
+                    for (String chunk : chunks) {
+                        shingles.add(prefix(chunk));
+                    }
+                    return shingles;
+                }
+            } else if (file.length() >= BlobStore.CHUNK_THRESHOLD) {
+                try (InputStream in = Files.newInputStream(file.toPath())) {
+                    Chunker chunker = new Chunker(in);
+                    for (int n = chunker.next(); n > 0; n = chunker.next()) {
+                        byte[] chunk = new byte[n];
+                        System.arraycopy(chunker.buffer(), 0, chunk, 0, n);
+                        shingles.add(prefix(Utils.sha1(chunk)));
+                    }
+                }
+                return shingles;
+            }
+            byte[] data = Files.readAllBytes(file.toPath());
+            long hash = FNV_BASIS;
+            for (byte b : data) {
+                if (b == '\n') {
+                    shingles.add(hash);
+                    hash = FNV_BASIS;
+                } else {
+                    hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+                }
+            }
+            if (hash != FNV_BASIS) {
+                shingles.add(hash);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not read blob %s: %s", sha,
+                    excp.getMessage());
+        }
+        return shingles;
+    }
+
+    /** Returns the estimated similarity, in percent, of the files with
+     *  signatures A and B, which are not identical: at most 99, so that,
+     *  as in git, 100% means only an exact rename. */
+    private static int score(long[] a, long[] b) {
+        int same = 0;
+        for (int pos = 0; pos < SIGNATURE_SIZE; pos += 1) {
+            if (a[pos] == b[pos]) {
+                same += 1;
+            }
+        }
+        return Math.min(same * 100 / SIGNATURE_SIZE, 99);
+    }
+
+    /** Returns the bucket key of band BAND of SIG. */
+    private static long bandKey(long[] sig, int band) {
+        long key = band;
+        for (int pos = band * ROWS; pos < (band + 1) * ROWS; pos += 1) {
+            key = mix(key * 31 + sig[pos]);
+        }
+        return key;
+    }
+
+    /** Returns the first 64 bits of the hex SHA-1 SHA. */
+    private static long prefix(String sha) {
+        return Long.parseUnsignedLong(sha.substring(0, 16), 16);
+    }
+
+    /** Returns X scrambled by the SplitMix64 finalizer. */
+    private static long mix(long x) {
+        long z = x;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** The blobs of the object store. */
+    private final BlobStore _blobs;
+    /** Computes signatures concurrently. */
+    private final IoExecutor _io;
+}
@@ -0,0 +1,284 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/** A readers-writer lock on a repository, shared between processes through
+ *  FileChannel.lock on a lock file and between threads of one process
+ *  through a ReentrantReadWriteLock. Read-only commands hold it shared so
+ *  that they run concurrently; commands that write refs, objects or logs
+ *  hold it exclusively. A process waiting to write holds a second file,
+ *  the lock file's name with ".wait" added, exclusively until it has the
+ *  lock, and every process passes through that file before taking the
+ *  lock, so a stream of readers cannot keep a writer out. Acquisition
+ *  gives up once no writer has taken the lock for a timeout, instead of
+ *  waiting forever on a stuck process; each writer counts itself in the
+ *  lock file, so a long queue of live writers does not time out.
+ *  @author Evelyn Vo
+ */
+class RepoLock implements AutoCloseable {
+
+    /** How long to wait for the lock by default, in milliseconds. */
+    static final long DEFAULT_TIMEOUT = 10000;
+
+    /** The longest pause between attempts to take the file lock, in
+     *  milliseconds. */
+    private static final long MAX_BACKOFF = 50;
+
+    /** Returns a held lock on the repository whose lock file is FILE,
+     *  shared iff SHARED. Throws a GitletException if the lock could not
+     *  be taken within TIMEOUT milliseconds. */
+    static RepoLock acquire(File file, boolean shared, long timeout) {
+        State state = state(file);
+        Lock local = shared ? state.threads.readLock()
+                : state.threads.writeLock();
+        try {
+            if (!local.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+                throw busy();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw busy();
+        }
+        long generation;
+        try {
+            generation = state.enter(file, shared, timeout);
+        } catch (RuntimeException excp) {
+            local.unlock();
+            throw excp;
+        }
+        return new RepoLock(state, local, generation);
+    }
+
+    /** Releases this lock. */
+    @Override
+    public void close() {
+        if (_state != null) {
+            _state.exit();
+            _local.unlock();
+            _state = null;
+        }
+    }
+
+    /** Returns true until this lock is released. */
+    boolean isHeld() {
+        return _state != null;
+    }
+
+    /** Returns the number of writers the lock file had counted when this
+     *  process took it, not counting this process itself. It changes
+     *  between two holds of this process iff another writer held the
+     *  lock in between. */
+    long generation() {
+        return _generation;
+    }
+
+    /** A lock that has been taken through STATE and LOCAL when the lock
+     *  file had counted GENERATION writers. */
+    private RepoLock(State state, Lock local, long generation) {
+        _state = state;
+        _local = local;
+        _generation = generation;
+    }
+
+    /** Returns the per-process state of the lock file FILE. */
+    private static synchronized State state(File file) {
+        String key = file.getAbsoluteFile().toPath().normalize().toString();
+        State state = STATES.get(key);
+        if (state == null) {
+            state = new State();
+            STATES.put(key, state);
+        }
+        return state;
+    }
+
+    /** Returns the error reported when the lock cannot be taken. */
+    private static Busy busy() {
+        return new Busy("Another gitlet command is using this repository;"
+                + " try again later.");
+    }
+
+    /** The error of a command that gave up waiting for the lock, which
+     *  ends the process with a failing status, as its work was not
+     *  done. */
+    static class Busy extends GitletException {
+        /** A Busy with MSG as its message. */
+        Busy(String msg) {
+            super(msg);
+        }
+    }
+
+    /** The lock state shared by all threads of this process that lock
+     *  the same file. The file lock is taken by the first thread to enter
+     *  and released by the last to leave; the thread lock guarantees that
+     *  all threads inside agree on whether it is shared. */
+    private static class State {
+        /** Orders the threads of this process. */
+        private final ReentrantReadWriteLock threads =
+                new ReentrantReadWriteLock(true);
+        /** The open lock file while any thread holds the lock. */
+        private FileChannel channel;
+        /** The lock on channel while any thread holds the lock. */
+        private FileLock lock;
+        /** The number of threads holding the lock. */
+        private int holders;
+        /** The number of writers counted in the lock file when last
+         *  read while waiting for it, and once it is taken, before this
+         *  process counted itself. */
+        private long writers;
+        /** When waiting for the lock gives up, unless a writer takes it
+         *  first. */
+        private long deadline;
+
+        /** Takes the file lock on FILE, shared iff SHARED, unless this
+         *  process already holds it. Gives up once no writer has taken
+         *  it for TIMEOUT milliseconds. Returns the number of writers
+         *  counted in the lock file before this process took it. */
+        synchronized long enter(File file, boolean shared, long timeout) {
+            if (holders == 0) {
+                lock(file, shared, timeout);
+            }
+            holders += 1;
+            return writers;
+        }
+
+        /** Releases the file lock if this is the last holder. */
+        synchronized void exit() {
+            holders -= 1;
+            if (holders == 0) {
+                try {
+                    lock.release();
+                    channel.close();
+                } catch (IOException excp) {
+                    throw Utils.error("Could not unlock the repository: %s",
+                            excp.getMessage());
+                } finally {
+                    lock = null;
+                    channel = null;
+                }
+            }
+        }
+
+        /** Takes the file lock on FILE, shared iff SHARED, by way of its
+         *  waiting file, or gives up once no writer has taken it for
+         *  TIMEOUT milliseconds. A writer keeps the waiting file until it
+         *  has the lock, then counts itself in the lock file; a reader
+         *  only passes through the waiting file. */
+        private void lock(File file, boolean shared, long timeout) {
+            File waiting = new File(file.getPath() + ".wait");
+            FileChannel gate = null;
+            try {
+                channel = open(file);
+                gate = open(waiting);
+                writers = writers();
+                deadline = System.currentTimeMillis() + timeout;
+                FileLock pass = poll(gate, shared, timeout);
+                if (shared) {
+                    pass.release();
+                }
+                lock = poll(channel, shared, timeout);
+                writers = writers();
+                if (!shared) {
+                    ByteBuffer count = ByteBuffer.allocate(Long.BYTES);
+                    count.putLong(0, writers + 1);
+                    channel.write(count, 0);
+                }
+            } catch (IOException excp) {
+                closeQuietly();
+                throw Utils.error("Could not lock the repository: %s",
+                        excp.getMessage());
+            } catch (RuntimeException excp) {
+                closeQuietly();
+                throw excp;
+            } finally {
+                try {
+                    if (gate != null) {
+                        gate.close();
+                    }
+                } catch (IOException excp) {
+                    /* Closing the channel released its lock regardless. */
+                }
+            }
+        }
+
+        /** Returns the lock file FILE, opened for locking. */
+        private FileChannel open(File file) throws IOException {
+            return FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+
+        /** Returns the number of writers that have taken the lock, as
+         *  counted in the open lock file. */
+        private long writers() throws IOException {
+            ByteBuffer count = ByteBuffer.allocate(Long.BYTES);
+            while (count.hasRemaining()) {
+                if (channel.read(count, count.position()) <= 0) {
+                    return 0;
+                }
+            }
+            return count.getLong(0);
+        }
+
+        /** Polls for a lock on FILE, shared iff SHARED, with exponential
+         *  backoff until it is taken, and returns it, or throws Busy once
+         *  no writer has taken the lock for TIMEOUT milliseconds. */
+        private FileLock poll(FileChannel file, boolean shared,
+                              long timeout) throws IOException {
+            long backoff = 1;
+            while (true) {
+                FileLock taken = file.tryLock(0, Long.MAX_VALUE, shared);
+                if (taken != null) {
+                    return taken;
+                }
+                long now = System.currentTimeMillis();
+                long count = writers();
+                if (count != writers) {
+                    writers = count;
+                    deadline = now + timeout;
+                } else if (now >= deadline) {
+                    throw busy();
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                    throw busy();
+                }
+                backoff = Math.min(2 * backoff, MAX_BACKOFF);
+            }
+        }
+
+        /** Closes the lock file after a failed attempt to lock it. */
+        private void closeQuietly() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException excp) {
+                /* Nothing was locked, so there is nothing to undo. */
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    /** Per-process lock state, by normalized lock file path. */
+    private static final HashMap<String, State> STATES = new HashMap<>();
+
+    /** The state this lock was taken through, or null once released. */
+    private State _state;
+    /** The thread lock this lock holds. */
+    private final Lock _local;
+    /** The number of writers counted before this process took the
+     *  lock. */
+    private final long _generation;
+}
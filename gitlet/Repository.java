@@ -0,0 +1,2485 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/** A Gitlet repository, for programs that embed Gitlet rather than run it
+ *  from the command line. Each public method is one command: it takes the
+ *  repository lock, shared for commands that only read and exclusive for
+ *  the rest, and applies its metadata writes through the journal only if
+ *  it completes. Failures are reported by throwing a GitletException
+ *  whose message is the one the command line prints; nothing here prints
+ *  or exits.
+ *  @author Evelyn Vo
+ */
+public class Repository {
+
+    /** The initial commit SHA. */
+    public static final String INITIAL =
+            "0000000000000000000000000000000000000000";
+
+    /** The set of possible characters in the first two characters
+     * of SHA1 hashes. Each may be in either or both the
+     * first and second position. */
+    static final char[] COMBOS = {'a', 'b', 'c', 'd', 'e', 'f',
+                                  '0', '1', '2', '3', '4', '5', '6',
+                                  '7', '8', '9'};
+
+    /** The full length of a SHA1 id. */
+    static final int SHA1_LEN = 40;
+
+    /** The form of the date of a log entry. */
+    static final DateTimeFormatter LOG_DATE =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss yyyy xx");
+
+    /** The most entries kept in the cache of refs and objects. */
+    private static final int CACHE_SIZE = 4096;
+
+    /** The longest file, in characters, kept in the cache. */
+    private static final int CACHED_LEN = Utils.BLOCK_SIZE;
+
+    /** The repository whose working directory is ROOT. The repository
+     * need not have been initialized yet.
+     * @param root The working directory
+     * */
+    public Repository(File root) {
+        _cwd = root;
+        _gitletFolder = Utils.join(_cwd, ".gitlet");
+        _logsFolder = Utils.join(_gitletFolder, "logs");
+        _localLogsFolder = Utils.join(_logsFolder, "local");
+        _remoteLogsFolder = Utils.join(_logsFolder, "remote");
+        _objectsFolder = Utils.join(_gitletFolder, "objects");
+        _refsFolder = Utils.join(_gitletFolder, "refs");
+        _headsFolder = Utils.join(_refsFolder, "heads");
+        _headsPointer = Utils.join(_refsFolder, "HEAD");
+        _packedRefsFile = Utils.join(_refsFolder, "packed-refs");
+        _headsLog = Utils.join(_logsFolder, "HEAD");
+        _masterLog = Utils.join(_localLogsFolder, "master");
+        _lockFile = Utils.join(_gitletFolder, "lock");
+        _journalFile = Utils.join(_gitletFolder, "journal");
+        _journal = new Journal(_cwd, _journalFile);
+        _blobs = new BlobStore(_objectsFolder);
+        _io = IoExecutor.shared();
+        _renames = new RenameDetector(_blobs, _io);
+        _blame = new Blame(Utils.join(_gitletFolder, "blame"),
+                this::readManifest, _blobs::open);
+        _graph = new CommitGraph(Utils.join(_gitletFolder, "commit-graph"),
+                this::readManifest);
+        _reach = new Reachability(Utils.join(_gitletFolder, "bitmaps"),
+                this::readManifest);
+        _stagingFolder = Utils.join(_gitletFolder, "staging");
+        _addStagingFolder = Utils.join(_stagingFolder, "add");
+        _rmStagingFolder = Utils.join(_stagingFolder, "rm");
+        _ignoreFile = Utils.join(_cwd, ".gitletignore");
+    }
+
+    /** Returns true if a Gitlet repository has been initialized in the
+     * working directory. */
+    public boolean isInitialized() {
+        return checkInitialized();
+    }
+
+    /** Initializes a gitlet repository in the working directory. */
+    public void init() {
+        if (checkInitialized()) {
+            throw Utils.error("A Gitlet version-control system already"
+                          + " exists in the current directory.");
+        }
+        _gitletFolder.mkdir();
+        _logsFolder.mkdir();
+        _objectsFolder.mkdir();
+        _refsFolder.mkdir();
+        _localLogsFolder.mkdir();
+        _remoteLogsFolder.mkdir();
+        _headsFolder.mkdir();
+        _stagingFolder.mkdir();
+        _addStagingFolder.mkdir();
+        _rmStagingFolder.mkdir();
+        Utils.writeContents(_headsLog, "");
+        Utils.writeContents(_masterLog, "");
+        for (int first = 0; first < COMBOS.length; first += 1) {
+            for (int second = 0; second < COMBOS.length; second += 1) {
+                Utils.join(_objectsFolder,
+                        String.format("%c%c",
+                                      COMBOS[first], COMBOS[second])).mkdir();
+            }
+        }
+        String initial = INITIAL;
+        createMetadata("master", null, null, initial, new Date(0),
+                "initial commit", "");
+        updateHead("master", getBranchDir("master"), initial);
+        updatePointer("master", initial);
+        updateLog(null, null, initial, "initial commit",
+                new Date(0), _masterLog);
+        updateLog(null, null, initial, "initial commit",
+                new Date(0), _headsLog);
+    }
+
+    /** Adds a file to the staging area. Does not add the file if it matches
+     * an already staged version of the same file.
+     * @param fileName The name of the file
+     * */
+    public void add(String fileName) {
+        try (Operation op = begin(false)) {
+            File cwdFile = Utils.join(_cwd, fileName);
+            if (!cwdFile.exists()) {
+                throw Utils.error("File does not exist.");
+            }
+            if (isIgnored(fileName) && !addStage(fileName).exists()
+                    && readManifest(getCurrentCommit()).find(fileName) < 0) {
+                throw Utils.error("File is ignored by .gitletignore.");
+            }
+            File stagingCopy = addStage(cwdFile.getName());
+            File rmCopy = rmStage(cwdFile.getName());
+            if (stagingCopy.exists()) {
+                if (!sameSHA(stagingCopy, cwdFile)) {
+                    copyFile(cwdFile, stagingCopy);
+                }
+            } else if (rmCopy.exists()) {
+                if (!sameSHA(rmCopy, cwdFile)) {
+                    copyFile(cwdFile, stagingCopy);
+                }
+                rmCopy.delete();
+            } else {
+                if (nameTrackedByCurrentCommit(fileName)) {
+                    String currComVer = getCommitVersion(getCurrentCommit(),
+                            fileName);
+                    if (!getSHA(cwdFile).equals(currComVer)) {
+                        copyFile(cwdFile, stagingCopy);
+                    }
+                } else {
+                    copyFile(cwdFile, stagingCopy);
+                }
+            }
+            op.commit();
+        }
+    }
+
+    /** Commits the staging area and returns the SHA1 of the new commit.
+     * @param message The commit message
+     * */
+    public String commit(String message) {
+        try (Operation op = begin(false)) {
+            if (emptyStagingArea()) {
+                throw Utils.error("No changes added to the commit.");
+            }
+            if (message.equals("") || Pattern.matches("[\\s]+", message)) {
+                throw Utils.error("Please enter a commit message.");
+            }
+            String[] headPointerContent =
+                    readString(_headsPointer).split("\n");
+            Date commitDate = new Date();
+            String parentSHA = headPointerContent[2];
+            Manifest parentCommit = readManifest(parentSHA);
+            HashMap<String, String> childCommit = new HashMap<>();
+            HashMap<String, String> unchangedFiles = new HashMap<>();
+            for (int pos = 0; pos < parentCommit.size(); pos += 1) {
+                String name = parentCommit.name(pos);
+                if (Utils.join(_cwd, name).exists()
+                        && !addStage(name).exists()) {
+                    unchangedFiles.put(name, parentCommit.sha(pos));
+                } else {
+                    if (!(!Utils.join(_cwd, name).exists()
+                            && !addStage(name).exists())) {
+                        childCommit.put(name, parentCommit.sha(pos));
+                    }
+                }
+            }
+            HashMap<String, String> staged = copyStagedFiles();
+            for (Map.Entry<String, String> stagedFile: staged.entrySet()) {
+                String file = stagedFile.getKey();
+                String fileSHA = stagedFile.getValue();
+                if (childCommit.containsKey(file)
+                    && childCommit.get(file).equals(fileSHA)) {
+                    unchangedFiles.put(file, childCommit.get(file));
+                    childCommit.remove(file);
+                } else {
+                    childCommit.put(file, fileSHA);
+                }
+            }
+            TreeMap<String, String> files = new TreeMap<>(childCommit);
+            files.putAll(unchangedFiles);
+            StringBuilder lines = new StringBuilder();
+            for (Map.Entry<String, String> file: files.entrySet()) {
+                lines.append(file.getKey()).append(' ')
+                        .append(file.getValue()).append('\n');
+            }
+            String contents = lines.toString();
+            String date = Manifest.dateLine(commitDate.getTime(),
+                    zoneAt(commitDate));
+            String commitSHA = Utils.sha1(parentSHA + "\n\n" + date + "\n"
+                    + message + "\n" + contents);
+            String currBranch = getCurrentBranch();
+            updateHead(currBranch, getBranchDir(currBranch), commitSHA);
+            updatePointer(currBranch, commitSHA);
+            createMetadata(getCurrentBranch(), parentSHA,
+                    null, commitSHA, commitDate, message, contents);
+            updateLog(parentSHA, null, commitSHA,
+                    message + "\n\n", commitDate,
+                    Utils.join(_localLogsFolder, currBranch));
+            updateLog(parentSHA, null, commitSHA,
+                    message + "\n\n", commitDate, _headsLog);
+            op.commit();
+            clearDirectory(_addStagingFolder);
+            clearDirectory(_rmStagingFolder);
+            return commitSHA;
+        }
+    }
+
+    /** Removes a file from the staging area, or stages it for removal
+     * if the current commit tracks it.
+     * @param fileName The name of the file
+     * */
+    public void rm(String fileName) {
+        try (Operation op = begin(false)) {
+            File stagedFile = addStage(fileName);
+            HashMap<String, String> currentCommit =
+                    getAllFileSHAFromCommit(
+                            accessObjectContents(getCurrentCommit()));
+            File currFile = Utils.join(_cwd, fileName);
+            boolean fileIsTracked = currentCommit.containsKey(fileName);
+            boolean fileIsStaged = stagedFile.exists()
+                    && sameSHA(Utils.join(_cwd, fileName), stagedFile);
+            if (!fileIsStaged && !fileIsTracked) {
+                throw Utils.error("No reason to remove the file.");
+            }
+            File rmFile = rmStage(fileName);
+            if (fileIsStaged && !fileIsTracked) {
+                stagedFile.delete();
+            } else if (!fileIsStaged && fileIsTracked && currFile.exists()) {
+                copyFile(currFile, rmFile);
+                Utils.restrictedDelete(currFile);
+            } else if (currFile.exists()) {
+                copyFile(currFile, rmFile);
+                stagedFile.delete();
+                Utils.restrictedDelete(currFile);
+            } else {
+                _blobs.checkout(getCommitVersion(getCurrentCommit(),
+                        fileName), rmFile);
+            }
+            op.commit();
+        }
+    }
+
+    /** Returns the commits of the current branch's log, newest first. */
+    public List<LogEntry> log() {
+        try (Operation op = begin(true)) {
+            return logEntries(readString(Utils.join(_localLogsFolder,
+                    getCurrentBranch())));
+        }
+    }
+
+    /** Returns every commit ever made, newest first. */
+    public List<LogEntry> globalLog() {
+        try (Operation op = begin(true)) {
+            return logEntries(readString(_headsLog));
+        }
+    }
+
+    /** Returns the entries of the log TEXT, in order. The SHA1, date and
+     * message of each are read from the log and its parents from the
+     * commit.
+     * @param text The log
+     * */
+    private List<LogEntry> logEntries(String text) {
+        List<LogEntry> entries = new ArrayList<>();
+        for (String entry : text.split("===\ncommit ")) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int end = entry.indexOf('\n');
+            String sha = entry.substring(0, end);
+            if (entry.startsWith("Merge: ", end + 1)) {
+                end = entry.indexOf('\n', end + 1);
+            }
+            int dateEnd = entry.indexOf('\n', end + 1);
+            if (!entry.startsWith("Date: ", end + 1) || dateEnd < 0) {
+                throw Utils.error("Corrupt log entry for commit %s.", sha);
+            }
+            OffsetDateTime date;
+            try {
+                date = OffsetDateTime.parse(entry.substring(end + 7,
+                        dateEnd), LOG_DATE);
+            } catch (DateTimeParseException excp) {
+                throw Utils.error("Corrupt log entry for commit %s.", sha);
+            }
+            String message = entry.substring(dateEnd + 1);
+            if (message.endsWith("\n\n")) {
+                message = message.substring(0, message.length() - 2);
+            }
+            Manifest commit = readManifest(sha);
+            List<String> parents = new ArrayList<>();
+            for (int line : new int[] {Manifest.PARENT1,
+                                       Manifest.PARENT2}) {
+                if (!commit.header(line).isEmpty()) {
+                    parents.add(commit.header(line));
+                }
+            }
+            entries.add(new LogEntry(sha, parents, date, message));
+        }
+        return entries;
+    }
+
+    /** Writes a record to OUT for each commit of the current branch's
+     * history, following first parents from the current commit, or if
+     * GLOBAL, for each commit in the global log, newest first. Each
+     * record is read from the commit itself. If JSON, it is a JSON object
+     * on one line holding the commit's SHA1, branch, parents, date and
+     * message; the date and message are null for commits made before
+     * commits recorded them. Otherwise it is an entry as log prints it.
+     * Only commits made from SINCE to UNTIL, in milliseconds since the
+     * epoch, are written, and at most MAXCOUNT of them. The walk of the
+     * current branch starts at the commit the branch had reached by
+     * UNTIL, found in the commit graph, records are streamed as they are
+     * read, and the walk stops at the first commit older than SINCE, so
+     * a page of a long history costs only that page.
+     * @param global Whether to write every commit
+     * @param json Whether to write JSON records
+     * @param maxCount The most records to write
+     * @param since The earliest date, or Long.MIN_VALUE for none
+     * @param until The latest date, or Long.MAX_VALUE for none
+     * @param out The stream to write to
+     * */
+    public void writeLog(boolean global, boolean json, int maxCount,
+                         long since, long until, OutputStream out) {
+        try (Operation op = begin(true);
+             BufferedReader globalLog = global
+                     ? Files.newBufferedReader(_headsLog.toPath()) : null) {
+            Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            boolean bounded = since != Long.MIN_VALUE
+                    || until != Long.MAX_VALUE;
+            String sha = global ? nextLoggedCommit(globalLog)
+                    : until == Long.MAX_VALUE ? getCurrentCommit()
+                    : _graph.at(getCurrentBranch(), getCurrentCommit(),
+                            until);
+            for (int count = 0; sha != null && count < maxCount; ) {
+                Manifest commit = readManifest(sha);
+                long date = commit.date();
+                if (date != Manifest.NO_DATE && date < since) {
+                    break;
+                }
+                if (!bounded || date != Manifest.NO_DATE && date <= until) {
+                    if (json) {
+                        writeJson(sha, commit, writer);
+                    } else {
+                        writeEntry(sha, commit, writer);
+                    }
+                    count += 1;
+                }
+                if (global) {
+                    sha = nextLoggedCommit(globalLog);
+                } else {
+                    String parent = commit.header(Manifest.PARENT1);
+                    sha = parent.isEmpty() ? null : parent;
+                }
+            }
+            writer.flush();
+        } catch (IOException excp) {
+            throw Utils.error("Could not write log: %s", excp.getMessage());
+        }
+    }
+
+    /** Returns the SHA1 ids of all the commits whose log entries contain
+     * the given message.
+     * @param message The message
+     * */
+    public List<String> find(String message) {
+        try (Operation op = begin(true)) {
+            String[] allCommits = readString(_headsLog).split(
+                    "===\ncommit ");
+            ArrayList<String> ret = new ArrayList<>();
+            for (String commit: allCommits) {
+                int pos = commit.indexOf(message);
+                if (pos != -1) {
+                    ret.add(commit.substring(0, SHA1_LEN));
+                }
+            }
+            if (ret.isEmpty()) {
+                throw Utils.error("Found no commit with that message.");
+            }
+            return ret;
+        }
+    }
+
+    /** Returns the status of the branches, the staging area and the
+     * working directory. */
+    public Status status() {
+        return status(false);
+    }
+
+    /** Returns the status of the branches, the staging area and the
+     * working directory and, if FINDRENAMES, the files removed from the
+     * current commit whose contents reappear in a file staged for
+     * addition or untracked.
+     * @param findRenames Whether to detect renames */
+    public Status status(boolean findRenames) {
+        try (Operation op = begin(true)) {
+            ArrayList<String> rmNames = getFiles(_rmStagingFolder);
+            HashMap<String, String> parentCommit =
+                    getAllFileSHAFromCommit(
+                            accessObjectContents(getCurrentCommit()));
+            HashMap<String, String> cwdVers = getAllFileSHAFromCWD();
+            HashMap<String, String> addStaging =
+                    getAllFileSHAFromDir(_addStagingFolder);
+            ArrayList<String> stagedNames = new ArrayList<>();
+            ArrayList<String> modifNames = new ArrayList<>();
+            ArrayList<String> untrackNames = new ArrayList<>();
+            for (Map.Entry<String, String> file : cwdVers.entrySet()) {
+                String fileName = file.getKey();
+                String fileSHA = file.getValue();
+                if (addStaging.containsKey(fileName)) {
+                    if (!addStaging.get(fileName).equals(fileSHA)) {
+                        modifNames.add(fileName + " (modified)");
+                    } else {
+                        stagedNames.add(fileName);
+                    }
+                } else if (parentCommit.containsKey(fileName)) {
+                    if (!parentCommit.get(fileName).equals(fileSHA)) {
+                        modifNames.add(fileName + " (modified)");
+                    }
+                } else {
+                    untrackNames.add(fileName);
+                }
+            }
+            for (Map.Entry<String, String> file : addStaging.entrySet()) {
+                if (!cwdVers.containsKey(file.getKey())) {
+                    modifNames.add(file.getKey() + " (deleted)");
+                }
+            }
+            for (Map.Entry<String, String> file : parentCommit.entrySet()) {
+                if (!cwdVers.containsKey(file.getKey())
+                        && nameTrackedByCurrentCommit(file.getKey())
+                        && !rmNames.contains(file.getKey())) {
+                    modifNames.add(file.getKey() + " (deleted)");
+                }
+            }
+            ArrayList<String> renames = new ArrayList<>();
+            if (findRenames) {
+                for (RenameDetector.Rename rename : findRenames(
+                        parentCommit, cwdVers, addStaging, rmNames)) {
+                    renames.add(rename.toString());
+                }
+            }
+            return new Status(getCurrentBranch(), getBranchNames(),
+                    stagedNames, rmNames, modifNames, untrackNames, renames);
+        }
+    }
+
+    /** Writes the differences between two trees of files to OUT, as a
+     * unified diff or, if STAT, as the number of lines each file gains
+     * and loses. With no COMMITS, the staging area is compared with the
+     * working directory; with one, that commit is compared with the
+     * working directory, or with the staging area if CACHED, which
+     * otherwise compares the current commit with it; with two, the first
+     * commit is compared with the second. Commits may be named by branch
+     * or by abbreviated SHA1. Only files tracked by the staging area are
+     * compared with the working directory.
+     * @param commits The commits to compare, at most two
+     * @param cached Whether to compare with the staging area
+     * @param stat Whether to print line counts rather than the diff
+     * @param out The stream to write to
+     * */
+    public void diff(List<String> commits, boolean cached, boolean stat,
+                     OutputStream out) {
+        try (Operation op = begin(true)) {
+            if (commits.size() > 2 || cached && commits.size() > 1) {
+                throw Utils.error("Incorrect operands.");
+            }
+            HashMap<String, File> files = new HashMap<>();
+            Manifest from;
+            Manifest to;
+            if (commits.size() == 2) {
+                from = readManifest(resolveCommit(commits.get(0)));
+                to = readManifest(resolveCommit(commits.get(1)));
+            } else if (cached) {
+                from = readManifest(commits.isEmpty() ? getCurrentCommit()
+                        : resolveCommit(commits.get(0)));
+                to = Manifest.of(getStagedTree(files));
+            } else {
+                HashMap<String, String> staged = getStagedTree(files);
+                from = commits.isEmpty() ? Manifest.of(staged)
+                        : readManifest(resolveCommit(commits.get(0)));
+                to = Manifest.of(getWorkingTree(staged.keySet(), files));
+            }
+            Diff diff = new Diff(sha -> files.containsKey(sha)
+                    ? openFile(files.get(sha)) : _blobs.open(sha), _io);
+            List<Diff.Change> changes = Diff.changes(from, to);
+            if (stat) {
+                diff.stat(changes, out);
+            } else {
+                diff.patch(changes, out);
+            }
+        }
+    }
+
+    /** Returns the lines of the file PATH as of COMMIT, or of the
+     * current commit if COMMIT is null, each prefixed with the
+     * abbreviated SHA1 of the commit that last changed it and its line
+     * number. Results are kept under .gitlet/blame, so blaming the file
+     * again from a later commit only walks the commits since.
+     * @param commit The commit, by branch or SHA1, or null
+     * @param path The name of the file
+     * */
+    public List<String> blame(String commit, String path) {
+        try (Operation op = begin(true)) {
+            String sha = commit == null ? getCurrentCommit()
+                    : resolveCommit(commit);
+            String[] origins = _blame.blame(sha, path);
+            Manifest manifest = readManifest(sha);
+            String[] lines = _blobs.read(manifest.sha(manifest.find(path)))
+                    .split("\n", -1);
+            int width = Integer.toString(origins.length).length();
+            List<String> blamed = new ArrayList<>(origins.length);
+            for (int line = 0; line < origins.length; line += 1) {
+                blamed.add(String.format("%s %" + width + "d) %s",
+                        origins[line].substring(0, 8), line + 1,
+                        lines[line]));
+            }
+            return blamed;
+        }
+    }
+
+    /** Returns the lines matching PATTERN, a regular expression if
+     * REGEX and a literal string otherwise, in the files of the working
+     * directory, of COMMIT or, if HISTORY, of every commit reachable from
+     * COMMIT, or from any branch if COMMIT is null. Each line is given as
+     * "NAME:LINE:TEXT", prefixed by the abbreviated SHA1 of the commit
+     * and a colon for files of commits. Each distinct blob is searched
+     * once, however many commits hold it, and blobs are searched in
+     * parallel.
+     * @param pattern The string or expression to search for
+     * @param regex Whether PATTERN is a regular expression
+     * @param commit The commit, by branch or SHA1, or null
+     * @param history Whether to search every commit reachable
+     * */
+    public List<String> grep(String pattern, boolean regex, String commit,
+                             boolean history) {
+        try (Operation op = begin(true)) {
+            Grep grep = new Grep(pattern, regex);
+            List<String> found = new ArrayList<>();
+            if (commit == null && !history) {
+                ArrayList<String> names = getWorkingFiles();
+                List<List<Grep.Hit>> hits = _io.map(names, name ->
+                        grep.scan(BlobStore.map(Utils.join(_cwd, name))));
+                for (int pos = 0; pos < names.size(); pos += 1) {
+                    formatHits("", names.get(pos), hits.get(pos), found);
+                }
+                return found;
+            }
+            List<String> roots = commit == null ? getRefTargets()
+                    : List.of(resolveCommit(commit));
+            List<String> commits = history ? getReachableCommits(roots)
+                    : roots;
+            LinkedHashSet<String> blobs = new LinkedHashSet<>();
+            for (String sha : commits) {
+                Manifest manifest = readManifest(sha);
+                for (int i = 0; i < manifest.size(); i += 1) {
+                    blobs.add(manifest.sha(i));
+                }
+            }
+            List<String> unique = new ArrayList<>(blobs);
+            List<List<Grep.Hit>> hits = _io.map(unique,
+                    blob -> grep.scan(_blobs.map(blob)));
+            HashMap<String, List<Grep.Hit>> matched = new HashMap<>();
+            for (int pos = 0; pos < unique.size(); pos += 1) {
+                if (!hits.get(pos).isEmpty()) {
+                    matched.put(unique.get(pos), hits.get(pos));
+                }
+            }
+            for (String sha : commits) {
+                Manifest manifest = readManifest(sha);
+                for (int i = 0; i < manifest.size() && !matched.isEmpty();
+                     i += 1) {
+                    List<Grep.Hit> fileHits = matched.get(manifest.sha(i));
+                    if (fileHits != null) {
+                        formatHits(sha.substring(0, 8) + ":",
+                                manifest.name(i), fileHits, found);
+                    }
+                }
+            }
+            return found;
+        }
+    }
+
+    /** Checks out the given branch, making it the current branch.
+     * @param branch The name of the branch
+     * */
+    public void checkoutBranch(String branch) {
+        try (Operation op = begin(false)) {
+            String currentBranch = getCurrentBranch();
+            if (branch.equals(currentBranch)) {
+                throw Utils.error("No need to checkout the current branch.");
+            }
+            if (!branchExists(branch)) {
+                throw Utils.error("No such branch exists.");
+            }
+            HashMap<String, String> currentFiles =
+                    getAllFileSHAFromCommit(
+                            accessObjectContents(getCurrentCommit()));
+            for (String f: getWorkingFiles()) {
+                File file = Utils.join(_cwd, f);
+                if (file.isFile() && !file.isHidden() && canDelete(f)) {
+                    boolean fileInCom = currentFiles.containsKey(f);
+                    boolean fileInStage = addStage(f).exists()
+                            || rmStage(f).exists();
+                    if (!fileInCom && !fileInStage) {
+                        throw Utils.error("There is an untracked file in"
+                                + "the way; delete it, or "
+                                + "add and commit it first.");
+                    }
+                }
+            }
+            HashMap<String, String> overwriteFiles =
+                    getAllFileSHAFromCommit(
+                       accessObjectContents(getCurrentCommit(branch)));
+            copyCommittedFiles(overwriteFiles);
+            for (String file: currentFiles.keySet()) {
+                if (!overwriteFiles.containsKey(file)
+                    && Utils.join(_cwd, file).exists()
+                    && canDelete(file)) {
+                    Utils.join(_cwd, file).delete();
+                }
+            }
+            updateHead(branch, getBranchDir(branch));
+            op.commit();
+        }
+    }
+
+    /** Overwrites the working copy of the given file with its version in
+     * the current commit.
+     * @param fileName The name of the file
+     * */
+    public void checkoutFile(String fileName) {
+        try (Operation op = begin(false)) {
+            _blobs.checkout(getCommitVersion(getCurrentCommit("HEAD"),
+                    fileName), Utils.join(_cwd, fileName));
+            op.commit();
+        }
+    }
+
+    /** Overwrites the working copy of the given file with its version in
+     * the given commit, which may be abbreviated.
+     * @param commit The SHA1 of the commit
+     * @param fileName The name of the file
+     * */
+    public void checkoutFile(String commit, String fileName) {
+        try (Operation op = begin(false)) {
+            _blobs.checkout(getCommitVersion(commit, fileName),
+                    Utils.join(_cwd, fileName));
+            op.commit();
+        }
+    }
+
+    /** Creates a new branch pointing at the current commit.
+     * @param branchName The name of the branch
+     * */
+    public void branch(String branchName) {
+        try (Operation op = begin(false)) {
+            if (branchExists(branchName)) {
+                throw Utils.error("A branch with that name already exists.");
+            }
+            writeFile(getBranchPointer(branchName), getCurrentCommit());
+            writeFile(Utils.join(_localLogsFolder, branchName),
+                    readString(Utils.join(_localLogsFolder,
+                            getCurrentBranch())));
+            op.commit();
+        }
+    }
+
+    /** Removes a branch.
+     * @param branchName The name of the branch
+     * */
+    public void rmBranch(String branchName) {
+        try (Operation op = begin(false)) {
+            if (!branchExists(branchName)) {
+                throw Utils.error("A branch with that name does not exist.");
+            } else if (branchName.equals(getCurrentBranch())) {
+                throw Utils.error("Cannot remove the current branch.");
+            }
+            deleteFile(getBranchPointer(branchName));
+            packedRefs().remove(branchName);
+            _graph.remove(branchName);
+            op.commit();
+        }
+    }
+
+    /** Resets the working directory to the given commit.
+     * HEAD and the pointer of the commit's branch
+     * are updated to point to the commit.
+     * Currently only lets you reset to a previous commit
+     * and not to a later commit.
+     * @param commitSHA The SHA1 of the commit
+     * */
+    public void reset(String commitSHA) {
+        try (Operation op = begin(false)) {
+            File commit = accessObjectContents(commitSHA);
+            if (!commit.exists()) {
+                throw Utils.error("No commit with that id exists.");
+            }
+            checkUntrackError(commitSHA);
+            clearDirectory(_cwd);
+            clearDirectory(_addStagingFolder);
+            clearDirectory(_rmStagingFolder);
+            String currBranch = getCommitBranch(commitSHA);
+            updatePointer(currBranch, commitSHA);
+            updateHead(currBranch, getBranchDir(currBranch), commitSHA);
+            String[] logs = readString(Utils.join(
+                    _localLogsFolder, currBranch)).split("===");
+            int start = -1;
+            for (int pos = 0; pos < logs.length && start == -1; pos += 1) {
+                int val = logs[pos].indexOf(commitSHA);
+                if (val > -1) {
+                    start = pos;
+                }
+            }
+            String logUpdate = "";
+            for (int pos = start; pos < logs.length; pos += 1) {
+                logUpdate += "===" + logs[pos];
+            }
+            writeFile(Utils.join(_localLogsFolder, currBranch), logUpdate);
+            copyCommittedFiles(getAllFileSHAFromCommit(commit));
+            op.commit();
+        }
+    }
+
+    /** Merges the given branch into the current branch.
+     * @param mergeBranch The name of the given branch
+     * @return The outcome of the merge
+     * */
+    public MergeResult merge(String mergeBranch) {
+        try (Operation op = begin(false)) {
+            if (!branchExists(mergeBranch)) {
+                throw Utils.error("A branch with that name does not exist.");
+            }
+            if (!emptyStagingArea()) {
+                throw Utils.error("You have uncommitted changes.");
+            }
+            checkUntrackError();
+            String currBranch = getCurrentBranch();
+            if (currBranch.equals(mergeBranch)) {
+                throw Utils.error("Cannot merge a branch with itself.");
+            }
+            String currComMerge = getCurrentCommit(mergeBranch);
+            String currComCurr = getCurrentCommit();
+            String splitSHA = getSplitPoint(currComMerge, currComCurr);
+            if (splitSHA.equals(currComMerge)) {
+                throw Utils.error("Given branch is an ancestor of the"
+                        + " current branch.");
+            }
+            MergeResult result;
+            if (splitSHA.equals(currComCurr)) {
+                HashMap<String, String> currentFiles =
+                        getAllFileSHAFromCommit(
+                                accessObjectContents(currComCurr));
+                HashMap<String, String> overwriteFiles =
+                        getAllFileSHAFromCommit(
+                                accessObjectContents(currComMerge));
+                copyCommittedFiles(overwriteFiles);
+                for (String file: currentFiles.keySet()) {
+                    if (!overwriteFiles.containsKey(file)
+                            && Utils.join(_cwd, file).exists()
+                            && canDelete(file)) {
+                        Utils.join(_cwd, file).delete();
+                    }
+                }
+                updateHead(mergeBranch, getBranchDir(mergeBranch));
+                result = new MergeResult(currComMerge, true,
+                        Collections.emptyList());
+            } else {
+                MergeEngine.Result merged = mergeCommits(
+                        currComCurr, currComMerge, splitSHA);
+                if (!merged.changed()) {
+                    merged.discard();
+                    throw Utils.error("No changes added to the commit.");
+                }
+                applyMerge(merged);
+                String commitSHA = updateMergeMetadata(currComCurr,
+                        currComMerge, splitSHA, merged.contents(),
+                        currBranch, mergeBranch, new Date());
+                result = new MergeResult(commitSHA, false,
+                        merged.conflicts());
+            }
+            op.commit();
+            return result;
+        }
+    }
+
+    /** Returns what merging the given branch into the current branch
+     * would do, without changing the repository or the working directory:
+     * the commit the current branch would be fast-forwarded to, if any,
+     * and the files that would be left in conflict.
+     * @param mergeBranch The name of the given branch
+     * @return The outcome the merge would have
+     * */
+    public MergeResult previewMerge(String mergeBranch) {
+        try (Operation op = begin(true)) {
+            if (!branchExists(mergeBranch)) {
+                throw Utils.error("A branch with that name does not exist.");
+            }
+            if (getCurrentBranch().equals(mergeBranch)) {
+                throw Utils.error("Cannot merge a branch with itself.");
+            }
+            String currComMerge = getCurrentCommit(mergeBranch);
+            String currComCurr = getCurrentCommit();
+            String splitSHA = getSplitPoint(currComMerge, currComCurr);
+            if (splitSHA.equals(currComMerge)) {
+                throw Utils.error("Given branch is an ancestor of the"
+                        + " current branch.");
+            }
+            if (splitSHA.equals(currComCurr)) {
+                return new MergeResult(currComMerge, true,
+                        Collections.emptyList());
+            }
+            MergeEngine.Result merged = mergeCommits(currComCurr,
+                    currComMerge, splitSHA);
+            merged.discard();
+            return new MergeResult(null, false, merged.conflicts());
+        }
+    }
+
+    /** Moves every loose branch pointer into the packed-refs file and
+     * returns the number of pointers moved. */
+    public int packRefs() {
+        try (Operation op = begin(false)) {
+            int packed = packedRefs().pack(_headsFolder);
+            op.commit();
+            return packed;
+        }
+    }
+
+    /** Returns a line for each stage of the pipeline that stored the
+     * files of the last commit made through this repository, giving its
+     * throughput and the time it spent stalled. */
+    public List<String> commitReport() {
+        return _pipeline == null ? Collections.emptyList()
+                : _pipeline.report();
+    }
+
+    /** Imports the commits of a git fast-import stream read from IN and
+     * returns the number imported. Blobs and commits are stored as they
+     * are read; the refs and logs of the branches the stream moves, and
+     * the global log, are then each written once. The working directory
+     * and the staging area are left as they are, even if the current
+     * branch moves.
+     * @param in The stream
+     * */
+    public int fastImport(InputStream in) {
+        try (Operation op = begin(false)) {
+            FastImport imported = new FastImport(_blobs, this::readManifest,
+                    this::readBranch);
+            imported.run(in);
+            List<FastImport.Commit> commits = imported.commits();
+            HashMap<String, String> entries = new HashMap<>();
+            HashMap<String, String> parents = new HashMap<>();
+            StringBuilder global = new StringBuilder();
+            for (int k = commits.size() - 1; k >= 0; k -= 1) {
+                FastImport.Commit commit = commits.get(k);
+                String entry = formatLog(commit.parent1(), commit.parent2(),
+                        commit.sha(), commit.date(),
+                        commit.message() + "\n\n");
+                entries.putIfAbsent(commit.sha(), entry);
+                parents.put(commit.sha(), commit.parent1());
+                global.append(entry);
+            }
+            String current = getCurrentBranch();
+            for (Map.Entry<String, String> head
+                    : imported.heads().entrySet()) {
+                String branch = head.getKey();
+                StringBuilder log = new StringBuilder();
+                String sha = head.getValue();
+                for (; entries.containsKey(sha); sha = parents.get(sha)) {
+                    log.append(entries.get(sha));
+                }
+                log.append(getLogFrom(sha, branch));
+                updatePointer(branch, head.getValue());
+                writeFile(Utils.join(_localLogsFolder, branch),
+                        log.toString());
+                if (branch.equals(current)) {
+                    updateHead(current, getBranchDir(current),
+                            head.getValue());
+                }
+            }
+            updateLog(global.toString(), _headsLog);
+            op.commit();
+            return commits.size();
+        }
+    }
+
+    /** Writes the history of the given branches, or of every branch if
+     * none is given, to OUT as a git fast-import stream, and returns the
+     * number of commits written. Files are streamed from the object
+     * store; the working directory is not touched.
+     * @param branches The names of the branches
+     * @param out The stream
+     * */
+    public int fastExport(List<String> branches, OutputStream out) {
+        try (Operation op = begin(true)) {
+            List<String> names = branches.isEmpty() ? getBranchNames()
+                    : branches;
+            for (String branch : names) {
+                if (readBranch(branch) == null) {
+                    throw Utils.error("No such branch exists.");
+                }
+            }
+            FastExport export = new FastExport(_blobs, this::readManifest,
+                    new BufferedOutputStream(out, Utils.BLOCK_SIZE));
+            for (String branch : names) {
+                export.export(branch, readBranch(branch));
+            }
+            export.finish();
+            return export.commits();
+        } catch (IOException excp) {
+            throw Utils.error("Could not write export: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Writes the files of the given commit to OUT as an archive in
+     * FORMAT, "tar" or "zip". Files are streamed from the object store;
+     * the working directory is not touched.
+     * @param commit The commit, by branch or SHA1
+     * @param format The format of the archive
+     * @param out The stream
+     * */
+    public void archive(String commit, String format, OutputStream out) {
+        try (Operation op = begin(true)) {
+            Manifest manifest = readManifest(resolveCommit(commit));
+            Archive archive = new Archive(_blobs);
+            OutputStream buffered =
+                    new BufferedOutputStream(out, Utils.BLOCK_SIZE);
+            if (format.equals("zip")) {
+                archive.zip(manifest, buffered);
+            } else {
+                archive.tar(manifest, buffered);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not write archive: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Answers each request read from IN, one a line, with the contents
+     * of the object it names, written to OUT as CatFile describes, until
+     * IN ends. The repository is locked shared only while requests are
+     * waiting: those already read are answered under one lock, and the
+     * answers flushed and the lock released before reading blocks, so a
+     * long-lived reader never keeps writers waiting while idle. The
+     * working directory is never touched.
+     * @param in The requests
+     * @param out The answers
+     * */
+    public void catFileBatch(InputStream in, OutputStream out) {
+        validateInitialized();
+        CatFile server = new CatFile(_blobs, _objectsFolder,
+                this::readBranch);
+        OutputStream answers =
+                new BufferedOutputStream(out, Utils.BLOCK_SIZE);
+        try (BufferedReader requests = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            for (String line = requests.readLine(); line != null;
+                 line = requests.readLine()) {
+                try (Operation op = begin(true)) {
+                    server.answer(line, answers);
+                    while (requests.ready()
+                            && (line = requests.readLine()) != null) {
+                        server.answer(line, answers);
+                    }
+                }
+                answers.flush();
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not serve objects: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the names of the branches whose heads reach the given
+     * commit, which may be abbreviated, in sorted order. Each is answered
+     * from the reachability bitmap of the branch's head.
+     * @param commit The SHA1 of the commit, or a branch
+     * */
+    public List<String> branchesContaining(String commit) {
+        try (Operation op = begin(true)) {
+            String sha = resolveCommit(commit);
+            List<String> branches = new ArrayList<>();
+            for (String branch : getBranchNames()) {
+                if (_reach.reaches(readBranch(branch), sha)) {
+                    branches.add(branch);
+                }
+            }
+            return branches;
+        }
+    }
+
+    /** Returns true iff the commit ANCESTOR is the commit COMMIT or one
+     * of its ancestors. Either may be abbreviated or name a branch.
+     * @param ancestor The SHA1 of the possible ancestor
+     * @param commit The SHA1 of the commit
+     * */
+    public boolean isAncestor(String ancestor, String commit) {
+        try (Operation op = begin(true)) {
+            return _reach.reaches(resolveCommit(commit),
+                    resolveCommit(ancestor));
+        }
+    }
+
+    /** Returns the name of the current branch. */
+    public String currentBranch() {
+        try (Operation op = begin(true)) {
+            return getCurrentBranch();
+        }
+    }
+
+    /** Returns the SHA1 of the commit HEAD points to. */
+    public String headCommit() {
+        try (Operation op = begin(true)) {
+            return getCurrentCommit();
+        }
+    }
+
+    /** Returns the names of all branches in sorted order. */
+    public List<String> branches() {
+        try (Operation op = begin(true)) {
+            return Collections.unmodifiableList(getBranchNames());
+        }
+    }
+
+    /** Deletes objects that are not reachable from any branch, from HEAD
+     * or from a commit the global log names, so global-log can still
+     * read every commit it lists, and were last modified more than
+     * GRACE milliseconds ago. Returns
+     * the collector, which holds the counts of what was reclaimed.
+     * @param grace The grace period in milliseconds
+     * */
+    GarbageCollector gc(long grace) {
+        try (Operation op = begin(false)) {
+            GarbageCollector collector =
+                    new GarbageCollector(_objectsFolder, grace);
+            ArrayList<String> roots = getRefTargets();
+            for (String sha : getLoggedCommits()) {
+                if (accessObjectContents(sha).isFile()) {
+                    roots.add(sha);
+                }
+            }
+            collector.collect(roots);
+            _cache.clear();
+            op.commit();
+            return collector;
+        }
+    }
+
+    /** Verifies the object store: that every commit named by a ref or
+     * by the global log links to parents and blobs that exist, and that
+     * every other object still hashes to its name. Returns the checker,
+     * which holds the problems found. */
+    Fsck fsck() {
+        try (Operation op = begin(true)) {
+            Fsck fsck = new Fsck(_objectsFolder);
+            fsck.check(getRefTargets(), getLoggedCommits());
+            return fsck;
+        }
+    }
+
+    /** Returns the commits named by the global log, newest first. */
+    private ArrayList<String> getLoggedCommits() {
+        ArrayList<String> logged = new ArrayList<>();
+        for (String line: readString(_headsLog).split("\n")) {
+            if (line.startsWith("commit ")) {
+                logged.add(line.substring("commit ".length()));
+            }
+        }
+        return logged;
+    }
+
+    /** Returns the commits HEAD and every branch point to. */
+    private ArrayList<String> getRefTargets() {
+        ArrayList<String> roots = new ArrayList<>();
+        roots.add(getCurrentCommit());
+        for (String branch: getBranchNames()) {
+            roots.add(readBranch(branch));
+        }
+        return roots;
+    }
+
+    /** Holds the repository lock exclusively until the returned lock is
+     * closed. While it is held no other process can change the
+     * repository, so operations keep the refs and objects they read
+     * cached between them instead of reading them again. The cache is
+     * kept from one hold to the next unless another process wrote to
+     * the repository in between, as the lock's generation shows. */
+    RepoLock hold() {
+        validateInitialized();
+        RepoLock lock = RepoLock.acquire(_lockFile, false,
+                RepoLock.DEFAULT_TIMEOUT);
+        if (lock.generation() != _generation) {
+            _cache.clear();
+        }
+        _generation = lock.generation() + 1;
+        _held = lock;
+        return lock;
+    }
+
+    /** Returns a new operation on the repository, holding the lock
+     * shared iff SHARED, after recovering any journal left behind by an
+     * interrupted operation. An exclusive operation buffers its metadata
+     * writes in the journal until it commits.
+     * @param shared Whether the operation only reads the repository
+     * */
+    private Operation begin(boolean shared) {
+        validateInitialized();
+        if (_journal.needsRecovery()) {
+            try (RepoLock lock = RepoLock.acquire(_lockFile, false,
+                    RepoLock.DEFAULT_TIMEOUT)) {
+                _journal.recover();
+            }
+        }
+        return new Operation(shared);
+    }
+
+    /** One public operation on the repository: the lock it holds and,
+     * if it writes, its journal transaction. Closing it without
+     * committing discards the transaction. */
+    private class Operation implements AutoCloseable {
+
+        /** An operation holding the lock shared iff SHARED.
+         * @param shared Whether the operation only reads the repository
+         * */
+        Operation(boolean shared) {
+            _lock = RepoLock.acquire(_lockFile, shared,
+                    RepoLock.DEFAULT_TIMEOUT);
+            _shared = shared;
+            if (!shared) {
+                _journal.begin();
+            }
+        }
+
+        /** Forces the objects this operation stored to disk, then
+         * applies its metadata writes, so that no ref can name an object
+         * a crash has lost. */
+        void commit() {
+            _blobs.sync();
+            _journal.commit();
+        }
+
+        /** Discards any uncommitted writes and releases the lock. */
+        @Override
+        public void close() {
+            if (!_shared) {
+                _journal.abort();
+            }
+            _lock.close();
+        }
+
+        /** The lock held by this operation. */
+        private final RepoLock _lock;
+        /** Whether the lock is held shared. */
+        private final boolean _shared;
+    }
+
+    /* Utilities */
+
+    /** Returns the commit SHA of the split point for commits B1COM and
+     * B2COM. If either reaches the other, that is the split point, as
+     * the reachability bitmaps tell without a walk. Otherwise it is the
+     * common ancestor closest to B1COM, found by walking B1COM's history
+     * breadth-first until it meets a commit in B2COM's bitmap.
+     * @param b1Com The SHA1 of the first commit
+     * @param b2Com The SHA1 of the second commit
+     * */
+    private String getSplitPoint(String b1Com, String b2Com) {
+        String initial = INITIAL;
+        if (_reach.reaches(b2Com, b1Com)) {
+            return b1Com;
+        } else if (_reach.reaches(b1Com, b2Com)) {
+            return b2Com;
+        }
+        Bitmap b2Coms = _reach.bitmap(b2Com);
+        ObjectIdSet visited = new ObjectIdSet();
+        ArrayDeque<ObjectId> fringe = new ArrayDeque<>();
+        ObjectId start = ObjectId.fromHex(b1Com);
+        visited.add(start);
+        fringe.add(start);
+        while (!fringe.isEmpty()) {
+            ObjectId currCom = fringe.remove();
+            if (b2Coms.contains(_reach.number(currCom))) {
+                return currCom.toHex();
+            }
+            for (ObjectId parent : getPrevComIds(currCom)) {
+                if (visited.add(parent)) {
+                    fringe.add(parent);
+                }
+            }
+        }
+        return initial;
+    }
+
+    /** Returns the commit of the split point for branches B1, B2. */
+    private File getSplitPtFile(String b1, String b2) {
+        return accessObjectContents(getSplitPoint(getCurrentCommit(b1),
+                getCurrentCommit(b2)));
+    }
+
+    /** Returns the ids of the (previous) parent commits of
+     * the given commit. The initial commit has none.
+     * @param commit The id of the given commit
+     * @return
+     */
+    private List<ObjectId> getPrevComIds(ObjectId commit) {
+        List<ObjectId> prevCom = new ArrayList<>(2);
+        Manifest manifest = readManifest(accessObjectContents(commit));
+        for (int line : new int[] {Manifest.PARENT1, Manifest.PARENT2}) {
+            String parent = manifest.header(line);
+            if (!parent.isEmpty()) {
+                prevCom.add(ObjectId.fromHex(parent));
+            }
+        }
+        return prevCom;
+    }
+
+    /** Returns TRUE if a Gitlet repository has been initialized in the current
+     * working directory. Does not check for subdirectories and files as
+     * the repository should be created iff it is initialized. */
+    private boolean checkInitialized() {
+        return _gitletFolder.exists();
+    }
+
+    /** Clears the given directory. Does not delete the directory itself
+     * or any subfolders and their contents, nor, in the working
+     * directory, the untracked files it ignores.
+     * @param dir The directory to be cleared
+     * */
+    private void clearDirectory(File dir) {
+        List<String> names = dir.equals(_cwd) ? getWorkingFiles()
+                : getFiles(dir);
+        _io.forEach(names, f -> {
+            File file = Utils.join(dir, f);
+            if (file.isFile() && !file.isHidden()
+                && canDelete(f)) {
+                file.delete();
+            }
+        });
+    }
+
+    /** Specific to testing. Can't delete these
+     * two files or the program IDE breaks.
+     * @param f The name of the file
+     * @return
+     * */
+    private boolean canDelete(String f) {
+        return !f.equals("Makefile")
+                && !f.equals("proj3.iml");
+    }
+
+    /** Updates the commit log.
+     * @param parent1 The first parent of the commit
+     * @param parent2 The second parent of the commit
+     * @param sha1 The SHA1 of the commit
+     * @param message The commit message
+     * @param date The time and date of the commit
+     * @param saveLoc The file to which the log entry
+     *                is to be saved
+     * */
+    private void updateLog(
+            String parent1, String parent2, String sha1,
+            String message, Date date, File saveLoc) {
+        String entry = formatLog(parent1, parent2, sha1, date, message);
+        String oldEntries = readString(saveLoc);
+        entry = entry + oldEntries;
+        writeFile(saveLoc, entry);
+    }
+
+    /** Updates the commit log.
+     * @param message The commit message
+     * @param saveLoc The file to which the log entry
+     *                is to be saved
+     * */
+    private void updateLog(
+            String message, File saveLoc) {
+        String oldEntries = readString(saveLoc);
+        writeFile(saveLoc, message + oldEntries);
+    }
+
+    /**
+     * Copies files in the staging area into the corresponding OBJECTS
+     * folder through the commit pipeline, so that reading, hashing and
+     * writing them overlap. Returns the SHA1 of each staged file by name.
+     * */
+    private HashMap<String, String> copyStagedFiles() {
+        HashMap<String, File> files = new HashMap<>();
+        for (String name: getFiles(_addStagingFolder)) {
+            files.put(name, addStage(name));
+        }
+        _pipeline = new CommitPipeline(_blobs);
+        return new HashMap<>(_pipeline.run(files));
+    }
+
+    /**
+     * Copies files with the given SHA in FILES from the
+     * OBJECTS folder to the _cwd.
+     * @param files The files whose copies are to be made in
+     *              the OBJECTS folder
+     */
+    private void copyCommittedFiles(HashMap<String, String> files) {
+        _io.forEach(files.entrySet(), file ->
+                _blobs.checkout(file.getValue(),
+                        Utils.join(_cwd, file.getKey())));
+    }
+
+    /** Creates the metadata file of the commit with the given SHA1.
+     * The metadata file contains the pointers of the parents and
+     * the tracked files and their SHA at the time of the commit.
+     * @param branch The branch for the given commit
+     * @param parent1 The first parent of the commit
+     * @param parent2 The second parent of the commit
+     * @param sha1 The SHA1 of the commit
+     * @param date The time and date of the commit
+     * @param message The commit message
+     * @param commitContents The files and their corresponding SHA1
+     *                       that the commit tracks
+     * */
+    private void createMetadata(String branch, String parent1,
+            String parent2, String sha1, Date date, String message,
+            String commitContents) {
+        writeFile(accessObjectContents(sha1), Manifest.format(branch,
+                parent1, parent2, date.getTime(), zoneAt(date), message,
+                commitContents));
+    }
+
+    /** Returns the offset of this machine's zone at DATE.
+     * @param date The date
+     * */
+    private static ZoneOffset zoneAt(Date date) {
+        return ZoneId.systemDefault().getRules().getOffset(date.toInstant());
+    }
+
+    /** Formats and returns a log message
+     * using parent1, parent2, the SHA1 of the current commit,
+     * date, and message.
+     * @param parent1 The first parent of the commit
+     * @param parent2 The second parent of the commit
+     * @param sha1 The SHA1 of the commit
+     * @param date The time and date of the commit
+     * @param message The commit message
+     * */
+    private String formatLog(
+            String parent1, String parent2, String sha1,
+            Date date, String message) {
+        Formatter formatter = new Formatter();
+        formatter.format("===\ncommit %s\n", sha1);
+        if (parent1 != null && parent2 != null) {
+            formatter.format(
+                    "Merge: %s %s\n", parent1.substring(0, 7),
+                    parent2.substring(0, 7));
+        }
+        formatter.format(
+                "Date: %1$ta %1$tb %1$td %1$tH:%1$tM:%1$tS %1$tY %1$tz\n",
+                date);
+        formatter.format("%s", message);
+        return formatter.toString();
+    }
+
+    /** Updates a pointer file (i.e. MASTER) to point to the given POINTER.
+     * Does not work for HEAD.
+     * @param branchName The name of the branch
+     * @param pointer The commit to which the branch will be pointing
+     * */
+    private void updatePointer(String branchName, String pointer) {
+        writeFile(getBranchPointer(branchName), pointer);
+    }
+
+    /** Updates the HEAD pointer to point to the given POINTER.
+     * The HEAD pointer has the branch directory (to deal with remote commits)
+     * on the first line and the commit SHA1 / pointer on the second line.
+     * @param branchName The name of the branch
+     * @param branchDir The directory of the branch pointer
+     * @param pointer The SHA1 of the commit that HEAD will be
+     *                made to point to
+     * */
+    private void updateHead(
+            String branchName, String branchDir, String pointer) {
+        writeFile(_headsPointer,
+                branchName + "\n" + branchDir + "\n" + pointer);
+    }
+
+    /** Updates the HEAD pointer to point to the same commit
+     * as the given branch. The HEAD pointer has the branch
+     * directory (to deal with remote commits) on the first
+     * line and the commit SHA1 / pointer on the second line.
+     * @param branchName The name of the branch
+     * @param branchDir The directory of the branch pointer
+     * */
+    private void updateHead(String branchName, String branchDir) {
+        String pointer = readBranch(branchName);
+        writeFile(_headsPointer,
+                branchName + "\n" + branchDir + "\n" + pointer);
+    }
+
+    /** Returns the file corresponding to the given object id. */
+    private File accessObjectContents(ObjectId id) {
+        return Utils.join(_objectsFolder, id.fanOut(), id.fileName());
+    }
+
+    /** Returns the file corresponding to the given SHA1 id. */
+    private File accessObjectContents(String sha1) {
+        if (sha1.length() == SHA1_LEN) {
+            return Utils.join(
+                    _objectsFolder, sha1.substring(0, 2), sha1.substring(2));
+        } else if (sha1.length() < SHA1_LEN) {
+            File directory = Utils.join(_objectsFolder, sha1.substring(0, 2));
+            String remainingSHA = sha1.substring(2);
+            for (String f : getFiles(directory)) {
+                File file = Utils.join(directory, f);
+                String fileSubstr = f.substring(0,
+                        SHA1_LEN - (SHA1_LEN - sha1.length()) - 2);
+                if (fileSubstr.equals(remainingSHA)) {
+                    return file;
+                }
+            }
+            throw Utils.error("No commit with that id exists.");
+        }
+        throw Utils.error("No commit with that id exists.");
+    }
+
+    /** Returns the name of the current branch. */
+    private String getCurrentBranch() {
+        String[] headPointerContent =
+                readString(_headsPointer).split("\n");
+        return headPointerContent[0];
+    }
+
+    /** Returns the SHA1 of the most recent commit of the given branch.
+     * @param branchName The name of the branch from which
+     *                   the most recent commit's SHA1 is being
+     *                   returned
+     * */
+    String getCurrentCommit(String branchName) {
+        if (branchName.equals("HEAD")) {
+            String[] headPointerContent =
+                    readString(_headsPointer).split("\n");
+            return headPointerContent[2];
+        } else {
+            String pointer = readBranch(branchName);
+            if (pointer == null) {
+                throw Utils.error("No such branch exists.");
+            }
+            return pointer;
+        }
+    }
+
+    /** Returns the SHA1 of the most recent commit of the given branch. */
+    String getCurrentCommit() {
+        String[] headPointerContent =
+                readString(_headsPointer).split("\n");
+        return headPointerContent[2];
+    }
+
+    /** Returns the SHA1 of the version of FILENAME in the commit with
+     * the ID commitSHA.
+     * @param commitSHA The commit whose fileName is overwriting fileName in
+     *                  the current directory
+     * @param fileName The name of the file being copied over
+     */
+    private String getCommitVersion(
+            String commitSHA, String fileName) {
+        File commitMetadata = accessObjectContents(commitSHA);
+        if (!commitMetadata.exists()) {
+            throw Utils.error("No commit with that id exists.");
+        }
+        return getFileSHAFromCommit(commitMetadata, fileName);
+    }
+
+    /** Returns whether the given version of the file is being tracked by
+     * the given commit.
+     * @param comSHA The SHA of the commit
+     * @param fNm The name of the file
+     * @param fSHA The SHA of the file (contents)
+     * @return
+     */
+    private boolean trackedByCommit(
+            String comSHA, String fNm, String fSHA) {
+        if (fNm.charAt(0) == '.') {
+            return false;
+        }
+        Manifest commit = readManifest(comSHA);
+        int at = commit.find(fNm);
+        return at >= 0 && commit.sha(at).equals(fSHA);
+    }
+
+    /** Returns whether the given version of the file is being tracked by
+     * the current commit.
+     * @param name The name of the file
+     * @param fSHA The SHA of the file (contents)
+     * @return
+     */
+    private boolean trackedByCurrentCommit(String name, String fSHA) {
+        return trackedByCommit(getCurrentCommit(), name, fSHA);
+    }
+
+    /** Returns whether the current version of the file is being tracked by
+     * the current commit.
+     * @param fileName The name of the file
+     * @param fileSHA The SHA1 of the given file
+     * @return
+     */
+    private boolean verTrackedByCurrentCommit(String fileName,
+                                                     String fileSHA) {
+        if (rmStage(fileName).exists()) {
+            return false;
+        }
+        if (nameTrackedByCurrentCommit(fileName)) {
+            return trackedByCurrentCommit(fileName, fileSHA);
+        }
+        return false;
+    }
+
+    /** Returns whether the current version of the file is being tracked by
+     * the current commit.
+     * @param fileName The name of the file
+     * @return
+     */
+    private boolean nameTrackedByCurrentCommit(String fileName) {
+        if (fileName.charAt(0) == '.') {
+            return false;
+        }
+        if (rmStage(fileName).exists()) {
+            return false;
+        }
+        HashMap<String, String> currentCommit =
+                getAllFileSHAFromCommit(
+                        accessObjectContents(getCurrentCommit()));
+        return currentCommit.containsKey(fileName);
+    }
+
+    /**
+     * Returns the SHA1 id of the given FILENAME from COMMIT (metadata).
+     * Assumes that COMMIT exists.
+     */
+    private String getFileSHAFromCommit(File commit, String fileName) {
+        Manifest manifest = readManifest(commit);
+        int at = manifest.find(fileName);
+        if (at < 0) {
+            throw Utils.error("File does not exist in that commit.");
+        }
+        return manifest.sha(at);
+    }
+
+    /**
+     * Returns a HashMap<String FileName, String SHA1>
+     * containing the names and SHA1 ids of all
+     * files from the given commit when given the commit's metadata.
+     * Does not include directories.
+     * Assumes that COMMIT exists.
+     * @param com The commit file
+     */
+    private HashMap<String, String> getAllFileSHAFromCommit(File com) {
+        Manifest manifest = readManifest(com);
+        HashMap<String, String> files = new HashMap<String, String>();
+        for (int i = 0; i < manifest.size(); i += 1) {
+            files.put(manifest.name(i), manifest.sha(i));
+        }
+        return files;
+    }
+
+    /**
+     * Returns a HashMap<String FileName, String SHA1>
+     * containing the names and SHA1 ids of all
+     * files from the given commit when given the commit's metadata.
+     * Does not include directories.
+     * Assumes that COMMIT exists.
+     * @param comSHA The commit SHA
+     */
+    private HashMap<String, String> getAllFileSHAFromCommit(
+            String comSHA) {
+        return getAllFileSHAFromCommit(accessObjectContents(comSHA));
+    }
+
+    /**
+     * Returns an ArrayList<String>
+     * containing the names of all
+     * files from the given commit when given the commit's metadata.
+     * Does not include directories.
+     * Assumes that COMMIT exists.
+     * @param com The commit file
+     */
+    private ArrayList<String> getAllFileNmFromCommit(File com) {
+        Manifest manifest = readManifest(com);
+        ArrayList<String> files = new ArrayList<>();
+        for (int i = 0; i < manifest.size(); i += 1) {
+            files.add(manifest.name(i));
+        }
+        return files;
+    }
+
+    /**
+     * Returns a HashMap<String FileName, String SHA1>
+     * containing the names and SHA1 ids of all
+     * files from the _cwd. Does not include directories.
+     * Assumes that COMMIT exists.
+     */
+    private HashMap<String, String> getAllFileSHAFromCWD() {
+        ArrayList<String> names = getWorkingFiles();
+        List<String> shas = _io.map(names,
+                name -> getSHA(Utils.join(_cwd, name)));
+        HashMap<String, String> files = new HashMap<>();
+        for (int pos = 0; pos < names.size(); pos += 1) {
+            files.put(names.get(pos), shas.get(pos));
+        }
+        return files;
+    }
+
+    /** Returns the names of the plain files in the working directory, in
+     * sorted order, less the files .gitletignore ignores that are
+     * neither tracked by the current commit nor staged for addition.
+     * Ignored names are dropped before the files are examined, so an
+     * ignored directory is never looked into and an ignored file is
+     * never read.
+     * */
+    private ArrayList<String> getWorkingFiles() {
+        String[] names = _cwd.list();
+        if (names == null) {
+            return new ArrayList<>();
+        }
+        IgnoreRules rules = ignoreRules();
+        Manifest head = null;
+        ArrayList<String> files = new ArrayList<>(names.length);
+        for (String name : names) {
+            if (!rules.isEmpty() && rules.ignored(name,
+                    () -> Utils.join(_cwd, name).isDirectory())) {
+                if (head == null) {
+                    head = readManifest(getCurrentCommit());
+                }
+                if (head.find(name) < 0 && !addStage(name).exists()) {
+                    continue;
+                }
+            }
+            if (Utils.join(_cwd, name).isFile()) {
+                files.add(name);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /** Returns true iff .gitletignore ignores the given file of the
+     * working directory.
+     * @param name The name of the file
+     * */
+    private boolean isIgnored(String name) {
+        return ignoreRules().ignored(name,
+                () -> Utils.join(_cwd, name).isDirectory());
+    }
+
+    /** Returns the rules of .gitletignore, read again only if the file
+     * has changed since they were last read. */
+    private IgnoreRules ignoreRules() {
+        long[] stamp = {_ignoreFile.lastModified(), _ignoreFile.length()};
+        if (stamp[0] != _ignoreStamp[0] || stamp[1] != _ignoreStamp[1]) {
+            _ignore = stamp[0] == 0 ? IgnoreRules.NONE
+                    : IgnoreRules.parse(Utils.readContentsAsString(
+                            _ignoreFile));
+            _ignoreStamp = stamp;
+        }
+        return _ignore;
+    }
+
+    /**
+     * Returns a HashMap<String FileName, String SHA1> containing
+     * the names and SHA1 ids of all files from the given directory.
+     * Does not include directories.
+     * Assumes that COMMIT exists.
+     * @param dir The directory from which all files SHAs are derived from
+     *            for the return HashMap
+     */
+    private HashMap<String, String> getAllFileSHAFromDir(File dir) {
+        ArrayList<String> names = getFiles(dir);
+        List<String> shas = _io.map(names,
+                name -> getSHA(Utils.join(dir, name)));
+        HashMap<String, String> files = new HashMap<>();
+        for (int pos = 0; pos < names.size(); pos += 1) {
+            files.put(names.get(pos), shas.get(pos));
+        }
+        return files;
+    }
+
+    /** Throws a GitletException if a Gitlet repository has not been
+     * initialized in the working directory. */
+    private void validateInitialized() {
+        if (!checkInitialized()) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+    }
+
+    /** Gets the branch of the given commit.
+     * @param sha The SHA1 of the given commit
+     * @return The branch of the given commit
+     * */
+    private String getCommitBranch(String sha) {
+        return readManifest(sha).header(Manifest.BRANCH);
+    }
+
+    /** Returns the pointer file of the given branch.
+     * @param branch The given branch
+     * */
+    private File getBranchPointer(String branch) {
+        return Utils.join(_headsFolder, branch);
+    }
+
+    /** Returns the SHA1 the given branch points to, or null if there is
+     * no such branch. A loose pointer file overrides a packed entry.
+     * @param branch The given branch
+     * */
+    private String readBranch(String branch) {
+        File pointer = getBranchPointer(branch);
+        if (pointer.isFile()) {
+            return readString(pointer);
+        }
+        return packedRefs().get(branch);
+    }
+
+    /** Returns true if the given branch exists, either as a loose
+     * pointer file or in the packed-refs file.
+     * @param branch The given branch
+     * */
+    private boolean branchExists(String branch) {
+        return readBranch(branch) != null;
+    }
+
+    /** Returns the names of all branches, loose and packed, in sorted
+     * order. Both sources are already sorted, so they are merged
+     * rather than re-sorted.
+     * */
+    private ArrayList<String> getBranchNames() {
+        List<String> packed = packedRefs().names();
+        ArrayList<String> loose = getFiles(_headsFolder);
+        ArrayList<String> names = new ArrayList<>(
+                packed.size() + loose.size());
+        int p = 0;
+        int l = 0;
+        while (p < packed.size() || l < loose.size()) {
+            int cmp = p == packed.size() ? 1
+                    : l == loose.size() ? -1
+                    : packed.get(p).compareTo(loose.get(l));
+            if (cmp < 0) {
+                names.add(packed.get(p));
+                p += 1;
+            } else {
+                names.add(loose.get(l));
+                l += 1;
+                if (cmp == 0) {
+                    p += 1;
+                }
+            }
+        }
+        return names;
+    }
+
+    /** Returns the pointer file of the given branch.
+     * @param branch The given branch
+     * */
+    private String getBranchDir(String branch) {
+        return getBranchPointer(branch).getAbsolutePath();
+    }
+
+    /** Returns the SHA1 of the given file, which is streamed rather
+     * than read whole.
+     * @param file The given file
+     * */
+    private String getSHA(File file) {
+        return Utils.sha1(file);
+    }
+
+    /** Copies the bytes of SOURCE to TARGET.
+     * @param source The file copied
+     * @param target The file written
+     * */
+    private void copyFile(File source, File target) {
+        try {
+            Files.copy(source.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw Utils.error("Could not copy %s: %s", source.getName(),
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the contents of the file as a string.
+     * @param file The file to be read
+     * */
+    private String readString(File file) {
+        String pending = _journal.read(file);
+        if (pending != null) {
+            return pending;
+        }
+        if (!isCached(file)) {
+            return Utils.readContentsAsString(file);
+        }
+        String contents = _cache.get(file.getPath());
+        if (contents == null) {
+            contents = Utils.readContentsAsString(file);
+            if (contents.length() <= CACHED_LEN) {
+                _cache.put(file.getPath(), contents);
+            }
+        }
+        return contents;
+    }
+
+    /** Returns true if reads of FILE may be served from the cache: only
+     * refs and objects, and only while the repository is held.
+     * @param file The file
+     * */
+    private boolean isCached(File file) {
+        return _held != null && _held.isHeld()
+                && (isWithin(file, _refsFolder)
+                    || isWithin(file, _objectsFolder));
+    }
+
+    /** Returns the non-directory files in DIR
+     * as a list.
+     * @param dir The directory to be iterated over
+     * */
+    private ArrayList<String> getFiles(File dir) {
+        List<String> files = Utils.plainFilenamesIn(dir);
+        if (files != null) {
+            return (new ArrayList<String>(Utils.plainFilenamesIn(dir)));
+        }
+        return new ArrayList<String>();
+    }
+
+    /** Adds every non-directory file in DIR to FILES.
+     * @param dir The directory to be iterated over
+     * @param files The List<File> to be added to
+     * */
+    private void getFiles(File dir, List<File> files) {
+        for (String fileName: getFiles(dir)) {
+            files.add(Utils.join(dir, fileName));
+        }
+    }
+
+    /** Returns true if F1 and F2 have the same SHA1. */
+    private boolean sameSHA(File f1, File f2) {
+        String sha1 = getSHA(f1);
+        String sha2 = getSHA(f2);
+        return sha1.equals(sha2);
+    }
+
+    /** Returns true if the staging area is empty. */
+    private boolean emptyStagingArea() {
+        ArrayList<String> addFiles = getFiles(_addStagingFolder);
+        ArrayList<String> rmFiles = getFiles(_rmStagingFolder);
+        if (addFiles == null && rmFiles == null) {
+            return true;
+        } else if (addFiles != null && rmFiles != null) {
+            if (addFiles.size() == 0 && rmFiles.size() == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the file corresponding to
+     * Utils.join(_addStagingFolder, fName).
+     * @param fName The name of the file
+     * @return
+     */
+    private File addStage(String fName) {
+        return Utils.join(_addStagingFolder, fName);
+    }
+
+    /** Returns the file corresponding to
+     * Utils.join(_rmStagingFolder, fName).
+     * @param fName The name of the file
+     * @return
+     */
+    private File rmStage(String fName) {
+        return Utils.join(_rmStagingFolder, fName);
+    }
+
+    /** Adds HITS, found in the file NAME, to FOUND as lines
+     * "PREFIXNAME:LINE:TEXT", or as one line noting that the file is
+     * binary.
+     * @param prefix The prefix of each line
+     * @param name The name of the file
+     * @param hits The matching lines of the file
+     * @param found The lines found so far
+     * */
+    private static void formatHits(String prefix, String name,
+                                   List<Grep.Hit> hits, List<String> found) {
+        for (Grep.Hit hit : hits) {
+            if (hit.binary()) {
+                found.add("Binary file " + prefix + name + " matches");
+            } else {
+                found.add(prefix + name + ":" + hit.line() + ":"
+                        + hit.text());
+            }
+        }
+    }
+
+    /** Returns the commits reachable from ROOTS, each once, in the
+     * order a breadth-first walk from them reaches them.
+     * @param roots The SHA1s of the commits to start from
+     * */
+    private List<String> getReachableCommits(List<String> roots) {
+        ObjectIdSet seen = new ObjectIdSet();
+        ArrayDeque<ObjectId> fringe = new ArrayDeque<>();
+        List<String> commits = new ArrayList<>();
+        for (String root : roots) {
+            ObjectId id = ObjectId.fromHex(root);
+            if (seen.add(id)) {
+                fringe.add(id);
+            }
+        }
+        while (!fringe.isEmpty()) {
+            ObjectId commit = fringe.remove();
+            commits.add(commit.toHex());
+            for (ObjectId parent : getPrevComIds(commit)) {
+                if (seen.add(parent)) {
+                    fringe.add(parent);
+                }
+            }
+        }
+        return commits;
+    }
+
+    /** Returns the entries of a branch log from that of the given commit
+     * on, taken from the log of the given branch or else from that of
+     * the commit's own branch, or the empty string if neither has it.
+     * @param sha The SHA1 of the commit
+     * @param branch The name of the branch
+     * */
+    private String getLogFrom(String sha, String branch) {
+        for (String name : new String[] {branch, getCommitBranch(sha)}) {
+            File log = Utils.join(_localLogsFolder, name);
+            String text = log.isFile() ? readString(log)
+                    : _journal.read(log);
+            int start = text == null ? -1 : text.indexOf("===\ncommit " + sha);
+            if (start >= 0) {
+                return text.substring(start);
+            }
+        }
+        return "";
+    }
+
+    /** Returns the SHA1 of the next commit named by the log LOG, or null
+     * if there are no more.
+     * @param log The log, read from the current entry
+     * */
+    private static String nextLoggedCommit(BufferedReader log)
+            throws IOException {
+        for (String line = log.readLine(); line != null;
+             line = log.readLine()) {
+            if (line.startsWith("commit ")) {
+                return line.substring("commit ".length());
+            }
+        }
+        return null;
+    }
+
+    /** Writes the commit SHA, whose manifest is COMMIT, to OUT as a JSON
+     * object on a line of its own.
+     * @param sha The SHA1 of the commit
+     * @param commit The manifest of the commit
+     * @param out The writer
+     * */
+    private static void writeJson(String sha, Manifest commit, Writer out)
+            throws IOException {
+        out.write("{\"commit\":\"" + sha + "\",\"branch\":");
+        out.write(jsonString(commit.header(Manifest.BRANCH)));
+        out.write(",\"parents\":[");
+        String separator = "";
+        for (int line : new int[] {Manifest.PARENT1, Manifest.PARENT2}) {
+            if (!commit.header(line).isEmpty()) {
+                out.write(separator + "\"" + commit.header(line) + "\"");
+                separator = ",";
+            }
+        }
+        long date = commit.date();
+        out.write("],\"date\":" + (date == Manifest.NO_DATE ? "null"
+                : "\"" + Instant.ofEpochMilli(date) + "\""));
+        out.write(",\"message\":" + jsonString(commit.message()) + "}\n");
+    }
+
+    /** Writes the commit SHA, whose manifest is COMMIT, to OUT as an
+     * entry of the log.
+     * @param sha The SHA1 of the commit
+     * @param commit The manifest of the commit
+     * @param out The writer
+     * */
+    private void writeEntry(String sha, Manifest commit, Writer out)
+            throws IOException {
+        String parent2 = commit.header(Manifest.PARENT2);
+        String message = commit.message() == null ? ""
+                : commit.message();
+        if (commit.date() == Manifest.NO_DATE) {
+            out.write("===\ncommit " + sha + "\n" + message + "\n\n");
+            return;
+        }
+        out.write(formatLog(commit.header(Manifest.PARENT1),
+                parent2.isEmpty() ? null : parent2, sha,
+                new Date(commit.date()), message + "\n\n"));
+    }
+
+    /** Returns the SHA1 of the commit the given branch had reached by
+     * the given date, or null if it had none yet. That is the latest
+     * commit on the branch's first-parent history made by then, as were
+     * all the commits before it, and is found by binary search in the
+     * commit graph.
+     * @param branch The name of the branch
+     * @param date The date, in milliseconds since the epoch
+     * */
+    public String commitAt(String branch, long date) {
+        try (Operation op = begin(true)) {
+            String head = readBranch(branch);
+            if (head == null) {
+                throw Utils.error("No such branch exists.");
+            }
+            return _graph.at(branch, head, date);
+        }
+    }
+
+    /** Returns S as a JSON string, or null if S is null.
+     * @param s The string
+     * */
+    private static String jsonString(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder("\"");
+        for (int pos = 0; pos < s.length(); pos += 1) {
+            char c = s.charAt(pos);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c == '\n') {
+                json.append("\\n");
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /** Returns the SHA1 of the commit named by NAME, which is a branch
+     * or a possibly abbreviated SHA1.
+     * @param name The name of the commit
+     * */
+    private String resolveCommit(String name) {
+        String pointer = readBranch(name);
+        if (pointer != null) {
+            return pointer;
+        }
+        File commit = accessObjectContents(name);
+        if (!commit.exists()) {
+            throw Utils.error("No commit with that id exists.");
+        }
+        return commit.getParentFile().getName() + commit.getName();
+    }
+
+    /** Returns the files of the staging area: those of the current
+     * commit, less those staged for removal, with those staged for
+     * addition in their staged versions. The file holding each staged
+     * version is added to FILES under its SHA1.
+     * @param files The files holding versions not yet stored, by SHA1
+     * */
+    private HashMap<String, String> getStagedTree(Map<String, File> files) {
+        HashMap<String, String> tree =
+                getAllFileSHAFromCommit(getCurrentCommit());
+        for (String name : getFiles(_rmStagingFolder)) {
+            tree.remove(name);
+        }
+        for (Map.Entry<String, String> file
+                : getAllFileSHAFromDir(_addStagingFolder).entrySet()) {
+            tree.put(file.getKey(), file.getValue());
+            files.put(file.getValue(), addStage(file.getKey()));
+        }
+        return tree;
+    }
+
+    /** Returns the working versions of the files among NAMES that are
+     * in the working directory. The file holding each version is added
+     * to FILES under its SHA1.
+     * @param names The names of the files
+     * @param files The files holding versions not yet stored, by SHA1
+     * */
+    private HashMap<String, String> getWorkingTree(Collection<String> names,
+                                                   Map<String, File> files) {
+        List<String> present = new ArrayList<>();
+        for (String name : names) {
+            if (Utils.join(_cwd, name).isFile()) {
+                present.add(name);
+            }
+        }
+        List<String> shas = _io.map(present,
+                name -> getSHA(Utils.join(_cwd, name)));
+        HashMap<String, String> tree = new HashMap<>();
+        for (int pos = 0; pos < present.size(); pos += 1) {
+            tree.put(present.get(pos), shas.get(pos));
+            files.put(shas.get(pos), Utils.join(_cwd, present.get(pos)));
+        }
+        return tree;
+    }
+
+    /** Returns a stream of the contents of FILE.
+     * @param file The file
+     * */
+    private InputStream openFile(File file) {
+        try {
+            return Files.newInputStream(file.toPath());
+        } catch (IOException excp) {
+            throw Utils.error("Could not read %s: %s", file.getName(),
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the renames between the files of the current commit,
+     * PARENTCOMMIT, that are staged for removal, in RMNAMES, or missing
+     * from the working directory, CWDVERS, and the files staged for
+     * addition, ADDSTAGING, or untracked that the commit lacks.
+     * @param parentCommit The files of the current commit
+     * @param cwdVers The files of the working directory
+     * @param addStaging The files staged for addition
+     * @param rmNames The files staged for removal
+     * */
+    private List<RenameDetector.Rename> findRenames(
+            HashMap<String, String> parentCommit,
+            HashMap<String, String> cwdVers,
+            HashMap<String, String> addStaging, List<String> rmNames) {
+        HashMap<String, String> removed = new HashMap<>();
+        HashMap<String, String> added = new HashMap<>();
+        HashMap<String, File> files = new HashMap<>();
+        for (Map.Entry<String, String> file : parentCommit.entrySet()) {
+            String name = file.getKey();
+            if (rmNames.contains(name) || !cwdVers.containsKey(name)
+                    && !addStaging.containsKey(name)) {
+                removed.put(name, file.getValue());
+            }
+        }
+        for (Map.Entry<String, String> file : addStaging.entrySet()) {
+            if (!parentCommit.containsKey(file.getKey())) {
+                added.put(file.getKey(), file.getValue());
+                files.put(file.getValue(), addStage(file.getKey()));
+            }
+        }
+        for (Map.Entry<String, String> file : cwdVers.entrySet()) {
+            String name = file.getKey();
+            if (!parentCommit.containsKey(name)
+                    && !addStaging.containsKey(name)) {
+                added.put(name, file.getValue());
+                files.put(file.getValue(), Utils.join(_cwd, name));
+            }
+        }
+        return _renames.detect(removed, added, files);
+    }
+
+    /** Returns the in-memory merge of the commits CURRCOMCURR and
+     * CURRCOMMERGE, whose split point is SPLITSHA.
+     * @param currComCurr The current branch's commit SHA
+     * @param currComMerge The given branch's commit SHA
+     * @param splitSHA The SHA of the split point
+     * */
+    private MergeEngine.Result mergeCommits(String currComCurr,
+            String currComMerge, String splitSHA) {
+        return new MergeEngine(_blobs::open).merge(
+                readManifest(splitSHA), readManifest(currComCurr),
+                readManifest(currComMerge));
+    }
+
+    /** Returns the manifest of the commit with the given SHA, read from
+     * the journal if the commit is being written and from its file,
+     * mapped if it is large, otherwise.
+     * @param sha The SHA1 of the commit
+     * */
+    private Manifest readManifest(String sha) {
+        return readManifest(accessObjectContents(sha));
+    }
+
+    /** Returns the manifest of the commit stored in COMMIT, read from
+     * the journal if the commit is being written, from the cache if the
+     * repository is held, and from its file, mapped if it is large,
+     * otherwise.
+     * @param commit The file of the commit
+     * */
+    private Manifest readManifest(File commit) {
+        String pending = _journal.read(commit);
+        if (pending != null) {
+            return Manifest.parse(pending);
+        } else if (isCached(commit)) {
+            return Manifest.parse(readString(commit));
+        }
+        return Manifest.read(commit);
+    }
+
+    /** Stores the blobs MERGED created and brings the working directory
+     * from the current commit to MERGED, writing and deleting only the
+     * files whose versions differ.
+     * @param merged The result of the merge
+     * */
+    private void applyMerge(MergeEngine.Result merged) {
+        try {
+            for (Map.Entry<String, File> blob : merged.blobs().entrySet()) {
+                _blobs.write(blob.getKey(), blob.getValue());
+            }
+        } finally {
+            merged.discard();
+        }
+        _io.forEach(merged.deletes(), name -> {
+            File file = Utils.join(_cwd, name);
+            if (file.exists() && canDelete(name)) {
+                file.delete();
+            }
+        });
+        _io.forEach(merged.writes().entrySet(), file ->
+                _blobs.checkout(file.getValue(),
+                        Utils.join(_cwd, file.getKey())));
+    }
+
+    /** Handles the updating of pointers and logs
+     * for "gitlet merge".
+     * @param currComCurr The current branch's commit SHA
+     * @param currComMerge The given branch's commit SHA
+     * @param splitSHA The SHA of the split point
+     * @param mergeBranch The given branch
+     * @param commitDate The date of the merge
+     * @param mergeContents The merge contents (files and file SHAs)
+     * @param currBranch The current branch
+     * @return The SHA1 of the merge commit
+     */
+    private String updateMergeMetadata(String currComCurr,
+                 String currComMerge, String splitSHA, String mergeContents,
+                 String currBranch, String mergeBranch,
+                 Date commitDate) {
+        String mergeMsg = String.format("Merged %s into %s.",
+                mergeBranch, currBranch);
+        String commitSHA = Utils.sha1(currComCurr
+                + currComMerge + splitSHA + mergeContents);
+        updateHead(currBranch, getBranchDir(currBranch), commitSHA);
+        updatePointer(currBranch, commitSHA);
+        createMetadata(currBranch, currComCurr,
+                currComMerge, commitSHA, commitDate, mergeMsg,
+                mergeContents);
+        updateLog(currComCurr, currComMerge, commitSHA,
+                mergeMsg + "\n\n", commitDate,
+                Utils.join(_localLogsFolder, currBranch));
+        updateLog(currComCurr, currComMerge, commitSHA,
+                mergeMsg + "\n\n", commitDate, _headsLog);
+        return commitSHA;
+    }
+
+    /** Runs Utils.writeContents(file, input).
+     * @param file The file
+     * @param input The input
+     * */
+    private void writeFile(File file, String input) {
+        _cache.remove(file.getPath());
+        dropPackedRefs(file);
+        if (_journal.active() && isJournaled(file)) {
+            _journal.write(file, input);
+        } else {
+            Utils.writeContents(file, input);
+        }
+    }
+
+    /** Deletes FILE, or buffers its deletion in the journal like a write.
+     * @param file The file
+     * */
+    private void deleteFile(File file) {
+        _cache.remove(file.getPath());
+        dropPackedRefs(file);
+        if (_journal.active() && isJournaled(file)) {
+            _journal.delete(file);
+        } else {
+            file.delete();
+        }
+    }
+
+    /** Returns the packed-refs file, written through the journal, and
+     * read again only if the file has changed since it was last read. */
+    private PackedRefs packedRefs() {
+        long[] stamp = {_packedRefsFile.lastModified(),
+            _packedRefsFile.length()};
+        if (_packedRefs == null || stamp[0] != _packedRefsStamp[0]
+                || stamp[1] != _packedRefsStamp[1]) {
+            _packedRefs = new PackedRefs(_packedRefsFile, this::writeFile,
+                    this::deleteFile);
+            _packedRefsStamp = stamp;
+        }
+        return _packedRefs;
+    }
+
+    /** Forgets the packed refs as last read if FILE is the packed-refs
+     * file, whose new contents wait in the journal until it commits.
+     * @param file The file being written or deleted
+     * */
+    private void dropPackedRefs(File file) {
+        if (file.equals(_packedRefsFile)) {
+            _packedRefs = null;
+        }
+    }
+
+    /** Returns true if writes to FILE belong in the journal: those to
+     * refs, objects and logs. Working files and the staging area are
+     * written directly.
+     * @param file The file
+     * */
+    private boolean isJournaled(File file) {
+        return isWithin(file, _gitletFolder)
+                && !isWithin(file, _stagingFolder);
+    }
+
+    /** Returns true if FILE is DIR or lies somewhere beneath it.
+     * @param file The file
+     * @param dir The directory
+     * */
+    private boolean isWithin(File file, File dir) {
+        return file.getAbsoluteFile().toPath().normalize().startsWith(
+                dir.getAbsoluteFile().toPath().normalize());
+    }
+
+    /** Checks the untracked file error. */
+    private void checkUntrackError() {
+        for (String file: getWorkingFiles()) {
+            if (file.charAt(0) != '.'
+                    && canDelete(file)) {
+                if ((!nameTrackedByCurrentCommit(file)
+                        || !verTrackedByCurrentCommit(file,
+                        getSHA(Utils.join(_cwd, file))))
+                        && !Utils.join(_addStagingFolder, file).exists()) {
+                    throw Utils.error("There is an untracked file in the way; "
+                            + "delete it, or add and commit it first.");
+                }
+            }
+        }
+    }
+
+    /** Checks the untracked file error.
+     * @param cSHA The given SHA for which _cwd is being checked */
+    private void checkUntrackError(String cSHA) {
+        for (String file: getWorkingFiles()) {
+            if (file.charAt(0) != '.'
+                    && canDelete(file)) {
+                if ((!nameTrackedByCurrentCommit(file)
+                        || !trackedByCommit(cSHA, file,
+                            getSHA(Utils.join(_cwd, file))))
+                    && !Utils.join(_addStagingFolder, file).exists()
+                    && !verTrackedByCurrentCommit(file,
+                        getSHA(Utils.join(_cwd, file)))) {
+                    throw Utils.error("There is an untracked file in the way; "
+                            + "delete it, or add and commit it first.");
+                }
+            }
+        }
+    }
+
+    /** The working directory. */
+    private final File _cwd;
+    /** Main metadata folder. */
+    private final File _gitletFolder;
+    /** Logs metadata folder. */
+    private final File _logsFolder;
+    /** Local logs metadata folder. */
+    private final File _localLogsFolder;
+    /** Remote logs metadata folder. */
+    private final File _remoteLogsFolder;
+    /** Objects / Blobs / File contents metadata folder. */
+    private final File _objectsFolder;
+    /** References metadata folder. */
+    private final File _refsFolder;
+    /** Heads metadata folder, holding the pointer of each branch. */
+    private final File _headsFolder;
+    /** The HEAD pointer. */
+    private final File _headsPointer;
+    /** The packed-refs file, holding the pointers of packed branches. */
+    private final File _packedRefsFile;
+    /** The packed refs as last read, or null. */
+    private PackedRefs _packedRefs;
+    /** The modification time and length of the packed-refs file when
+     * _packedRefs was read. */
+    private long[] _packedRefsStamp = {0, 0};
+    /** The global log. */
+    private final File _headsLog;
+    /** The master branch log. */
+    private final File _masterLog;
+    /** The lock file guarding the repository against concurrent
+     * operations. */
+    private final File _lockFile;
+    /** The journal file holding the metadata writes of an operation
+     * while they are being applied. */
+    private final File _journalFile;
+    /** The journal through which operations update refs, objects and
+     * logs. */
+    private final Journal _journal;
+    /** The blobs of the object store. */
+    private final BlobStore _blobs;
+    /** Runs per-file operations concurrently. */
+    private final IoExecutor _io;
+    /** Pairs removed files with added ones of like contents. */
+    private final RenameDetector _renames;
+    /** Finds and keeps the provenance of the lines of files. */
+    private final Blame _blame;
+    /** The index of each branch's commits by date. */
+    private final CommitGraph _graph;
+    /** The reachability bitmaps of commits. */
+    private final Reachability _reach;
+    /** Staging area folder. */
+    private final File _stagingFolder;
+    /** Staging folder for "gitlet add". */
+    private final File _addStagingFolder;
+    /** Staging folder for "gitlet rm". */
+    private final File _rmStagingFolder;
+    /** The ignore file of the working directory. */
+    private final File _ignoreFile;
+    /** The rules of the ignore file, as last read. */
+    private IgnoreRules _ignore = IgnoreRules.NONE;
+    /** The modification time and length of the ignore file when last
+     * read, or zeros if it was missing. */
+    private long[] _ignoreStamp = {0, 0};
+    /** The pipeline that stored the files of the last commit, or null. */
+    private CommitPipeline _pipeline;
+    /** The lock returned by the last call to hold(), or null. */
+    private RepoLock _held;
+    /** The number of writers the lock file counted when this repository
+     * last released a hold, or -1 before its first. */
+    private long _generation = -1;
+    /** The contents of refs and objects read while the repository is
+     * held, by path, least recently used first. */
+    private final LinkedHashMap<String, String> _cache =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, String> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+}
@@ -0,0 +1,99 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** The state of a repository as reported by "gitlet status": its
+ *  branches, the staging area, the differences between the working
+ *  directory and the current commit and, if asked for, the renames among
+ *  them. Every list is sorted.
+ *  @author Evelyn Vo
+ */
+public class Status {
+
+    /** A status whose current branch is CURRENTBRANCH, with the given
+     *  BRANCHES, STAGED and REMOVED files, MODIFIED files (each suffixed
+     *  with " (modified)" or " (deleted)") and UNTRACKED files. */
+    Status(String currentBranch, List<String> branches, List<String> staged,
+           List<String> removed, List<String> modified,
+           List<String> untracked) {
+        this(currentBranch, branches, staged, removed, modified, untracked,
+                Collections.emptyList());
+    }
+
+    /** A status as above that also lists RENAMES, each in the form
+     *  "OLD -> NEW (SCORE%)". */
+    Status(String currentBranch, List<String> branches, List<String> staged,
+           List<String> removed, List<String> modified,
+           List<String> untracked, List<String> renames) {
+        _currentBranch = currentBranch;
+        _branches = sorted(branches);
+        _staged = sorted(staged);
+        _removed = sorted(removed);
+        _modified = sorted(modified);
+        _untracked = sorted(untracked);
+        _renames = sorted(renames);
+    }
+
+    /** Returns the name of the current branch. */
+    public String currentBranch() {
+        return _currentBranch;
+    }
+
+    /** Returns the names of all branches. */
+    public List<String> branches() {
+        return _branches;
+    }
+
+    /** Returns the names of the files staged for addition. */
+    public List<String> staged() {
+        return _staged;
+    }
+
+    /** Returns the names of the files staged for removal. */
+    public List<String> removed() {
+        return _removed;
+    }
+
+    /** Returns the modifications not staged for commit, each a file name
+     *  followed by " (modified)" or " (deleted)". */
+    public List<String> modified() {
+        return _modified;
+    }
+
+    /** Returns the names of the untracked files. */
+    public List<String> untracked() {
+        return _untracked;
+    }
+
+    /** Returns the files removed from the current commit whose contents
+     *  reappear, whole or in part, in an added or untracked file, each as
+     *  "OLD -> NEW (SCORE%)" where SCORE is their similarity. Empty
+     *  unless renames were asked for. */
+    public List<String> renames() {
+        return _renames;
+    }
+
+    /** Returns an unmodifiable sorted copy of NAMES. */
+    private static List<String> sorted(List<String> names) {
+        List<String> result = new ArrayList<>(names);
+        Collections.sort(result);
+        return Collections.unmodifiableList(result);
+    }
+
+    /** The current branch. */
+    private final String _currentBranch;
+    /** All branches. */
+    private final List<String> _branches;
+    /** Files staged for addition. */
+    private final List<String> _staged;
+    /** Files staged for removal. */
+    private final List<String> _removed;
+    /** Modifications not staged for commit. */
+    private final List<String> _modified;
+    /** Untracked files. */
+    private final List<String> _untracked;
+    /** Detected renames. */
+    private final List<String> _renames;
+}
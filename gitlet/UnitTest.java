@@ -3,7 +3,29 @@ package gitlet;
 import ucb.junit.textui;
 import org.junit.Test;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 /** The suite of all JUnit tests for the gitlet package.
  *  @author
@@ -726,6 +748,1116 @@ public class UnitTest {
         Main.main(commands("log"));
         System.out.println("------END OF 'OTHER' LOG--------");
     }
-}
 
+    /**
+     * Checks that object ids survive the hex and raw encodings and
+     * that ObjectIdSet agrees with equals.
+     */
+    @Test
+    public void objectIdRoundTrip() {
+        ObjectIdSet ids = new ObjectIdSet();
+        for (int pos = 0; pos < 1000; pos += 1) {
+            String sha = Utils.sha1(Integer.toString(pos));
+            ObjectId id = ObjectId.fromHex(sha);
+            assert id.toHex().equals(sha);
+            assert id.fanOut().equals(sha.substring(0, 2));
+            byte[] raw = new byte[ObjectId.RAW_LEN];
+            id.writeRaw(raw, 0);
+            assert ObjectId.fromRaw(raw, 0).equals(id);
+            assert ids.add(id);
+            assert !ids.add(ObjectId.fromHex(sha));
+        }
+        assert ids.size() == 1000;
+        assert !ids.contains(ObjectId.ZERO);
+        assert ObjectId.ZERO.toHex().equals(Repository.INITIAL);
+    }
+
+    /**
+     * Writes a complete and a torn journal by hand and checks that
+     * recovery replays the first, writes and deletion alike, and
+     * discards the second, then commits a transaction and checks that
+     * it leaves no journal behind.
+     */
+    @Test
+    public void journalRecovery() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        File file = Utils.join(dir, "journal");
+        File a = Utils.join(dir, "a.txt");
+        File b = Utils.join(dir, "b.txt");
+        Utils.writeContents(a, "old\n");
+        Utils.writeContents(b, "old\n");
+        String body = "gitlet-journal 1\n5 4\na.txtnew\n5 -1\nb.txt";
+        String complete = body + "end " + Utils.sha1(body) + "\n";
+        Journal journal = new Journal(dir, file);
+        Utils.writeContents(file, complete.substring(0,
+                complete.length() - 8));
+        assert journal.recover() && !file.exists();
+        assert Utils.readContentsAsString(a).equals("old\n") && b.isFile();
+        Utils.writeContents(file, complete);
+        assert journal.recover() && !file.exists();
+        assert Utils.readContentsAsString(a).equals("new\n") && !b.isFile();
+        assert !journal.recover();
+        journal.begin();
+        journal.write(b, "back\n");
+        journal.delete(a);
+        assert journal.read(b).equals("back\n") && a.isFile();
+        journal.commit();
+        assert !file.exists() && !a.exists();
+        assert Utils.readContentsAsString(b).equals("back\n");
+    }
+
+    /**
+     * Packs loose refs, some of whose names hold spaces, looks each up
+     * by binary search and removes one, then checks that a loose ref
+     * written after packing overrides the packed one and that a
+     * repository sees the packed refs change.
+     */
+    @Test
+    public void packedRefsLookup() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        File heads = Utils.join(dir, "heads");
+        heads.mkdir();
+        List<String> names = List.of("a", "a b", "a-b", "ab", "b c d", "z");
+        for (String name : names) {
+            Utils.writeContents(Utils.join(heads, name), Utils.sha1(name));
+        }
+        PackedRefs refs = new PackedRefs(Utils.join(dir, "packed-refs"));
+        assert refs.pack(heads) == names.size();
+        assert Utils.plainFilenamesIn(heads).isEmpty();
+        assert refs.names().equals(names);
+        for (String name : names) {
+            assert refs.get(name).equals(Utils.sha1(name));
+        }
+        assert refs.get("a c") == null && refs.get("b") == null;
+        assert refs.get("") == null && refs.get("zz") == null;
+        refs.remove("a b");
+        assert refs.get("a b") == null && refs.get("a-b") != null;
+        File root = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = new Repository(root);
+        repo.init();
+        repo.branch("side branch");
+        assert repo.packRefs() == 2;
+        Utils.writeContents(Utils.join(root, "f.txt"), "wug\n");
+        repo.add("f.txt");
+        String commit = repo.commit("loose");
+        assert repo.isAncestor(commit, "master");
+        assert !repo.isAncestor(commit, "side branch");
+        assert repo.branches().equals(List.of("master", "side branch"));
+        repo.rmBranch("side branch");
+        assert repo.branches().equals(List.of("master"));
+        Utils.writeContents(Utils.join(root, ".gitlet", "refs",
+                "packed-refs"), "other " + commit + "\n");
+        assert repo.branches().equals(List.of("master", "other"));
+    }
+
+    /**
+     * Resets a branch to an older commit and collects garbage with no
+     * grace period, then checks that the commits the global log still
+     * names survive and can be listed, and that a missing commit is
+     * reported by its full SHA-1.
+     */
+    @Test
+    public void gcKeepsLoggedCommits() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        File file = Utils.join(dir, "f.txt");
+        Utils.writeContents(file, "wug\n");
+        repo.add("f.txt");
+        String first = repo.commit("one");
+        Utils.writeContents(file, "not wug\n");
+        repo.add("f.txt");
+        String second = repo.commit("two");
+        repo.reset(first);
+        repo.gc(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        repo.writeLog(true, true, Integer.MAX_VALUE, Long.MIN_VALUE,
+                Long.MAX_VALUE, out);
+        assert out.toString(StandardCharsets.UTF_8).contains(second);
+        assert repo.fsck().problems().isEmpty();
+        String missing = Utils.sha1("missing");
+        try {
+            Manifest.read(Utils.join(dir, ".gitlet", "objects",
+                    missing.substring(0, 2), missing.substring(2)));
+            assert false;
+        } catch (GitletException excp) {
+            assert excp.getMessage().contains(missing);
+        }
+    }
+
+    /**
+     * Checks that fsck finds nothing wrong with a history holding a merge
+     * and a commit made in another locale, then corrupts a blob and the
+     * message of a commit and checks that fsck reports both.
+     */
+    @Test
+    public void fsckReportsCorruption() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        File file = Utils.join(dir, "f.txt");
+        Utils.writeContents(file, "wug\n");
+        repo.add("f.txt");
+        Locale locale = Locale.getDefault();
+        String first;
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            first = repo.commit("one");
+        } finally {
+            Locale.setDefault(locale);
+        }
+        repo.branch("other");
+        Utils.writeContents(Utils.join(dir, "g.txt"), "g\n");
+        repo.add("g.txt");
+        repo.commit("two");
+        repo.checkoutBranch("other");
+        Utils.writeContents(Utils.join(dir, "h.txt"), "h\n");
+        repo.add("h.txt");
+        repo.commit("three");
+        repo.checkoutBranch("master");
+        repo.merge("other");
+        assert repo.fsck().problems().isEmpty();
+        File objects = Utils.join(dir, ".gitlet", "objects");
+        String blob = Utils.sha1("wug\n");
+        File blobFile = Utils.join(objects, blob.substring(0, 2),
+                blob.substring(2));
+        Utils.writeContents(blobFile, "junk\n");
+        File commitFile = Utils.join(objects, first.substring(0, 2),
+                first.substring(2));
+        Utils.writeContents(commitFile, Utils.readContentsAsString(
+                commitFile).replace("\none\n", "\nnot one\n"));
+        assert repo.fsck().problems().equals(List.of(
+                "corrupt commit " + first, "corrupt object " + blob));
+    }
+
+    /**
+     * Checks that each exclusive holder of a lock file advances its
+     * generation and that shared holders leave it alone.
+     */
+    @Test
+    public void lockGeneration() throws Exception {
+        File lockFile = File.createTempFile("gitlet", ".lock");
+        lockFile.deleteOnExit();
+        long start;
+        try (RepoLock lock = RepoLock.acquire(lockFile, false, 1000)) {
+            start = lock.generation();
+        }
+        try (RepoLock lock = RepoLock.acquire(lockFile, true, 1000)) {
+            assert lock.generation() == start + 1;
+        }
+        for (int k = 1; k <= 3; k += 1) {
+            try (RepoLock lock = RepoLock.acquire(lockFile, false, 1000)) {
+                assert lock.generation() == start + k;
+            }
+        }
+    }
+
+    /**
+     * Runs two hundred threads through RepoLock at once, mixing shared and
+     * exclusive holders, and checks that a writer is never inside
+     * together with anyone else.
+     */
+    @Test
+    public void lockStressThreads() throws Exception {
+        File lockFile = File.createTempFile("gitlet", ".lock");
+        lockFile.deleteOnExit();
+        AtomicInteger readers = new AtomicInteger();
+        AtomicInteger writers = new AtomicInteger();
+        AtomicInteger violations = new AtomicInteger();
+        AtomicInteger writes = new AtomicInteger();
+        Thread[] clients = new Thread[200];
+        for (int pos = 0; pos < clients.length; pos += 1) {
+            boolean shared = pos % 4 != 0;
+            clients[pos] = new Thread(() -> {
+                try (RepoLock lock = RepoLock.acquire(lockFile, shared,
+                        RepoLock.DEFAULT_TIMEOUT * 6)) {
+                    AtomicInteger mine = shared ? readers : writers;
+                    mine.incrementAndGet();
+                    if (writers.get() > 1
+                            || (writers.get() > 0 && readers.get() > 0)) {
+                        violations.incrementAndGet();
+                    }
+                    if (!shared) {
+                        writes.incrementAndGet();
+                    }
+                    Thread.sleep(1);
+                    mine.decrementAndGet();
+                } catch (InterruptedException excp) {
+                    violations.incrementAndGet();
+                }
+            });
+            clients[pos].start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        assert violations.get() == 0;
+        assert writes.get() == 50;
+    }
+
+    /**
+     * Starts a hundred gitlet processes against one repository at the
+     * same time, half creating branches and half running status, and
+     * checks that every branch was recorded and the store is intact.
+     */
+    @Test
+    public void lockStressProcesses() throws Exception {
+        File repo = Files.createTempDirectory("gitlet").toFile();
+        String java = Utils.join(System.getProperty("java.home"),
+                "bin", "java").getPath();
+        String classpath = System.getProperty("java.class.path");
+        new ProcessBuilder(java, "-cp", classpath, "gitlet.Main", "init")
+                .directory(repo).start().waitFor();
+        Process[] clients = new Process[100];
+        for (int pos = 0; pos < clients.length; pos += 1) {
+            String[] command = pos % 2 == 0
+                    ? new String[] {"branch", "b" + pos}
+                    : new String[] {"status"};
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+                    classpath, "gitlet.Main", command[0]);
+            if (command.length > 1) {
+                builder.command().add(command[1]);
+            }
+            clients[pos] = builder.directory(repo)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        }
+        for (Process client : clients) {
+            assert client.waitFor() == 0;
+        }
+        Process status = new ProcessBuilder(java, "-cp", classpath,
+                "gitlet.Main", "status").directory(repo).start();
+        String output = new String(status.getInputStream().readAllBytes(),
+                StandardCharsets.UTF_8);
+        for (int pos = 0; pos < clients.length; pos += 2) {
+            assert output.contains("\nb" + pos + "\n");
+        }
+        Process fsck = new ProcessBuilder(java, "-cp", classpath,
+                "gitlet.Main", "fsck").directory(repo).start();
+        String report = new String(fsck.getInputStream().readAllBytes(),
+                StandardCharsets.UTF_8);
+        assert report.endsWith("0 problems.\n");
+    }
+
+    /**
+     * Drives a repository in a temporary directory through the Java API
+     * and checks that failures come back as exceptions rather than
+     * ending the process.
+     */
+    @Test
+    public void repositoryApi() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = new Repository(dir);
+        assert !repo.isInitialized();
+        repo.init();
+        assert repo.headCommit().equals(Repository.INITIAL);
+        Utils.writeContents(Utils.join(dir, "f.txt"), "wug\n");
+        repo.add("f.txt");
+        assert repo.status().staged().contains("f.txt");
+        String first = repo.commit("add f");
+        assert repo.headCommit().equals(first);
+        try {
+            repo.commit("nothing");
+            assert false;
+        } catch (GitletException excp) {
+            assert excp.getMessage().equals("No changes added to the commit.");
+        }
+        repo.branch("other");
+        repo.checkoutBranch("other");
+        Utils.writeContents(Utils.join(dir, "g.txt"), "not wug\n");
+        repo.add("g.txt");
+        String second = repo.commit("add g");
+        repo.checkoutBranch("master");
+        MergeResult result = repo.merge("other");
+        assert result.fastForwarded() && result.commit().equals(second);
+        assert repo.find("add g").equals(List.of(second));
+        List<LogEntry> log = repo.log();
+        assert log.size() == 3 && log.get(0).id().equals(second);
+        assert log.get(0).parents().equals(List.of(first));
+        assert log.get(0).message().equals("add g");
+        assert log.get(2).id().equals(Repository.INITIAL);
+        assert log.get(2).parents().isEmpty();
+        assert log.get(2).date().toEpochSecond() == 0;
+        assert repo.fsck().problems().isEmpty();
+    }
 
+    /**
+     * Checks how batch mode splits a command line into words.
+     */
+    @Test
+    public void batchSplitCommand() {
+        String[] words = Main.splitCommand(
+                "  commit \"a \\\"quoted\\\" message\"  ");
+        assert words.length == 2;
+        assert words[0].equals("commit");
+        assert words[1].equals("a \"quoted\" message");
+        assert Main.splitCommand("checkout -- \"\"").length == 3;
+    }
+
+    /**
+     * Feeds a batch process commands one at a time and checks the frame
+     * of each, that commands reading the standard input are refused, and
+     * that another process can change the repository while the batch
+     * waits for its next command.
+     */
+    @Test
+    public void batchFrames() throws Exception {
+        File repo = Files.createTempDirectory("gitlet").toFile();
+        String java = Utils.join(System.getProperty("java.home"),
+                "bin", "java").getPath();
+        String classpath = System.getProperty("java.class.path");
+        new ProcessBuilder(java, "-cp", classpath, "gitlet.Main", "init")
+                .directory(repo).start().waitFor();
+        Process batch = new ProcessBuilder(java, "-cp", classpath,
+                "gitlet.Main", "batch").directory(repo).start();
+        OutputStream commands = batch.getOutputStream();
+        BufferedReader frames = new BufferedReader(new InputStreamReader(
+                batch.getInputStream(), StandardCharsets.UTF_8));
+        commands.write("branch first\n".getBytes(StandardCharsets.UTF_8));
+        commands.flush();
+        assert frames.readLine().equals("begin 1 0");
+        assert frames.readLine().equals("end 1 0");
+        Process branch = new ProcessBuilder(java, "-cp", classpath,
+                "gitlet.Main", "branch", "second").directory(repo).start();
+        assert branch.waitFor() == 0;
+        commands.write(("cat-file --batch\n# skipped\nfast-import\n"
+                + "status extra\nstatus\n")
+                .getBytes(StandardCharsets.UTF_8));
+        commands.close();
+        List<String> lines = new ArrayList<>();
+        for (String line = frames.readLine(); line != null;
+             line = frames.readLine()) {
+            lines.add(line);
+        }
+        assert batch.waitFor() == 0;
+        String[] errors = {"Cannot run cat-file within batch.",
+                           "Cannot run fast-import within batch.",
+                           "Incorrect operands."};
+        for (int k = 0; k < errors.length; k += 1) {
+            assert lines.get(3 * k).equals("begin " + (k + 2) + " "
+                    + (errors[k].length() + 1));
+            assert lines.get(3 * k + 1).equals(errors[k]);
+            assert lines.get(3 * k + 2).equals("end " + (k + 2) + " 1");
+        }
+        assert lines.get(9).startsWith("begin 5 ");
+        assert lines.contains("first") && lines.contains("second");
+        assert lines.get(lines.size() - 1).equals("end 5 0");
+    }
+
+    /**
+     * Stores two versions of a large file that differ by one insertion
+     * and checks that they share most of their chunks and check out
+     * byte for byte.
+     */
+    @Test
+    public void chunkedBlobRoundTrip() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        BlobStore store = blobStore(dir);
+        byte[] data = new byte[3 << 20];
+        new Random(61).nextBytes(data);
+        byte[] edited = new byte[data.length + 5];
+        System.arraycopy(data, 0, edited, 0, 1 << 20);
+        System.arraycopy(data, 1 << 20, edited, (1 << 20) + 5,
+                data.length - (1 << 20));
+        File source = Utils.join(dir, "source");
+        File target = Utils.join(dir, "target");
+        List<List<String>> chunks = new ArrayList<>();
+        for (byte[] version : new byte[][] {data, edited}) {
+            Utils.writeContents(source, version);
+            String sha = Utils.sha1(source);
+            store.write(sha, source);
+            store.checkout(sha, target);
+            assert Arrays.equals(Utils.readContents(target),
+                    version);
+            chunks.add(store.chunks(store.objectFile(sha)));
+        }
+        List<String> shared = new ArrayList<>(chunks.get(1));
+        shared.retainAll(chunks.get(0));
+        assert shared.size() >= chunks.get(1).size() - 2;
+    }
+
+    /**
+     * Checks that the I/O executor keeps results in order, never runs
+     * more tasks at once than its limit, and passes failures back.
+     */
+    @Test
+    public void ioExecutorBounded() {
+        IoExecutor io = new IoExecutor(4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger most = new AtomicInteger();
+        List<Integer> items = new ArrayList<>();
+        for (int pos = 0; pos < 100; pos += 1) {
+            items.add(pos);
+        }
+        List<Integer> squares = io.map(items, item -> {
+            most.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return item * item;
+        });
+        for (int pos = 0; pos < 100; pos += 1) {
+            assert squares.get(pos) == pos * pos;
+        }
+        assert most.get() <= 4;
+        try {
+            io.forEach(items, item -> {
+                if (item == 50) {
+                    throw Utils.error("failed at %d", item);
+                }
+            });
+            assert false;
+        } catch (GitletException excp) {
+            assert excp.getMessage().equals("failed at 50");
+        }
+    }
+
+    /**
+     * Stores many small files and one large one through a pipeline with
+     * one thread per stage, so that its queues fill, and checks that
+     * every file is stored under its SHA-1.
+     */
+    @Test
+    public void commitPipelineStoresAll() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        BlobStore store = blobStore(dir);
+        Random random = new Random(36);
+        Map<String, File> files = new HashMap<>();
+        for (int pos = 0; pos <= 200; pos += 1) {
+            byte[] data = new byte[pos == 200 ? 2 << 20 : 100 + pos];
+            random.nextBytes(data);
+            File file = Utils.join(dir, "f" + pos);
+            Utils.writeContents(file, data);
+            files.put(file.getName(), file);
+        }
+        CommitPipeline pipeline = new CommitPipeline(store, 1, 1, 1);
+        Map<String, String> shas = pipeline.run(files);
+        assert shas.size() == files.size();
+        for (Map.Entry<String, File> file : files.entrySet()) {
+            String sha = shas.get(file.getKey());
+            assert sha.equals(Utils.sha1(file.getValue()));
+            File target = Utils.join(dir, "target");
+            store.checkout(sha, target);
+            assert Arrays.equals(Utils.readContents(target),
+                    Utils.readContents(file.getValue()));
+        }
+        assert pipeline.report().size() == 4;
+    }
+
+    /**
+     * Checks that renames are found both exactly, by SHA-1, and by
+     * similarity, and that unrelated files are left unpaired.
+     */
+    @Test
+    public void renameDetection() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        BlobStore store = blobStore(dir);
+        Map<String, String> removed = new HashMap<>();
+        Map<String, String> added = new HashMap<>();
+        Map<String, File> files = new HashMap<>();
+        String[] contents = {"", "", ""};
+        for (int line = 0; line < 60; line += 1) {
+            contents[0] += "alpha " + line + "\n";
+            contents[1] += "beta " + line + "\n";
+            contents[2] += "gamma " + line + "\n";
+        }
+        String[] after = {contents[0], contents[1].replace("beta 7\n",
+                "beta seven\n"), "unrelated\n"};
+        for (int pos = 0; pos < contents.length; pos += 1) {
+            File file = Utils.join(dir, "old" + pos);
+            Utils.writeContents(file, contents[pos]);
+            store.write(Utils.sha1(file), file);
+            removed.put("old" + pos, Utils.sha1(file));
+            file = Utils.join(dir, "new" + pos);
+            Utils.writeContents(file, after[pos]);
+            added.put("new" + pos, Utils.sha1(file));
+            files.put(Utils.sha1(file), file);
+        }
+        RenameDetector detector = new RenameDetector(store,
+                new IoExecutor(4));
+        List<RenameDetector.Rename> renames =
+                detector.detect(removed, added, files);
+        assert renames.size() == 2;
+        assert renames.get(0).toString().equals("old0 -> new0 (100%)");
+        assert renames.get(1).from().equals("old1");
+        assert renames.get(1).to().equals("new1");
+        assert renames.get(1).score() >= RenameDetector.MIN_SCORE;
+        assert renames.get(1).score() < 100;
+        assert RenameDetector.exact(removed, added).size() == 1;
+    }
+
+    /**
+     * Merges manifests in memory and checks the three-way rules, the
+     * following of a rename, and that only changed files are written.
+     */
+    @Test
+    public void mergeEngineInMemory() {
+        String b1 = Utils.sha1("base\n");
+        String o1 = Utils.sha1("ours\n");
+        String t1 = Utils.sha1("theirs\n");
+        Map<String, String> blobs = new HashMap<>();
+        blobs.put(b1, "base\n");
+        blobs.put(o1, "ours\n");
+        blobs.put(t1, "theirs\n");
+        Map<String, String> split = new HashMap<>();
+        Map<String, String> ours = new HashMap<>();
+        Map<String, String> theirs = new HashMap<>();
+        split.put("same", b1);
+        ours.put("same", b1);
+        theirs.put("same", b1);
+        split.put("oursOnly", b1);
+        ours.put("oursOnly", o1);
+        theirs.put("oursOnly", b1);
+        split.put("theirsOnly", b1);
+        ours.put("theirsOnly", b1);
+        theirs.put("theirsOnly", t1);
+        split.put("both", b1);
+        ours.put("both", o1);
+        theirs.put("both", t1);
+        split.put("gone", b1);
+        ours.put("gone", b1);
+        split.put("old", o1);
+        ours.put("new", o1);
+        theirs.put("old", t1);
+        MergeEngine.Result result =
+                new MergeEngine(sha -> new ByteArrayInputStream(
+                        blobs.get(sha).getBytes(StandardCharsets.UTF_8)))
+                        .merge(split, ours, theirs);
+        String conflict = Utils.sha1("<<<<<<< HEAD\nours\n=======\n"
+                + "theirs\n>>>>>>>\n");
+        assert result.tree().get("same").equals(b1);
+        assert result.tree().get("oursOnly").equals(o1);
+        assert result.tree().get("theirsOnly").equals(t1);
+        assert result.tree().get("both").equals(conflict);
+        assert result.tree().get("new").equals(t1);
+        assert !result.tree().containsKey("gone");
+        assert !result.tree().containsKey("old");
+        assert result.conflicts().equals(Arrays.asList("both"));
+        assert result.blobs().keySet().equals(
+                new HashSet<>(Arrays.asList(conflict)));
+        assert result.writes().keySet().equals(new HashSet<>(
+                Arrays.asList("theirsOnly", "both", "new")));
+        assert result.deletes().equals(Arrays.asList("gone"));
+        assert result.changed();
+        result.discard();
+    }
+
+    /**
+     * Reads a manifest listed out of order, with a space in one name,
+     * and checks that it is walked in sorted order and joined with
+     * others into the right classification.
+     */
+    @Test
+    public void manifestJoin() {
+        String a = Utils.sha1("a");
+        String b = Utils.sha1("b");
+        Manifest base = Manifest.parse("master\n\n\nz " + a + "\nx y " + a
+                + "\nm " + a + "\n");
+        assert base.size() == 3;
+        assert base.name(0).equals("m");
+        assert base.name(1).equals("x y");
+        assert base.sha(1).equals(a);
+        assert base.find("z") == 2;
+        assert base.find("q") == -1;
+        Map<String, String> ours = new HashMap<>();
+        ours.put("m", b);
+        ours.put("x y", a);
+        ours.put("n", a);
+        Map<String, String> theirs = new HashMap<>();
+        theirs.put("m", a);
+        theirs.put("z", b);
+        List<String> seen = new ArrayList<>();
+        ManifestJoin.classify(base, Manifest.of(ours), Manifest.of(theirs),
+            (change, i, j, k) -> seen.add(change.toString()));
+        assert seen.equals(Arrays.asList("OURS", "OURS", "DELETE",
+                "CONFLICT"));
+    }
+
+    /**
+     * Merges versions of a file that changed different lines, then the
+     * same line differently, and checks that the first merges cleanly
+     * and the second marks only the conflicting line.
+     */
+    @Test
+    public void lineMergeHunks() {
+        String base = "a\nb\nc\nd\ne\nf\n";
+        String ours = "a\nB\nc\nd\ne\nf\n";
+        String theirs = "a\nb\nc\nd\nE\nf\ng\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assert LineMerge.merge(stream(base), stream(ours), stream(theirs),
+                out);
+        assert out.toString().equals("a\nB\nc\nd\nE\nf\ng\n");
+        out.reset();
+        assert !LineMerge.merge(stream(base),
+                stream("a\nb\nX\nd\ne\nf\n"),
+                stream("a\nb\nY\nd\ne\nF\n"), out);
+        assert out.toString().equals("a\nb\n<<<<<<< HEAD\nX\n=======\nY\n"
+                + ">>>>>>>\nd\ne\nF\n");
+        int[] matches = MyersDiff.matches(
+                LineIndex.read(stream("a\nb\nc\na\nb\nb\na\n").get()),
+                LineIndex.read(stream("c\nb\na\nb\na\nc\n").get()));
+        int common = 0;
+        for (int match : matches) {
+            common += match >= 0 ? 1 : 0;
+        }
+        assert common == 4;
+        String wide = "x".repeat(Utils.BLOCK_SIZE) + "\n";
+        LineIndex lines = LineIndex.read(stream("a\n" + wide + "b").get());
+        LineIndex other = LineIndex.read(stream(wide + "b\n").get());
+        assert lines.size() == 3 && other.size() == 2;
+        assert lines.same(1, other, 0) && !lines.same(2, other, 1);
+    }
+
+    /**
+     * Diffs two manifests and checks that only the files whose SHA-1s
+     * differ are listed, that hunks carry three lines of context, and
+     * that --stat counts the lines each file gains and loses.
+     */
+    @Test
+    public void diffHunks() {
+        String old = "1\n2\n3\n4\n5\n6\n7\n8\n9\n10\n11\n12\n";
+        String changed = "1\n2\nthree\n4\n5\n6\n7\n8\n9\n10\n11\n";
+        Map<String, String> contents = new HashMap<>();
+        for (String text : new String[] {old, changed, "same\n"}) {
+            contents.put(Utils.sha1(text), text);
+        }
+        Manifest from = Manifest.of(Map.of("f", Utils.sha1(old),
+                "same", Utils.sha1("same\n")));
+        Manifest to = Manifest.of(Map.of("f", Utils.sha1(changed),
+                "same", Utils.sha1("same\n"), "g", Utils.sha1("same\n")));
+        List<Diff.Change> changes = Diff.changes(from, to);
+        assert changes.size() == 2;
+        assert changes.get(0).name().equals("f");
+        assert changes.get(1).name().equals("g")
+                && changes.get(1).from() == null;
+        Diff diff = new Diff(sha -> stream(contents.get(sha)).get(),
+                IoExecutor.shared());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        diff.patch(changes.subList(0, 1), out);
+        assert out.toString().equals("diff --git a/f b/f\n--- a/f\n"
+                + "+++ b/f\n@@ -1,6 +1,6 @@\n 1\n 2\n-3\n+three\n 4\n"
+                + " 5\n 6\n@@ -9,4 +9,3 @@\n 9\n 10\n 11\n-12\n");
+        out.reset();
+        diff.stat(changes, out);
+        assert out.toString().equals(String.format(" f | 3 +--%n"
+                + " g | 1 +%n 2 files changed, 2 insertions(+),"
+                + " 2 deletions(-)%n"));
+    }
+
+    /**
+     * Blames a file over a chain of commits and checks that each line is
+     * attributed to the commit that last changed it, and that blaming it
+     * again from a later commit walks only the commits since.
+     */
+    @Test
+    public void blameKeepsProvenance() throws Exception {
+        Map<String, String> contents = new HashMap<>();
+        Map<String, Manifest> commits = new HashMap<>();
+        String[] versions = {"a\nb\nc\n", "a\nB\nc\n", "a\nB\nc\n",
+            "A\nB\nc\nd\n"};
+        String parent = "";
+        List<String> ids = new ArrayList<>();
+        for (String version : versions) {
+            String blob = Utils.sha1(version);
+            contents.put(blob, version);
+            String commit = "master\n" + parent + "\n\nf " + blob + "\n";
+            String id = Utils.sha1(commit);
+            commits.put(id, Manifest.parse(commit));
+            ids.add(id);
+            parent = id;
+        }
+        File cache = Files.createTempDirectory("gitlet").toFile();
+        Blame blame = new Blame(cache, commits::get,
+                sha -> stream(contents.get(sha)).get());
+        assert Arrays.asList(blame.blame(ids.get(2), "f")).equals(
+                List.of(ids.get(0), ids.get(1), ids.get(0)));
+        assert blame.walked() == 3;
+        assert Arrays.asList(blame.blame(ids.get(3), "f")).equals(
+                List.of(ids.get(3), ids.get(1), ids.get(0), ids.get(3)));
+        assert blame.walked() == 1;
+        blame.blame(ids.get(3), "f");
+        assert blame.walked() == 0;
+    }
+
+    /**
+     * Searches buffers for a literal and for an expression and checks
+     * the lines and line numbers reported, that a line matching twice
+     * is reported once, and that a binary file yields a single hit.
+     */
+    @Test
+    public void grepScansBytes() {
+        ByteBuffer text = ByteBuffer.wrap("key=1\nna\u00efve key key\nend"
+                .getBytes(StandardCharsets.UTF_8));
+        List<Grep.Hit> hits = new Grep("key", false).scan(text);
+        assert hits.size() == 2;
+        assert hits.get(0).line() == 1 && hits.get(0).text().equals("key=1");
+        assert hits.get(1).line() == 2
+                && hits.get(1).text().equals("na\u00efve key key");
+        hits = new Grep("^na|d$", true).scan(text);
+        assert hits.size() == 2 && hits.get(1).line() == 3;
+        assert new Grep("\u00ef", false).scan(text).get(0).line() == 2;
+        assert new Grep("key.", false).scan(text).isEmpty();
+        hits = new Grep("key", false).scan(ByteBuffer.wrap(
+                "\0key\nkey\n".getBytes(StandardCharsets.UTF_8)));
+        assert hits.size() == 1 && hits.get(0).binary();
+    }
+
+    /**
+     * Checks that a commit records its date and message, escaped so they
+     * read back intact, that commits in the old format read back with
+     * neither, and that the JSON log honors its limits.
+     */
+    @Test
+    public void logJsonRecords() throws Exception {
+        String text = Manifest.format("master", "p", "", 1234L,
+                ZoneOffset.UTC, "two\nlines \\n",
+                "f.txt " + Repository.INITIAL + "\n");
+        Manifest commit = Manifest.parse(text);
+        assert commit.header(Manifest.BRANCH).equals("master");
+        assert commit.header(Manifest.PARENT1).equals("p");
+        assert commit.date() == 1234L && commit.zone() == ZoneOffset.UTC;
+        assert commit.message().equals("two\nlines \\n");
+        assert commit.size() == 1 && commit.name(0).equals("f.txt");
+        Manifest old = Manifest.parse("master\np\n\nf.txt "
+                + Repository.INITIAL + "\n");
+        assert old.date() == Manifest.NO_DATE && old.message() == null;
+        assert old.zone() == null;
+        assert old.header(Manifest.PARENT1).equals("p") && old.size() == 1;
+        assert Main.parseDate("1970-01-01T00:00:01Z") == 1000;
+        assert Main.parseDate("1970-01-01T01:00:00+01:00") == 0;
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        Utils.writeContents(Utils.join(dir, "f.txt"), "wug\n");
+        repo.add("f.txt");
+        String first = repo.commit("say \"wug\"");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        repo.writeLog(false, true, 1, Long.MIN_VALUE, Long.MAX_VALUE, out);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assert lines.length == 1;
+        assert lines[0].startsWith("{\"commit\":\"" + first + "\"");
+        assert lines[0].endsWith(",\"message\":\"say \\\"wug\\\"\"}");
+        out.reset();
+        repo.writeLog(true, true, 10, 1, Long.MAX_VALUE, out);
+        assert out.toString(StandardCharsets.UTF_8).split("\n").length == 1;
+    }
+
+    /**
+     * Checks that log and gc options too large for their type are capped
+     * or reported rather than crashing or wrapping.
+     */
+    @Test
+    public void logOptionsOverflow() {
+        assert Main.parseCount("7") == 7;
+        assert Main.parseCount("99999999999") == Integer.MAX_VALUE;
+        assert Main.parseCount("123456789012345678901234567890")
+                == Integer.MAX_VALUE;
+        for (String date : new String[] {"99999999999999999999",
+                                         "9999999999999999"}) {
+            try {
+                Main.parseDate(date);
+                assert false;
+            } catch (GitletException excp) {
+                assert excp.getMessage().equals("Invalid date: " + date);
+            }
+        }
+        assert Main.parseGrace("60") == 60000;
+        for (String grace : new String[] {"99999999999999999999",
+                                          "9999999999999999"}) {
+            try {
+                Main.parseGrace(grace);
+                assert false;
+            } catch (GitletException excp) {
+                assert excp.getMessage().equals("Invalid prune time: "
+                        + grace);
+            }
+        }
+    }
+
+    /**
+     * Indexes a chain of commits by date and checks the commit found for
+     * each date, and that moving the head forward or back reads only the
+     * commits it moved past.
+     */
+    @Test
+    public void commitGraphFindsByDate() throws Exception {
+        Map<String, Manifest> commits = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        String parent = "";
+        for (long date : new long[] {0, 10, 20, 20, 15, 30}) {
+            String commit = Manifest.format("master", parent, "", date,
+                    ZoneOffset.UTC, "at " + date, "");
+            String id = Utils.sha1(commit);
+            commits.put(id, Manifest.parse(commit));
+            ids.add(id);
+            parent = id;
+        }
+        int[] reads = new int[1];
+        File folder = Files.createTempDirectory("gitlet").toFile();
+        CommitGraph graph = new CommitGraph(folder, sha -> {
+            reads[0] += 1;
+            return commits.get(sha);
+        });
+        assert graph.at("master", ids.get(3), -1) == null;
+        assert reads[0] == 4;
+        assert graph.at("master", ids.get(3), 19).equals(ids.get(1));
+        assert graph.at("master", ids.get(3), 20).equals(ids.get(3));
+        assert reads[0] == 6;
+        assert graph.at("master", ids.get(5), 25).equals(ids.get(4));
+        assert graph.at("master", ids.get(5), 30).equals(ids.get(5));
+        assert reads[0] == 10;
+        assert graph.at("master", ids.get(2), 100).equals(ids.get(2));
+        assert reads[0] == 11;
+    }
+
+    /**
+     * Builds a random graph of commits with merges and checks every
+     * answer of the reachability bitmaps against a walk of the graph,
+     * asking about some commits before their descendants are indexed.
+     */
+    @Test
+    public void reachabilityMatchesWalk() throws Exception {
+        Bitmap runs = Bitmap.of(new int[] {5, 1, 2, 9, 3}, 5);
+        assert runs.runs() == 3 && runs.cardinality() == 5;
+        assert runs.contains(3) && !runs.contains(4) && !runs.contains(10);
+        Bitmap union = runs.or(Bitmap.of(new int[] {4, 6, 7, 8}, 4));
+        assert union.runs() == 1 && union.cardinality() == 9;
+        Random random = new Random(46);
+        Map<String, Manifest> commits = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        List<Set<String>> ancestors = new ArrayList<>();
+        for (int k = 0; k < 400; k += 1) {
+            String parent1 = k == 0 ? "" : ids.get(k - 1 - random.nextInt(
+                    Math.min(k, 10)));
+            String parent2 = k < 2 || random.nextInt(4) > 0 ? ""
+                    : ids.get(random.nextInt(k));
+            String commit = Manifest.format("master", parent1, parent2, k,
+                    ZoneOffset.UTC, "c" + k, "");
+            String id = Utils.sha1(commit);
+            commits.put(id, Manifest.parse(commit));
+            Set<String> reached = new HashSet<>(Set.of(id));
+            for (String parent : new String[] {parent1, parent2}) {
+                if (!parent.isEmpty()) {
+                    reached.addAll(ancestors.get(ids.indexOf(parent)));
+                }
+            }
+            ids.add(id);
+            ancestors.add(reached);
+        }
+        File folder = Files.createTempDirectory("gitlet").toFile();
+        Reachability reach = new Reachability(folder, commits::get);
+        for (int tip : new int[] {150, 399, 200, 398}) {
+            for (int k = 0; k < ids.size(); k += 1) {
+                assert reach.reaches(ids.get(tip), ids.get(k))
+                        == ancestors.get(tip).contains(ids.get(k));
+            }
+            assert reach.bitmap(ids.get(tip)).cardinality()
+                    == ancestors.get(tip).size();
+        }
+        Reachability reread = new Reachability(folder, commits::get);
+        assert reread.reaches(ids.get(399), ids.get(0));
+        assert reread.number(ObjectId.fromHex(ids.get(0))) == 0;
+    }
+
+    /**
+     * Imports a small fast-import stream with marks, a branch made by
+     * reset, a merge and a rename, and checks the heads and the files of
+     * the commits it stored.
+     */
+    @Test
+    public void fastImportStream() throws Exception {
+        BlobStore store =
+                blobStore(Files.createTempDirectory("gitlet").toFile());
+        String stream = "blob\nmark :1\ndata 4\nwug\n\n"
+                + "blob\nmark :2\ndata <<EOT\nnot wug\nEOT\n"
+                + "commit refs/heads/main\nmark :3\n"
+                + "committer A <a@b> 10 +0000\ndata 4\none\n"
+                + "M 100644 :1 f.txt\n\n"
+                + "reset refs/heads/side\nfrom :3\n\n"
+                + "commit refs/heads/side\nmark :4\n"
+                + "committer A <a@b> 20 +0000\ndata 4\ntwo\n"
+                + "M 100644 :2 \"g h.txt\"\n\n"
+                + "commit refs/heads/main\nmark :5\n"
+                + "committer A <a@b> 30 +0000\ndata 6\nmerge\n"
+                + "merge :4\nM 100644 :2 g.txt\nR f.txt k.txt\n\n"
+                + "done\n";
+        Map<String, Manifest> stored = new HashMap<>();
+        FastImport imported = new FastImport(store, stored::get,
+                branch -> null);
+        imported.run(stream(stream).get());
+        List<FastImport.Commit> commits = imported.commits();
+        assert commits.size() == 3 && imported.blobs() == 2;
+        assert commits.get(0).parent1().equals(Repository.INITIAL);
+        assert commits.get(1).parent1().equals(commits.get(0).sha());
+        assert commits.get(2).parent2().equals(commits.get(1).sha());
+        assert imported.heads().get("main").equals(commits.get(2).sha());
+        assert imported.heads().get("side").equals(commits.get(1).sha());
+        assert commits.get(2).message().equals("merge");
+        Manifest merge = Manifest.parse(store.read(commits.get(2).sha()));
+        assert merge.size() == 2;
+        assert merge.name(0).equals("g.txt") && merge.name(1).equals("k.txt");
+        assert store.read(merge.sha(0)).equals("not wug\n");
+        assert store.read(merge.sha(1)).equals("wug\n");
+        Manifest side = Manifest.parse(store.read(commits.get(1).sha()));
+        assert side.find("g h.txt") >= 0 && side.find("f.txt") >= 0;
+    }
+
+    /**
+     * Exports a history with a merge and a deletion, imports the stream
+     * into a second store and checks that the trees match, then checks
+     * the names, sizes and contents of a tar of the last commit.
+     */
+    @Test
+    public void fastExportRoundTrip() throws Exception {
+        BlobStore[] stores = new BlobStore[2];
+        for (int k = 0; k < 2; k += 1) {
+            stores[k] = blobStore(Files.createTempDirectory("gitlet").toFile());
+        }
+        String stream = "blob\nmark :1\ndata 4\nwug\n"
+                + "commit refs/heads/main\nmark :2\n"
+                + "committer A <a@b> 10 +0000\ndata 3\none"
+                + "M 100644 :1 f.txt\nM 100644 :1 \"\\\"q\"\n"
+                + "commit refs/heads/side\nmark :3\n"
+                + "committer A <a@b> 20 +0000\ndata 3\ntwo"
+                + "from :2\nD f.txt\n"
+                + "commit refs/heads/main\nmark :4\n"
+                + "committer A <a@b> 30 +0000\ndata 5\nthree"
+                + "merge :3\nM 100644 :1 g.txt\n";
+        FastImport first = new FastImport(stores[0],
+                sha -> Manifest.parse(stores[0].read(sha)), branch -> null);
+        first.run(stream(stream).get());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FastExport export = new FastExport(stores[0],
+                sha -> Manifest.parse(stores[0].read(sha)), out);
+        for (Map.Entry<String, String> head : first.heads().entrySet()) {
+            export.export(head.getKey(), head.getValue());
+        }
+        export.finish();
+        assert export.commits() == 3;
+        FastImport second = new FastImport(stores[1],
+                sha -> Manifest.parse(stores[1].read(sha)), branch -> null);
+        second.run(new ByteArrayInputStream(out.toByteArray()));
+        for (String branch : List.of("main", "side")) {
+            Manifest a = Manifest.parse(stores[0].read(
+                    first.heads().get(branch)));
+            Manifest b = Manifest.parse(stores[1].read(
+                    second.heads().get(branch)));
+            assert a.size() == b.size();
+            for (int i = 0; i < a.size(); i += 1) {
+                assert a.name(i).equals(b.name(i)) && a.sameSha(i, b, i);
+            }
+            assert a.message().equals(b.message());
+        }
+        Manifest last = Manifest.parse(stores[0].read(
+                first.heads().get("main")));
+        assert last.size() == 3 && last.find("\"q") >= 0;
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        new Archive(stores[0]).tar(last, tar);
+        byte[] data = tar.toByteArray();
+        assert data.length == 8 * 512;
+        for (int k = 0; k < 3; k += 1) {
+            String header = new String(data, k * 1024, 512,
+                    StandardCharsets.US_ASCII);
+            assert header.startsWith(last.name(k) + "\0");
+            assert header.substring(124, 135).equals("00000000004");
+            assert header.startsWith("ustar\u000000", 257);
+            assert new String(data, k * 1024 + 512, 4,
+                    StandardCharsets.US_ASCII).equals("wug\n");
+        }
+    }
+
+    /**
+     * Serves a batch of requests by full and abbreviated SHA-1, by
+     * branch and by commit and path, some naming nothing, and checks the
+     * answers and that the working directory was left alone.
+     */
+    @Test
+    public void catFileBatchAnswers() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        File file = Utils.join(dir, "f.txt");
+        Utils.writeContents(file, "wug\n");
+        repo.add("f.txt");
+        String first = repo.commit("one");
+        Utils.writeContents(file, "not wug\n");
+        repo.add("f.txt");
+        repo.commit("two");
+        Utils.writeContents(file, "edited\n");
+        String blob = Utils.sha1("wug\n");
+        String requests = blob + "\n" + blob.substring(0, 7) + "\n"
+                + first.substring(0, 8) + ":f.txt\nmaster:f.txt\n"
+                + "master:g.txt\nnope\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        repo.catFileBatch(stream(requests).get(), out);
+        String answer = blob + " 4\nwug\n\n";
+        assert out.toString(StandardCharsets.UTF_8).equals(
+                answer + answer + answer
+                + Utils.sha1("not wug\n") + " 8\nnot wug\n\n"
+                + "master:g.txt missing\nnope missing\n");
+        assert Utils.readContentsAsString(file).equals("edited\n");
+    }
+
+    /**
+     * Checks each kind of ignore pattern, that a file is only asked
+     * whether it is a directory once a directory pattern matches it,
+     * and that status and add skip ignored files but not tracked ones.
+     */
+    @Test
+    public void ignoreRulesPruneScans() throws Exception {
+        IgnoreRules rules = IgnoreRules.parse("# comment\n\nbuild/\n"
+                + "*.o\n!keep.o\nlog[0-9].txt\ntmp*\n/a/b?.txt\n");
+        int[] asked = new int[1];
+        BooleanSupplier file = () -> {
+            asked[0] += 1;
+            return false;
+        };
+        assert rules.ignored("x.o", file) && !rules.ignored("keep.o", file);
+        assert rules.ignored("log1.txt", file);
+        assert !rules.ignored("log.txt", file);
+        assert rules.ignored("tmpfile", file) && rules.ignored("d/x.o", file);
+        assert rules.ignored("a/b1.txt", file);
+        assert !rules.ignored("c/a/b1.txt", file);
+        assert asked[0] == 0;
+        assert !rules.ignored("build", file) && asked[0] == 1;
+        assert rules.ignored("build", () -> true);
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = new Repository(dir);
+        repo.init();
+        Utils.writeContents(Utils.join(dir, "t.o"), "t\n");
+        repo.add("t.o");
+        repo.commit("one");
+        Utils.writeContents(Utils.join(dir, ".gitletignore"), "*.o\nout/\n");
+        Utils.join(dir, "out").mkdir();
+        Utils.writeContents(Utils.join(dir, "t.o"), "changed\n");
+        Utils.writeContents(Utils.join(dir, "u.o"), "u\n");
+        Status status = repo.status();
+        assert status.modified().equals(List.of("t.o (modified)"));
+        assert status.untracked().equals(List.of(".gitletignore"));
+        try {
+            repo.add("u.o");
+            assert false;
+        } catch (GitletException excp) {
+            assert excp.getMessage().contains("ignored");
+        }
+        repo.add("t.o");
+    }
+
+    /** Returns a store of objects kept in DIR/objects, with its fan-out
+     *  directories made. */
+    private static BlobStore blobStore(File dir) {
+        File objects = Utils.join(dir, "objects");
+        for (int pos = 0; pos < 256; pos += 1) {
+            Utils.join(objects, String.format("%02x", pos)).mkdirs();
+        }
+        return new BlobStore(objects);
+    }
+
+    /** Returns a source of streams of the bytes of S. */
+    private static Supplier<InputStream> stream(String s) {
+        return () -> new ByteArrayInputStream(
+                s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -6,11 +6,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -29,6 +33,9 @@ class Utils {
     /** The length of a complete SHA-1 UID as a hexadecimal numeral. */
     static final int UID_LENGTH = 40;
 
+    /** The size of the blocks in which files are streamed. */
+    static final int BLOCK_SIZE = 1 << 16;
+
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
@@ -43,16 +50,39 @@ class Utils {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
+            return toHex(md.digest());
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Returns the SHA-1 hash of the contents of FILE, which is read in
+     *  blocks rather than all at once.  Throws IllegalArgumentException
+     *  in case of problems. */
+    static String sha1(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[BLOCK_SIZE];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                md.update(buffer, 0, n);
             }
-            return result.toString();
+            return toHex(md.digest());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
     }
 
+    /** Returns DIGEST as a lower-case hexadecimal numeral. */
+    static String toHex(byte[] digest) {
+        Formatter result = new Formatter();
+        for (byte b : digest) {
+            result.format("%02x", b);
+        }
+        return result.toString();
+    }
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
      *  VALS. */
     static String sha1(List<Object> vals) {
@@ -132,6 +162,44 @@ class Utils {
         }
     }
 
+    /** Forces the contents of FILE to disk. FILE may be a directory, which
+     *  some systems cannot open for this, so failing to force one is not
+     *  an error. */
+    static void force(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            if (!file.isDirectory()) {
+                throw error("Could not write %s: %s", file.getName(),
+                        excp.getMessage());
+            }
+        }
+    }
+
+    /** Returns a fresh temporary file beside TARGET, to be written and then
+     *  installed as TARGET. */
+    static File tempFile(File target) throws IOException {
+        return File.createTempFile("tmp_", null, target.getParentFile());
+    }
+
+    /** Moves TEMP, completely written, into place as TARGET, so that a
+     *  reader never sees part of TARGET. */
+    static void install(File temp, File target) throws IOException {
+        Files.move(temp.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Replaces FILE with DATA by way of a temporary file installed in its
+     *  place, making FILE's directory if need be. */
+    static void writeAtomically(File file, byte[] data) throws IOException {
+        file.getParentFile().mkdirs();
+        File temp = tempFile(file);
+        Files.write(temp.toPath(), data);
+        install(temp, file);
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,